@@ -10,12 +10,6 @@ public class ChampionDataFetcher {
 
     // Global win rates for all champions
     static Map<String, Double> globalChampionWinrate = new HashMap<>();
-    // Champion data with good performance against selected enemy champions
-    static final Map<String, ChampionMatchupData> topChampList = new HashMap<>();
-    // Win rates of top performing champions
-    static Map<String, Double> topChampWinrates = new HashMap<>();
-    // Detailed champion matchup data
-    static Map<String, Map<String,ChampionMatchupData>> championData;
     // Role generator for filtering champions by role
     static RoleGenerator roles;
 
@@ -26,7 +20,6 @@ public class ChampionDataFetcher {
     public ChampionDataFetcher() throws IOException {
         dataStorage = DataStorage.getInstance();
         roles = RoleGenerator.getInstance();
-        championData = dataStorage.getChampionData();
         globalChampionWinrate = getTopWinrates();
     }
 
@@ -48,67 +41,161 @@ public class ChampionDataFetcher {
     }
 
     /**
-     * Interactively queries the user for enemy champions and calculates the best champions to counter them.
+     * Interactively queries the user for enemy champions and any allies already locked in, and calculates the best
+     * champions to counter the enemies alongside those allies.
      */
     public void getBestChamps() {
         Scanner sc = new Scanner(System.in);
-        Map<String, ChampionMatchupData> goodChampData = new HashMap<>();
+        // Champion IDs never change, so the index can be read while matches are being applied
+        ChampionIndex index = dataStorage.getChampionIndex();
         System.out.println();
         System.out.println("Now you will enter the enemy team one at a time.");
-        for (int i = 0; i < 5; i++) {
-            System.out.println("Enter an enemy champion: ");
-            String enemy = sc.nextLine().replaceAll("[^A-Za-z]", "").toLowerCase();
-            if (enemy.isEmpty()) {
-                break; // Exit if user inputs an empty response
-            }
-            if (championData.containsKey(enemy)) {
-                //Collects the winrate each champ has against these champions and outputs it as topChampList
-                goodChampData = scourData(enemy);
-                for (String champ : goodChampData.keySet()) {
-                    if (topChampList.containsKey(champ)) {
-                        topChampList.get(champ).addGames(goodChampData.get(champ).getGames());
-                        topChampList.get(champ).addWins(goodChampData.get(champ).getWins());
-                    } else {
-                        topChampList.put(champ, goodChampData.get(champ));
-                    }
-                }
-            }
-        }
-        if (!goodChampData.isEmpty()) {
-            topChampWinrates = getTopWinrates(topChampList); // Assuming you meant to pass globalChampionWinrate here
-        }
+        int[] enemies = readChampions(sc, index, "Enter an enemy champion: ", 5);
+        System.out.println();
+        System.out.println("Now enter the allies already locked in, one at a time (leave empty if there are none).");
+        int[] allies = readChampions(sc, index, "Enter an allied champion: ", 4);
         System.out.println();
         System.out.println("Enter your role('top','jungle','mid','adc','sup', or 'any' is fine): ");
         String inputRole = sc.nextLine().replaceAll("[^A-Za-z]", "").toLowerCase().trim();
         while (inputRole.isEmpty()) {
             inputRole = sc.nextLine().replaceAll("[^A-Za-z]", "").toLowerCase().trim(); // Loop if user inputs an empty response
         }
-        // Filter champions by role
-        Map<String, Double> filteredWinrates = new HashMap<>();
-        if (!inputRole.equals("any")) {
-            // Filter champions by role
-            for (String champ : topChampWinrates.keySet()) {
-                String[] champRoles = roles.getRoles().get(champ); // Assuming roles map is accessible
-                if (champRoles != null && Arrays.asList(champRoles).contains(inputRole)) {
-                    filteredWinrates.put(champ, topChampWinrates.get(champ));
-                }
+        // Sums each champion's record against the enemies and with the allies in one pass over the precomputed counters, keeping the top 10
+        List<CounterIndex.Counter> counters = recommend(enemies, allies, inputRole, 10);
+        System.out.println("Normalized against general winrate (for best comp counter)");
+        for (CounterIndex.Counter counter : counters) {
+            System.out.println(counter.champion() + ": " + String.format("%.2f%%", counter.delta() * 100));
+        }
+    }
+
+    /**
+     * Interactively queries the user for the enemy team, the allies already locked in and the roles still open,
+     * and finds the best compositions for the open slots.
+     */
+    public void getBestDraft() {
+        Scanner sc = new Scanner(System.in);
+        ChampionIndex index = dataStorage.getChampionIndex();
+        System.out.println();
+        System.out.println("Now you will enter the enemy team one at a time.");
+        int[] enemies = readChampions(sc, index, "Enter an enemy champion: ", 5);
+        System.out.println();
+        System.out.println("Now enter the allies already locked in, one at a time (leave empty if there are none).");
+        int[] allies = readChampions(sc, index, "Enter an allied champion: ", 4);
+        System.out.println();
+        Role[] openRoles = null;
+        while (openRoles == null) {
+            System.out.println("Enter the open roles separated by commas ('top','jungle','mid','adc','sup'), or leave blank to fill every open slot with any role: ");
+            openRoles = parseOpenRoles(sc.nextLine(), allies.length);
+        }
+        // Scores whole compositions from one published epoch, even if a newer one is published meanwhile
+        List<DraftEvaluator.Draft> drafts = bestDrafts(DataStorage.getPublishedEpoch().getTable(), allies, enemies, openRoles, 5);
+        System.out.println("Best compositions (summed win rate deltas)");
+        for (DraftEvaluator.Draft draft : drafts) {
+            StringJoiner picks = new StringJoiner(", ");
+            for (DraftEvaluator.Pick pick : draft.picks()) {
+                picks.add(pick.role() == Role.UNKNOWN ? pick.champion() : pick.champion() + " (" + pick.role().getShortName() + ")");
+            }
+            System.out.println(picks + ": " + String.format("%.2f%%", draft.score() * 100));
+        }
+    }
+
+    // Reads up to max champion names, one per line, until an empty line. Unknown champions are skipped
+    private static int[] readChampions(Scanner sc, ChampionIndex index, String prompt, int max) {
+        List<Integer> champions = new ArrayList<>();
+        for (int i = 0; i < max; i++) {
+            System.out.println(prompt);
+            String champion = sc.nextLine().replaceAll("[^A-Za-z]", "").toLowerCase();
+            if (champion.isEmpty()) {
+                break; // Exit if user inputs an empty response
+            }
+            int championId = index.indexOf(champion);
+            if (championId >= 0) {
+                champions.add(championId);
             }
-            // Display winrate after normalizing data
-//            System.out.println("Total Winrate (for highest win chance)");
-//            displayWinrate((filteredWinrates));
-//            System.out.println();
-            System.out.println("Normalized against general winrate (for best comp counter)");
-            displayWinrate(normalizeData(filteredWinrates));
-        } else {
-//            System.out.println("Default Winrate");
-//            displayWinrate((globalChampionWinrate));
-//            Display winrate after normalizing data
-//            System.out.println("Total Winrate (for highest win chance)");
-//            displayWinrate((topChampWinrates));
-//            System.out.println();
-            System.out.println("Normalized against general winrate (for best comp counter)");
-            displayWinrate(normalizeData(topChampWinrates));
         }
+        return champions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Reads the roles of the open slots of a draft, such as "top,mid".
+     * @param roles The roles separated by commas, or blank for a slot open to any role for each missing ally.
+     * @param allies The number of allies already locked in.
+     * @return The roles, or null if a role is unknown or there are more roles than open slots.
+     */
+    public static Role[] parseOpenRoles(String roles, int allies) {
+        if (roles.isBlank()) {
+            Role[] any = new Role[DraftEvaluator.TEAM_SIZE - allies];
+            Arrays.fill(any, Role.UNKNOWN);
+            return any;
+        }
+        List<Role> open = new ArrayList<>();
+        for (String name : roles.split(",")) {
+            String shortName = name.replaceAll("[^A-Za-z]", "").toLowerCase();
+            Role role = Role.fromShortName(shortName);
+            if (role == Role.UNKNOWN && !shortName.equals("any")) {
+                return null;
+            }
+            open.add(role);
+        }
+        return (open.size() + allies <= DraftEvaluator.TEAM_SIZE) ? open.toArray(new Role[0]) : null;
+    }
+
+    /**
+     * Finds the best compositions for the open slots of a team, with each slot limited to the champions that can
+     * play its role.
+     * @param table The matchup data to score with, e.g. a published epoch's table or a window of recent patches.
+     * @param allies The champion IDs already locked in on the team.
+     * @param enemies The champion IDs of the enemy team.
+     * @param openRoles The role of each open slot, or UNKNOWN for a slot open to any role.
+     * @param k The number of compositions to return.
+     * @return The best compositions, best first.
+     * @throws IllegalArgumentException If the open slots are not valid for the team.
+     */
+    public List<DraftEvaluator.Draft> bestDrafts(MatchupTable table, int[] allies, int[] enemies, Role[] openRoles, int k) {
+        return new DraftEvaluator(table).bestDrafts(allies, enemies, openRoles, roles.getRoleMasks(table.getIndex()), k);
+    }
+
+    /**
+     * Finds the champions that do best against a team, normalized against their global win rate.
+     * @param enemies The champion IDs of the enemies.
+     * @param role The role to recommend for, or "any".
+     * @param k The number of champions to return.
+     * @return The recommended champions, best first.
+     */
+    public List<CounterIndex.Counter> recommend(int[] enemies, String role, int k) {
+        return recommend(enemies, new int[0], role, k);
+    }
+
+    /**
+     * Finds the champions that do best against a team and with the allies already locked in, normalized against
+     * their global win rate. Allies are read from the same precomputed index, so they cost no extra pass over the data.
+     * @param enemies The champion IDs of the enemies.
+     * @param allies The champion IDs of the allies.
+     * @param role The role to recommend for, or "any".
+     * @param k The number of champions to return.
+     * @return The recommended champions, best first.
+     */
+    public List<CounterIndex.Counter> recommend(int[] enemies, int[] allies, String role, int k) {
+        // The whole query reads one published epoch, even if a newer one is published meanwhile
+        return recommend(DataStorage.getCounterIndex(), enemies, allies, role, k);
+    }
+
+    /**
+     * Finds the best champions against a team using the given counters, e.g. those of a window of recent patches.
+     */
+    public List<CounterIndex.Counter> recommend(CounterIndex counterIndex, int[] enemies, String role, int k) {
+        return recommend(counterIndex, enemies, new int[0], role, k);
+    }
+
+    /**
+     * Finds the best champions against a team and with the allies using the given counters.
+     */
+    public List<CounterIndex.Counter> recommend(CounterIndex counterIndex, int[] enemies, int[] allies, String role, int k) {
+        Role wanted = Role.fromShortName(role);
+        if (wanted == Role.UNKNOWN && !role.equals("any")) {
+            return List.of(); // No champion plays an unknown role
+        }
+        return counterIndex.recommend(enemies, allies, wanted, roles.getRoleMasks(counterIndex.getIndex()), k);
     }
 
     /**
@@ -146,26 +233,6 @@ public class ChampionDataFetcher {
         return (convertedWinrateData);
     }
 
-    /**
-     * Analyzes champion data to find champions with good performance against a specified enemy champion.
-     * @param enemy The enemy champion name.
-     * @return A map of champions to their matchup data against the specified enemy.
-     */
-    public Map<String, ChampionMatchupData> scourData(String enemy) {
-        Map<String, ChampionMatchupData> goodChampData = new HashMap<>();
-        for (String champ : championData.keySet()) {
-            ChampionMatchupData newData = new ChampionMatchupData(0,0);
-            goodChampData.put(champ, newData);
-            if (!champ.equals(enemy)) {
-                goodChampData.get(champ).addGames(championData.get(champ).get(enemy).getGames());
-                goodChampData.get(champ).addWins(championData.get(champ).get(enemy).getWins());
-            }
-        }
-        // Remove the entry if it has fewer than 300 games
-        goodChampData.entrySet().removeIf(entry -> entry.getValue().getGames() < 300);
-        return goodChampData;
-    }
-
     /**
      * Normalizes the win rates of champions by comparing them to the global win rates.
      * @param data The map containing champion names and their win rates to normalize.
@@ -0,0 +1,74 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns champion names into dense integer IDs so matchup data can be stored in flat arrays
+ * instead of nested maps. IDs are handed out in order of first appearance and never change.
+ */
+public final class ChampionIndex {
+
+    // Maps champion names to their dense IDs
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Champion names by ID. Replaced (never mutated) when a new champion is interned so readers never see a partial array
+    private volatile String[] names = new String[0];
+
+    public ChampionIndex() {
+
+    }
+
+    public ChampionIndex(Collection<String> champions) {
+        for (String champion : champions) {
+            intern(champion);
+        }
+    }
+
+    /**
+     * Returns the ID of a champion, assigning the next free ID if the champion has not been seen before.
+     * @param champion The lowercase champion name.
+     * @return The dense ID of the champion.
+     */
+    public int intern(String champion) {
+        // Almost every call is for a known champion, which needs no lock
+        Integer id = ids.get(champion);
+        return (id != null) ? id : add(champion);
+    }
+
+    private synchronized int add(String champion) {
+        Integer id = ids.get(champion);
+        if (id != null) {
+            return id;
+        }
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        grown[names.length] = champion;
+        names = grown;
+        ids.put(champion, names.length - 1);
+        return names.length - 1;
+    }
+
+    /**
+     * Looks up the ID of a champion without interning it.
+     * @param champion The lowercase champion name.
+     * @return The dense ID of the champion, or -1 if it is unknown.
+     */
+    public int indexOf(String champion) {
+        Integer id = ids.get(champion);
+        return (id == null) ? -1 : id;
+    }
+
+    public boolean contains(String champion) {
+        return ids.containsKey(champion);
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Returns the champion names ordered by ID
+    public List<String> names() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+}
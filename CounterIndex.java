@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Precomputed counter candidates for every enemy champion, so a recommendation query reads a few contiguous
+ * primitive arrays instead of building and sorting maps. For each enemy, the champions with at least MIN_GAMES
+ * games against it are stored with their games, wins and win rate delta over their global win rate. The champions
+ * with at least MIN_GAMES games on the same team as each ally are stored the same way, so locked allies are
+ * factored into a query by reading their lists too, and the champions with at least MIN_GAMES games against each
+ * enemy in each lane, so a query for a role reads the games of that lane where there are enough of them. The index
+ * is immutable and is built once for each published MatchupEpoch.
+ */
+public class CounterIndex {
+
+    // Matchups with fewer games than this are too noisy to recommend from
+    public static final int MIN_GAMES = 300;
+
+    /**
+     * A recommended champion with its combined record against the queried enemies and with the queried allies.
+     * @param delta The win rate minus the champion's global win rate.
+     */
+    public record Counter(String champion, int games, int wins, double winRate, double delta) {
+    }
+
+    private final ChampionIndex index;
+    private final int size;
+    private final long dataVersion;
+    // The candidates of enemy e are at [offsets[e], offsets[e + 1]) in the arrays below
+    private final int[] offsets;
+    private final int[] candidates;
+    private final int[] games;
+    private final int[] wins;
+    private final double[] deltas;
+    // The champions played with ally a are at [allyOffsets[a], allyOffsets[a + 1]) in the arrays below
+    private final int[] allyOffsets;
+    private final int[] allyCandidates;
+    private final int[] allyGames;
+    private final int[] allyWins;
+    // The champions that faced enemy e in the lane of a Role r are at [laneOffsets[l], laneOffsets[l + 1]) in the
+    // arrays below, with l = (r.ordinal() - 1) * size + e
+    private final int[] laneOffsets;
+    private final int[] laneCandidates;
+    private final int[] laneGames;
+    private final int[] laneWins;
+    // Global win rate of each champion, or NaN if it has no games
+    private final double[] globalRates;
+
+    private CounterIndex(ChampionIndex index, int size, long dataVersion, int[] offsets, int[] candidates, int[] games, int[] wins, double[] deltas,
+                         int[] allyOffsets, int[] allyCandidates, int[] allyGames, int[] allyWins,
+                         int[] laneOffsets, int[] laneCandidates, int[] laneGames, int[] laneWins, double[] globalRates) {
+        this.index = index;
+        this.size = size;
+        this.dataVersion = dataVersion;
+        this.offsets = offsets;
+        this.candidates = candidates;
+        this.games = games;
+        this.wins = wins;
+        this.deltas = deltas;
+        this.allyOffsets = allyOffsets;
+        this.allyCandidates = allyCandidates;
+        this.allyGames = allyGames;
+        this.allyWins = allyWins;
+        this.laneOffsets = laneOffsets;
+        this.laneCandidates = laneCandidates;
+        this.laneGames = laneGames;
+        this.laneWins = laneWins;
+        this.globalRates = globalRates;
+    }
+
+    /**
+     * Builds the index from the matchup data.
+     * @param table The matchup data, synergy, lane matchups and global records.
+     * @param dataVersion The number of the epoch the index is built from.
+     */
+    public static CounterIndex build(MatchupTable table, long dataVersion) {
+        ChampionIndex index = table.getIndex();
+        int size = index.size();
+        double[] globalRates = new double[size];
+        for (int champion = 0; champion < size; champion++) {
+            int globalGames = table.getGlobalGames(champion);
+            globalRates[champion] = (globalGames == 0) ? Double.NaN : (double) table.getGlobalWins(champion) / globalGames;
+        }
+        int[] offsets = new int[size + 1];
+        int count = 0;
+        for (int enemy = 0; enemy < size; enemy++) {
+            for (int champion = 0; champion < size; champion++) {
+                if (champion != enemy && table.getGames(champion, enemy) >= MIN_GAMES) {
+                    count++;
+                }
+            }
+            offsets[enemy + 1] = count;
+        }
+        int[] candidates = new int[count];
+        int[] games = new int[count];
+        int[] wins = new int[count];
+        double[] deltas = new double[count];
+        int next = 0;
+        for (int enemy = 0; enemy < size; enemy++) {
+            for (int champion = 0; champion < size; champion++) {
+                int matchupGames = table.getGames(champion, enemy);
+                if (champion != enemy && matchupGames >= MIN_GAMES) {
+                    int matchupWins = table.getWins(champion, enemy);
+                    candidates[next] = champion;
+                    games[next] = matchupGames;
+                    wins[next] = matchupWins;
+                    deltas[next] = normalize((double) matchupWins / matchupGames, globalRates[champion]);
+                    next++;
+                }
+            }
+        }
+        int[] allyOffsets = new int[size + 1];
+        int allyCount = 0;
+        for (int ally = 0; ally < size; ally++) {
+            for (int champion = 0; champion < size; champion++) {
+                if (table.getSynergyGames(champion, ally) >= MIN_GAMES) {
+                    allyCount++;
+                }
+            }
+            allyOffsets[ally + 1] = allyCount;
+        }
+        int[] allyCandidates = new int[allyCount];
+        int[] allyGames = new int[allyCount];
+        int[] allyWins = new int[allyCount];
+        next = 0;
+        for (int ally = 0; ally < size; ally++) {
+            for (int champion = 0; champion < size; champion++) {
+                int synergyGames = table.getSynergyGames(champion, ally);
+                if (synergyGames >= MIN_GAMES) {
+                    allyCandidates[next] = champion;
+                    allyGames[next] = synergyGames;
+                    allyWins[next] = table.getSynergyWins(champion, ally);
+                    next++;
+                }
+            }
+        }
+        int lanes = Role.COUNT - 1;
+        int[] laneOffsets = new int[lanes * size + 1];
+        int laneCount = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            Role role = Role.ofOrdinal(lane + 1);
+            for (int enemy = 0; enemy < size; enemy++) {
+                for (int champion = 0; champion < size; champion++) {
+                    if (champion != enemy && table.getLaneGames(champion, enemy, role) >= MIN_GAMES) {
+                        laneCount++;
+                    }
+                }
+                laneOffsets[lane * size + enemy + 1] = laneCount;
+            }
+        }
+        int[] laneCandidates = new int[laneCount];
+        int[] laneGames = new int[laneCount];
+        int[] laneWins = new int[laneCount];
+        next = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            Role role = Role.ofOrdinal(lane + 1);
+            for (int enemy = 0; enemy < size; enemy++) {
+                for (int champion = 0; champion < size; champion++) {
+                    int matchupGames = table.getLaneGames(champion, enemy, role);
+                    if (champion != enemy && matchupGames >= MIN_GAMES) {
+                        laneCandidates[next] = champion;
+                        laneGames[next] = matchupGames;
+                        laneWins[next] = table.getLaneWins(champion, enemy, role);
+                        next++;
+                    }
+                }
+            }
+        }
+        return new CounterIndex(index, size, dataVersion, offsets, candidates, games, wins, deltas,
+                allyOffsets, allyCandidates, allyGames, allyWins, laneOffsets, laneCandidates, laneGames, laneWins, globalRates);
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public ChampionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Finds the best champions against a team in one pass over the candidates of each enemy.
+     * @see #recommend(int[], int[], Role, int[], int)
+     */
+    public List<Counter> recommend(int[] enemies, Role role, int[] roleMasks, int k) {
+        return recommend(enemies, new int[0], role, roleMasks, k);
+    }
+
+    /**
+     * Finds the best champions against a team and with the allies already locked in, in one pass over the
+     * candidates of each enemy and each ally. Games and wins are summed per champion across the enemies it has
+     * enough games against and the allies it has enough games with, and the k champions with the highest delta
+     * over their global win rate are kept in a bounded heap. Champions already locked in are never recommended.
+     * For a role, a champion's games against an enemy in that lane replace its games against the enemy in any
+     * position when it has enough of them, and champions that cannot play the role are skipped with one AND.
+     * @param enemies The champion IDs of the enemies. IDs outside the index are ignored.
+     * @param allies The champion IDs of the allies. IDs outside the index are ignored.
+     * @param role The role to recommend for, or UNKNOWN for any role.
+     * @param roleMasks The Role mask of the roles each champion can play, by ID, or null to allow every champion.
+     * @param k The number of champions to return.
+     * @return The recommended champions, best first.
+     */
+    public List<Counter> recommend(int[] enemies, int[] allies, Role role, int[] roleMasks, int k) {
+        int[] totalGames = new int[size];
+        int[] totalWins = new int[size];
+        int lane = role.ordinal() - 1;
+        // laneEnemy[c] is e + 1 once champion c's lane games against enemies[e] are counted
+        int[] laneEnemy = (lane >= 0) ? new int[size] : null;
+        for (int e = 0; e < enemies.length; e++) {
+            int enemy = enemies[e];
+            if (enemy < 0 || enemy >= size) {
+                continue;
+            }
+            if (lane >= 0) {
+                int list = lane * size + enemy;
+                for (int i = laneOffsets[list]; i < laneOffsets[list + 1]; i++) {
+                    totalGames[laneCandidates[i]] += laneGames[i];
+                    totalWins[laneCandidates[i]] += laneWins[i];
+                    laneEnemy[laneCandidates[i]] = e + 1;
+                }
+            }
+            for (int i = offsets[enemy]; i < offsets[enemy + 1]; i++) {
+                if (lane < 0 || laneEnemy[candidates[i]] != e + 1) {
+                    totalGames[candidates[i]] += games[i];
+                    totalWins[candidates[i]] += wins[i];
+                }
+            }
+        }
+        boolean[] locked = new boolean[size];
+        for (int ally : allies) {
+            if (ally < 0 || ally >= size) {
+                continue;
+            }
+            locked[ally] = true;
+            for (int i = allyOffsets[ally]; i < allyOffsets[ally + 1]; i++) {
+                totalGames[allyCandidates[i]] += allyGames[i];
+                totalWins[allyCandidates[i]] += allyWins[i];
+            }
+        }
+        for (int enemy : enemies) {
+            if (enemy >= 0 && enemy < size) {
+                locked[enemy] = true;
+            }
+        }
+        TopK top = new TopK(k);
+        for (int champion = 0; champion < size; champion++) {
+            if (totalGames[champion] > 0 && !locked[champion] && canPlay(roleMasks, champion, role)) {
+                top.offer(champion, normalize((double) totalWins[champion] / totalGames[champion], globalRates[champion]));
+            }
+        }
+        List<Counter> result = new ArrayList<>(top.size);
+        for (int champion : top.drainAscending()) {
+            double winRate = (double) totalWins[champion] / totalGames[champion];
+            result.add(new Counter(index.nameOf(champion), totalGames[champion], totalWins[champion], winRate, normalize(winRate, globalRates[champion])));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns the best champions against a single enemy straight from the precomputed lists. For a role, the
+     * champions that faced the enemy in that lane are ranked by those games, if any have enough of them.
+     */
+    public List<Counter> countersOf(int enemy, Role role, int[] roleMasks, int k) {
+        if (enemy < 0 || enemy >= size) {
+            return List.of();
+        }
+        int list = (role.ordinal() - 1) * size + enemy;
+        if (role != Role.UNKNOWN && laneOffsets[list] < laneOffsets[list + 1]) {
+            TopK top = new TopK(k);
+            for (int i = laneOffsets[list]; i < laneOffsets[list + 1]; i++) {
+                if (canPlay(roleMasks, laneCandidates[i], role)) {
+                    top.offer(i, normalize((double) laneWins[i] / laneGames[i], globalRates[laneCandidates[i]]));
+                }
+            }
+            List<Counter> result = new ArrayList<>(top.size);
+            for (int i : top.drainAscending()) {
+                double winRate = (double) laneWins[i] / laneGames[i];
+                result.add(new Counter(index.nameOf(laneCandidates[i]), laneGames[i], laneWins[i], winRate, normalize(winRate, globalRates[laneCandidates[i]])));
+            }
+            Collections.reverse(result);
+            return result;
+        }
+        TopK top = new TopK(k);
+        for (int i = offsets[enemy]; i < offsets[enemy + 1]; i++) {
+            if (canPlay(roleMasks, candidates[i], role)) {
+                top.offer(i, deltas[i]);
+            }
+        }
+        List<Counter> result = new ArrayList<>(top.size);
+        for (int i : top.drainAscending()) {
+            result.add(new Counter(index.nameOf(candidates[i]), games[i], wins[i], (double) wins[i] / games[i], deltas[i]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // True if the role is UNKNOWN or there are no masks, or the champion's mask has the role
+    static boolean canPlay(int[] roleMasks, int champion, Role role) {
+        return role == Role.UNKNOWN || roleMasks == null || (champion < roleMasks.length && (roleMasks[champion] & role.mask()) != 0);
+    }
+
+    // A champion without a global win rate is ranked by its raw win rate, as ChampionDataFetcher.normalizeData does
+    private static double normalize(double winRate, double globalRate) {
+        return Double.isNaN(globalRate) ? winRate : winRate - globalRate;
+    }
+
+    /**
+     * Bounded min-heap of (item, key) pairs keeping the k largest keys.
+     */
+    private static class TopK {
+        private final int[] items;
+        private final double[] keys;
+        private int size = 0;
+
+        TopK(int k) {
+            items = new int[Math.max(0, k)];
+            keys = new double[Math.max(0, k)];
+        }
+
+        void offer(int item, double key) {
+            if (size < items.length) {
+                items[size] = item;
+                keys[size] = key;
+                siftUp(size++);
+            } else if (size > 0 && key > keys[0]) {
+                items[0] = item;
+                keys[0] = key;
+                siftDown(0);
+            }
+        }
+
+        // Empties the heap, returning the items from the smallest key to the largest
+        int[] drainAscending() {
+            int[] drained = new int[size];
+            for (int i = 0; size > 0; i++) {
+                drained[i] = items[0];
+                size--;
+                items[0] = items[size];
+                keys[0] = keys[size];
+                siftDown(0);
+            }
+            return drained;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (keys[parent] <= keys[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && keys[left] < keys[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && keys[right] < keys[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int item = items[a];
+            items[a] = items[b];
+            items[b] = item;
+            double key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+        }
+    }
+}
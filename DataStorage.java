@@ -1,12 +1,13 @@
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class DataStorage {
 
@@ -17,32 +18,80 @@ public class DataStorage {
     private static final String DATA_FILE_PATH = "champion_data.json";
     private static final String GLOBAL_WINRATE_FILE_PATH = "global_winrate_data.json";
     private static final String PROCESSED_FILE_PATH = "processed_match_ids.json";
+    private static final String PROCESSED_BINARY_FILE_PATH = "processed_match_ids.bin";
+    private static final String EVENT_LOG_FILE_PATH = "match_events.log";
+    // Checkpoint generation file used before binary snapshots, still read when importing from JSON
+    private static final String CHECKPOINT_FILE_PATH = "match_events.checkpoint";
+    // Binary snapshots are named champion_data-<generation>.bin so a new one never replaces a mapped file
+    private static final String SNAPSHOT_FILE_PREFIX = "champion_data-";
+    private static final String SNAPSHOT_FILE_SUFFIX = ".bin";
+    // Patch segments are named patch_segment-<patch>-<generation>.bin and written with every snapshot
+    private static final String SEGMENT_FILE_PREFIX = "patch_segment-";
 
-    //Current game version. Is updated by VersionInfo. https://ddragon.leagueoflegends.com/api/versions.json
-    private String gameVersion = "13.21.1";
+    // Matches written to the event log between fsyncs
+    private static final int LOG_SYNC_BATCH_SIZE = 20;
+    // Matches in the event log before it is folded into the snapshot files
+    private static final int COMPACTION_THRESHOLD = 500;
+    // Minimum time between publications of new matches to readers during ingestion
+    private static final long PUBLISH_INTERVAL_MILLIS = 1000;
+    // Patches kept as separate segments, about half a year of patches. Older ones only count towards the lifetime data
+    private static final int MAX_PATCH_SEGMENTS = 12;
 
-    // Stores champion names and their IDs
-    Map<String, String> championList;
-    // Stores matchup data for each champion against other champions
-    static Map<String, Map<String,ChampionMatchupData>> championData;
+    // Stores champion names and their IDs. Replaced by the background refresh when a new game version is released
+    volatile Map<String, String> championList;
+    // Assigns each champion a dense ID used to index the matchup data
+    static ChampionIndex championIndex = new ChampionIndex();
+    // Stores matchup data, the global win rate and the role and tier rollups of each champion. Matches are recorded into a working copy and
+    // published to readers as immutable epochs, starting from the mapped snapshot. Replaced by rebuildFromArchive
+    static volatile MatchupPublisher publisher;
+    // The last match event log generation included in the newest snapshot
+    private static long snapshotGeneration = 0;
+    // The segment matrices in the files of snapshotGeneration, by patch. Epochs share a segment until a match of its
+    // patch is published, so a segment that is still the same object has not changed since its file was written
+    private static Map<Integer, MatchupMatrix> writtenSegments = new HashMap<>();
 
-    // Stores global win rates for each champion
-    static Map<String, ChampionMatchupData> globalChampionWinrate;
     // Stores IDs of matches that have been processed to avoid reprocessing
-    static Set<String> processedMatchIds = new HashSet<>();
+    static ProcessedMatchIdStore processedMatchIds;
+    // Records every processed match until it is folded into the snapshot files
+    static MatchEventLog matchLog;
+    // The raw JSON of every processed match, kept so the data can be rebuilt without downloading the matches again
+    static MatchArchive matchArchive;
+    // Held shared while a match is logged, archived and recorded, and exclusively by checkpoint() and
+    // rebuildFromArchive(), so a snapshot always includes every match whose log record it discards
+    private static final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    // Set while a background segment compaction is running
+    private static final AtomicBoolean compacting = new AtomicBoolean();
+    // Parse buffers of each aggregation thread, reused for every match instead of allocating per match
+    private static final ThreadLocal<MatchBuffers> matchBuffers = ThreadLocal.withInitial(MatchBuffers::new);
+
+    private static final RateMeter matchesIngested = Metrics.meter("matches_ingested_total", "Matches parsed, logged and aggregated");
+    private static final LatencyHistogram logAppendLatency = Metrics.histogram("match_log_append_seconds", "Time to append a match to the event log, including the batched fsyncs");
+    private static final LatencyHistogram checkpointLatency = Metrics.histogram("checkpoint_seconds", "Time to publish and write a snapshot with its patch segments");
+
+    private static class MatchBuffers {
+        final MatchSummary summary = new MatchSummary();
+        int[] championIds = new int[10];
+        int[] teamIds = new int[10];
+        int[] roles = new int[10];
+    }
 
     // Constructor is private to prevent instantiation from outside and to facilitate the Singleton pattern
     private DataStorage() throws IOException {
-        // Updates the game version and initializes data from files or API as necessary
-        String updatedVersion = VersionInfo.getUpdatedVersionInfo();
-        if (!Objects.equals(VersionInfo.readVersionFromFile(), updatedVersion)) {
-            gameVersion = updatedVersion;
-            VersionInfo.saveVersionToFile(gameVersion);
-        }
-        generateChampionList();
-        checkAndUpdateDataFile();
-        checkAndUpdateWinrateFile();
+        // Starts from the cached version and champion list, and checks for a new version in the background. A first
+        // run has no list to start from, so it waits for the current one instead of starting from an old version
+        String cachedVersion = VersionInfo.readVersionFromFile();
+        boolean cached = readChampionList();
+        if (!cached && !StaticDataRefresher.refreshNow(this::updateChampionList)) {
+            // Without a connection the list starts empty and the champions in the stored matchup data are still available
+            championList = new HashMap<>();
+        }
+        loadSnapshot();
         readProcessedMatchIdsFromFile();
+        openMatchLog();
+        openMatchArchive();
+        if (cached) {
+            StaticDataRefresher.refreshInBackground((cachedVersion == null || cachedVersion.isBlank()) ? null : cachedVersion, this::updateChampionList);
+        }
     }
 
     /**
@@ -59,218 +108,494 @@ public class DataStorage {
 
     // Getters for accessing various types of stored data
     public Map<String, String> getChampionList() { return championList; }
-    public Map<String, ChampionMatchupData> getGlobalChampionWinrate() { return globalChampionWinrate; }
-    public Map<String, Map<String, ChampionMatchupData>> getChampionData() { return championData; }
+    public Map<String, ChampionMatchupData> getGlobalChampionWinrate() { return getMatchupTable().getGlobalWinrates(); }
+    public ChampionIndex getChampionIndex() { return championIndex; }
+    // The latest published matchup data. It never changes, so callers can keep reading it while matches are applied
+    public MatchupTable getMatchupTable() { return publisher.current().getTable(); }
+    // The latest published epoch, with the lifetime data and the segment of each tracked patch
+    public static MatchupEpoch getPublishedEpoch() { return publisher.current(); }
 
     /**
-     * Generates the champion list by fetching data from an external API and storing it in a file.
-     * This is called if the game version updates or the list file does not exist.
+     * Returns the precomputed counters of each enemy for the latest published epoch. Does not lock unless the
+     * epoch's index has not been built yet, in which case the first callers wait for the build.
      */
-    private void generateChampionList() {
-        String url = "https://ddragon.leagueoflegends.com/cdn/" + gameVersion + "/data/en_US/champion.json";
-        championList = null;
-        try {
-            String jsonResponse = RiotAPI.getJsonResponse(url);
-            championList = RiotAPI.getChampionNamesAndIds(jsonResponse);
-        } catch (Exception e) {
-            e.printStackTrace();
+    public static CounterIndex getCounterIndex() {
+        return publisher.current().getCounterIndex();
+    }
+
+    /**
+     * Loads the champion list cached by a previous run.
+     * @return True if a cached list was found.
+     */
+    private boolean readChampionList() {
+        File listFile = new File(LIST_FILE_PATH);
+        if (listFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(listFile))) {
+                Type type = new TypeToken<Map<String, String>>() {
+                }.getType();
+                Map<String, String> cachedList = new Gson().fromJson(reader, type);
+                if (cachedList != null && !cachedList.isEmpty()) {
+                    championList = cachedList;
+                    return true;
+                }
+            } catch (Exception e) {
+                Log.error("Error reading champion list file: {}", e.getMessage());
+            }
         }
+        return false;
+    }
+
+    private static void writeChampionList(Map<String, String> list) {
         Gson gson = new Gson();
         try (FileWriter writer = new FileWriter(LIST_FILE_PATH)) {
-            gson.toJson(championList, writer);
+            gson.toJson(list, writer);
         } catch (IOException e) {
-            System.out.println("Error creating champion data file: " + e.getMessage());
+            Log.error("Error creating champion data file: {}", e.getMessage());
         }
     }
 
     /**
-     * Checks the existing data file for champion data, updates it with any new champions or matchups,
-     * and writes the updated data back to the file.
+     * Called by the background refresh when a new game version is released. Only champions that are not in the
+     * index yet are added; interning appends them, so existing champion IDs and matchup data are left untouched.
      */
-    private void checkAndUpdateDataFile() {
-        File dataFile = new File(DATA_FILE_PATH);
-        Gson gson = new Gson();
-        if (dataFile.exists()) {
-            // Load data from the file
-            try (BufferedReader reader = new BufferedReader(new FileReader(DATA_FILE_PATH))) {
-                Type type = new TypeToken<Map<String, Map<String, ChampionMatchupData>>>() {
-                }.getType();
-                championData = gson.fromJson(reader, type);
-            } catch (IOException e) {
-                System.out.println("Error reading champion data file: " + e.getMessage());
+    private void updateChampionList(String version, Map<String, String> newList) {
+        for (String champion : newList.keySet()) {
+            if (!championIndex.contains(champion)) {
+                Log.info("New champion: {}", champion);
+                championIndex.intern(champion);
             }
-        } else {
-            championData = new HashMap<>();
         }
-        boolean dataUpdated = false;
-        for (String champion : championList.keySet()) {
-            if (championData.containsKey(champion)) {
-                championData.get(champion).remove("all");
+        championList = newList;
+        writeChampionList(newList);
+        VersionInfo.saveVersionToFile(version);
+    }
+
+    /**
+     * Loads the matchup data from the newest valid binary snapshot. Without one, the JSON data files are loaded
+     * and converted into a snapshot so the next startup can map it directly.
+     */
+    private void loadSnapshot() throws IOException {
+        MappedSnapshot snapshot = openLatestSnapshot();
+        if (snapshot != null) {
+            championIndex = snapshot.getIndex();
+            snapshotGeneration = snapshot.getGeneration();
+            publisher = new MatchupPublisher(snapshot, loadSegments(snapshotGeneration), PUBLISH_INTERVAL_MILLIS);
+            writtenSegments = new HashMap<>(publisher.current().getSegments());
+            for (String champion : championList.keySet()) {
+                championIndex.intern(champion);
             }
-            if (!championData.containsKey(champion)) {
-                championData.put(champion, new HashMap<>());
-                dataUpdated = true;
+        } else {
+            MatchupMatrix matrix = importJson();
+            publisher = new MatchupPublisher(matrix, PUBLISH_INTERVAL_MILLIS);
+            writeSnapshot(matrix, Collections.emptyNavigableMap(), readCheckpointGeneration());
+        }
+        Metrics.gauge("matchup_heap_bytes", "Estimated heap used by the published and working matchup matrices", () -> publisher.estimatedHeapBytes());
+    }
+
+    // Maps the snapshot with the highest generation, falling back to older ones if it fails its checks
+    private static MappedSnapshot openLatestSnapshot() {
+        for (Path path : listSnapshots()) {
+            try {
+                return MappedSnapshot.open(path);
+            } catch (IOException e) {
+                Log.error("Error reading snapshot {}: {}", path, e.getMessage());
             }
-            for (String otherChampion : championList.keySet()) {
-                if (!champion.equals(otherChampion) && !championData.get(champion).containsKey(otherChampion)) {
-                    championData.get(champion).put(otherChampion, new ChampionMatchupData(0, 0));
-                    dataUpdated = true;
+        }
+        return null;
+    }
+
+    // Returns the snapshot files in the working directory, newest generation first
+    private static List<Path> listSnapshots() {
+        List<Path> snapshots = new ArrayList<>();
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith(SNAPSHOT_FILE_PREFIX) && name.endsWith(SNAPSHOT_FILE_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                if (snapshotGenerationOf(file.toPath()) >= 0) {
+                    snapshots.add(file.toPath());
                 }
             }
         }
-        // Save updated data to the file
-        if (dataUpdated) {
-            try (FileWriter writer = new FileWriter(DATA_FILE_PATH, false)) {
-                gson.toJson(championData, writer);
+        snapshots.sort(Comparator.comparingLong(DataStorage::snapshotGenerationOf).reversed());
+        return snapshots;
+    }
+
+    /**
+     * Loads the patch segments written with the snapshot of the given generation. Segments are written before the
+     * snapshot, so files of another generation belong to an older snapshot or an unfinished checkpoint.
+     */
+    private static NavigableMap<Integer, MatchupMatrix> loadSegments(long generation) {
+        NavigableMap<Integer, MatchupMatrix> segments = new TreeMap<>();
+        for (Path path : listSegments()) {
+            long[] key = segmentKeyOf(path);
+            if (key[1] != generation) {
+                continue;
+            }
+            try {
+                segments.put((int) key[0], MatchupMatrix.copyOf(MappedSnapshot.open(path), championIndex));
             } catch (IOException e) {
-                System.out.println("Error updating champion data file: " + e.getMessage());
+                Log.error("Error reading patch segment {}: {}", path, e.getMessage());
             }
         }
+        return segments;
+    }
+
+    private static List<Path> listSegments() {
+        List<Path> segments = new ArrayList<>();
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SNAPSHOT_FILE_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                if (segmentKeyOf(file.toPath())[0] >= 0) {
+                    segments.add(file.toPath());
+                }
+            }
+        }
+        return segments;
+    }
+
+    // Reads the patch key and generation from a segment file name, or -1 for both if it is not a segment name
+    private static long[] segmentKeyOf(Path path) {
+        String name = path.getFileName().toString();
+        String[] parts = name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SNAPSHOT_FILE_SUFFIX.length()).split("-");
+        try {
+            return new long[]{Integer.parseInt(parts[0]), Long.parseLong(parts[1])};
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return new long[]{-1, -1};
+        }
+    }
+
+    // Reads the generation from a snapshot file name, or -1 if the name is not a snapshot name
+    private static long snapshotGenerationOf(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SNAPSHOT_FILE_PREFIX.length(), name.length() - SNAPSHOT_FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     /**
-     * Checks the global win rate file, updates it with new data as necessary,
-     * and writes the updated data back to the file.
+     * Writes the matchup data and global win rates to a new snapshot file and removes the older ones.
+     * The patch segments are written first, in the same format, so the snapshot only appears once its segments exist.
+     * Only the segments changed since the last snapshot are written; the files of the others are carried forward.
+     * Removing a snapshot that is still mapped can fail on some systems, in which case it is removed on a later checkpoint.
+     * @param table The data to write.
+     * @param segments The segment of each tracked patch.
+     * @param generation The last match event log generation included in the data.
      */
-    private void checkAndUpdateWinrateFile() {
-        File dataFile = new File(GLOBAL_WINRATE_FILE_PATH);
-        Gson gson = new Gson();
-        if (dataFile.exists()) {
-            // Load data from the file
-            try (BufferedReader reader = new BufferedReader(new FileReader(GLOBAL_WINRATE_FILE_PATH))) {
-                Type type = new TypeToken<Map<String, ChampionMatchupData>>() {
-                }.getType();
-                globalChampionWinrate = gson.fromJson(reader, type);
+    private static void writeSnapshot(MatchupTable table, NavigableMap<Integer, MatchupMatrix> segments, long generation) throws IOException {
+        for (Map.Entry<Integer, MatchupMatrix> segment : segments.entrySet()) {
+            Path path = segmentPath(segment.getKey(), generation);
+            if (writtenSegments.get(segment.getKey()) != segment.getValue() || !carryForward(segmentPath(segment.getKey(), snapshotGeneration), path)) {
+                MappedSnapshot.write(path, segment.getValue(), generation);
+            }
+        }
+        MappedSnapshot.write(Paths.get(SNAPSHOT_FILE_PREFIX + generation + SNAPSHOT_FILE_SUFFIX), table, generation);
+        snapshotGeneration = generation;
+        writtenSegments = new HashMap<>(segments);
+        List<Path> old = new ArrayList<>();
+        for (Path path : listSnapshots()) {
+            if (snapshotGenerationOf(path) < generation) {
+                old.add(path);
+            }
+        }
+        for (Path path : listSegments()) {
+            if (segmentKeyOf(path)[1] < generation) {
+                old.add(path);
+            }
+        }
+        for (Path path : old) {
+            try {
+                Files.deleteIfExists(path);
             } catch (IOException e) {
-                System.out.println("Error reading champion data file: " + e.getMessage());
+                Log.warn("Could not remove old snapshot {}: {}", path, e.getMessage());
             }
-        } else {
-            globalChampionWinrate = new HashMap<>();
         }
-        boolean dataUpdated = false;
+    }
+
+    private static Path segmentPath(int patch, long generation) {
+        return Paths.get(SEGMENT_FILE_PREFIX + patch + "-" + generation + SNAPSHOT_FILE_SUFFIX);
+    }
+
+    /**
+     * Gives an unchanged segment file the name of a newer generation by hard-linking it, or copying it where links
+     * are not supported. The header keeps the generation the file was written at; segments are matched to their
+     * snapshot by name. Returns false if the file could not be carried forward, so the caller writes it instead.
+     */
+    private static boolean carryForward(Path previous, Path path) {
+        if (previous.equals(path)) {
+            return Files.exists(path);
+        }
+        try {
+            // A file of this name can only be left over from a checkpoint that did not finish
+            Files.deleteIfExists(path);
+            try {
+                Files.createLink(path, previous);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(previous, path);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.warn("Could not carry patch segment {} forward: {}", previous, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads champion_data.json and global_winrate_data.json, the data files used before binary snapshots.
+     * A champion in the list but missing from the global win rate file gets a global record summed from its matchups.
+     */
+    private MatchupMatrix importJson() throws IOException {
+        MatchupMatrix matrix = SnapshotConverter.readMatchupJson(DATA_FILE_PATH, championIndex);
+        Map<String, ChampionMatchupData> global = SnapshotConverter.readGlobalJson(GLOBAL_WINRATE_FILE_PATH);
+        SnapshotConverter.addGlobalJson(matrix, global);
         for (String champion : championList.keySet()) {
-            if (!globalChampionWinrate.containsKey(champion)) {
-                ChampionMatchupData newData = new ChampionMatchupData(0,0);
-                for (String otherChampion : championList.keySet()) {
-                    if (!champion.equals(otherChampion)) {
-                        newData.addGames(championData.get(champion).get(otherChampion).getGames());
-                        newData.addWins(championData.get(champion).get(otherChampion).getWins());
+            int championId = championIndex.intern(champion);
+            if (!global.containsKey(champion)) {
+                for (int otherId = 0; otherId < championIndex.size(); otherId++) {
+                    if (otherId != championId) {
+                        matrix.addGlobal(championId, matrix.getWins(championId, otherId), matrix.getGames(championId, otherId));
                     }
                 }
-                globalChampionWinrate.put(champion, newData);
-                dataUpdated = true;
-            }
-        }
-        // Save updated data to the file
-        if (dataUpdated) {
-            try (FileWriter writer = new FileWriter(GLOBAL_WINRATE_FILE_PATH, false)) {
-                gson.toJson(globalChampionWinrate, writer);
-            } catch (IOException e) {
-                System.out.println("Error updating champion data file: " + e.getMessage());
             }
         }
+        return matrix;
+    }
+
+    // Processes a match that was not found through a league, so it only counts towards the UNKNOWN tier
+    public static boolean processGameData(String matchData) {
+        return processGameData(matchData, Tier.UNKNOWN);
     }
 
     /**
-     * Processes new match data, updating champion matchup data and global win rates based on the results.
+     * Processes new match data, updating champion matchup data, global win rates and the role and tier rollups.
+     * Safe to call from several aggregation threads at once: each has its own parse buffers and aggregator stripe.
+     * Readers see the match once the publisher next publishes, at most PUBLISH_INTERVAL_MILLIS after it is recorded
+     * while ingestion is running, and at the latest on the next checkpoint.
      * @param matchData The JSON string containing data about the match.
+     * @param tier The tier of the league the match was found through.
+     * @return True if the match was logged and applied, false if it could not be parsed or logged.
      */
-    public static void processGameData(String matchData) {
-        // Get the participants and their team ID
-        Gson gson = new Gson();
-        JsonObject matchDataJson = gson.fromJson(matchData, JsonObject.class);
-        if (matchDataJson == null) {
-            System.out.println("Error parsing match data: null JsonObject");
-            return;
+    public static boolean processGameData(String matchData, Tier tier) {
+        // Get the participants, their team ID and role, and the winning team ID
+        MatchBuffers buffers = matchBuffers.get();
+        MatchSummary summary = buffers.summary;
+        if (!MatchParser.parse(matchData, summary)) {
+            return false;
         }
-        JsonObject info = matchDataJson.getAsJsonObject("info");
-        if (info == null) {
-            System.out.println("Error parsing match data: info field is null");
-            return;
+        String matchId = summary.getMatchId();
+        int participantCount = summary.getParticipantCount();
+        if (participantCount > buffers.championIds.length) {
+            buffers.championIds = new int[participantCount];
+            buffers.teamIds = new int[participantCount];
+            buffers.roles = new int[participantCount];
         }
-        JsonArray participants = info.getAsJsonArray("participants");
-        if (participants == null) {
-            System.out.println("Error parsing match data: participants field is null");
-            return;
+        int[] championIds = buffers.championIds;
+        int[] teamIds = buffers.teamIds;
+        int[] roles = buffers.roles;
+        for (int i = 0; i < participantCount; i++) {
+            championIds[i] = championIndex.intern(summary.getChampionName(i).toLowerCase(Locale.ROOT));
+            teamIds[i] = summary.getTeamId(i);
+            roles[i] = summary.getRole(i).ordinal();
         }
-        Map<String, Integer> championIdToTeam = new HashMap<>();
-        for (JsonElement participantElement : participants) {
-            JsonObject participant = participantElement.getAsJsonObject();
-            String championId = participant.get("championName").getAsString().toLowerCase();
-            int teamId = participant.get("teamId").getAsInt();
-            championIdToTeam.put(championId, teamId);
-        }
-        // Get the winning team ID
-        JsonArray teams = info.getAsJsonArray("teams");
-        int winningTeamId = -1;
-        // Print the teams JsonArray
-        for (JsonElement teamElement : teams) {
-            JsonObject team = teamElement.getAsJsonObject();
-            // Print the team JsonObject and the win value
-            if (team.get("win").getAsBoolean()) {
-                winningTeamId = team.get("teamId").getAsInt();
-                break;
+        int winningTeamId = summary.getWinningTeamId();
+        checkpointLock.readLock().lock();
+        try {
+            // Log the match before applying it so it can be replayed after a crash
+            long appendStart = System.nanoTime();
+            try {
+                matchLog.append(matchId, championIds, teamIds, roles, participantCount, winningTeamId, tier.ordinal(), summary.getPatch(), championIndex);
+            } catch (IOException e) {
+                Log.error("Error appending to match event log: {}", e.getMessage());
+                return false;
             }
+            logAppendLatency.recordSince(appendStart);
+            // Archived under the lock too, so a rebuild that discards the log always finds the match in the archive
+            try {
+                matchArchive.append(matchId, matchData, tier);
+            } catch (IOException e) {
+                Log.error("Error archiving match {}: {}", matchId, e.getMessage());
+            }
+            publisher.record(championIds, teamIds, roles, participantCount, winningTeamId, tier.ordinal(), summary.getPatch());
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        matchesIngested.mark();
+        publisher.publishIfDue();
+        if (matchLog.getMatchCount() >= COMPACTION_THRESHOLD) {
+            checkpointIfFull();
         }
-        // Update championData
-        for (String championId : championIdToTeam.keySet()) {
-            boolean won = championIdToTeam.get(championId) == winningTeamId;
-            Map<String, ChampionMatchupData> winRateAgainst = championData.computeIfAbsent(championId, k -> new HashMap<>());
-
-            for (String otherChampionId : championIdToTeam.keySet()) {
-                if (!Objects.equals(championIdToTeam.get(otherChampionId), championIdToTeam.get(championId))) { // If champions are on opposite teams
-                    ChampionMatchupData matchupData = winRateAgainst.get(otherChampionId);
-                    //Adds winrate data if none exists
-                    if (matchupData == null) {
-                        matchupData = new ChampionMatchupData(0,0);
-                        winRateAgainst.put(otherChampionId, matchupData);
+        return true;
+    }
+
+    /**
+     * Opens the match event log and replays any matches that were logged after the last checkpoint.
+     */
+    private void openMatchLog() throws IOException {
+        matchLog = MatchEventLog.open(Paths.get(EVENT_LOG_FILE_PATH), snapshotGeneration, championIndex,
+                (matchId, championIds, teamIds, roles, participantCount, winningTeamId, tier, patch) -> {
+                    publisher.record(championIds, teamIds, roles, participantCount, winningTeamId, tier, patch);
+                    // The ID file is synced in batches, so the log is the authority on which matches were applied
+                    if (!matchId.isEmpty()) {
+                        writeProcessedMatchIdToFile(matchId);
                     }
-                    //Updates the champ's global winrate vs 'all', all's winrate vs all, and vs the new champion
-                    globalChampionWinrate.computeIfAbsent(championId, k -> new ChampionMatchupData(0, 0));
-                    globalChampionWinrate.get(championId).updateWinRate(won);
-                    matchupData.updateWinRate(won);
+                },
+                LOG_SYNC_BATCH_SIZE);
+        publisher.publish();
+        // Make sure batched records reach the disk if the program is closed mid-crawl
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                matchLog.sync();
+                processedMatchIds.sync();
+            } catch (IOException e) {
+                Log.error("Error syncing match event log: {}", e.getMessage());
+            }
+        }));
+    }
+
+    // Opens the archive of raw match payloads in the working directory
+    private static void openMatchArchive() throws IOException {
+        matchArchive = MatchArchive.open(Paths.get("."));
+        Metrics.gauge("match_archive_matches", "Matches in the raw match archive", () -> matchArchive.size());
+        Metrics.gauge("match_archive_bytes", "Size of the raw match archive files", () -> matchArchive.getBytes());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                matchArchive.sync();
+            } catch (IOException e) {
+                Log.error("Error syncing match archive: {}", e.getMessage());
+            }
+        }));
+    }
+
+    public static MatchArchive getMatchArchive() {
+        return matchArchive;
+    }
+
+    public static int getProcessedMatchCount() {
+        return processedMatchIds.size();
+    }
+
+    /**
+     * Folds the match event log into a new snapshot. The snapshot records the log generation it includes,
+     * so the log can be emptied afterwards without any window where a crash would replay it twice.
+     * Every match in the log is published to readers first, and the snapshot is written from that epoch.
+     */
+    public static synchronized void checkpoint() {
+        long start = System.nanoTime();
+        checkpointLock.writeLock().lock();
+        try {
+            MatchupEpoch epoch = publisher.publish();
+            matchLog.sync();
+            processedMatchIds.sync();
+            matchArchive.sync();
+            writeSnapshot(epoch.getTable(), epoch.getSegments(), matchLog.getGeneration());
+            matchLog.reset(matchLog.getGeneration());
+            checkpointLatency.recordSince(start);
+        } catch (IOException e) {
+            Log.error("Error writing checkpoint: {}", e.getMessage());
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        if (publisher.current().getSegments().size() > MAX_PATCH_SEGMENTS) {
+            compactSegmentsInBackground();
+        }
+    }
+
+    /**
+     * Replaces the matchup data with data rebuilt from the match archive, see MatchupRebuilder. Ingestion waits
+     * until the rebuild is done. The result is published and written as a new snapshot, which also discards the
+     * event log, since every match in it is archived too. Matches processed before the archive existed are not in
+     * it, so callers should check how much of the data the archive covers first.
+     * @param pool The pool the rebuild runs on.
+     */
+    public static synchronized MatchupRebuilder.Result rebuildFromArchive(ForkJoinPool pool) throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            matchArchive.sync();
+            MatchupRebuilder.Result result = MatchupRebuilder.rebuild(matchArchive, championIndex, pool);
+            publisher = new MatchupPublisher(result.lifetime(), result.segments(), PUBLISH_INTERVAL_MILLIS);
+            matchLog.sync();
+            processedMatchIds.sync();
+            writeSnapshot(result.lifetime(), result.segments(), matchLog.getGeneration());
+            matchLog.reset(matchLog.getGeneration());
+            return result;
+        } finally {
+            checkpointLock.writeLock().unlock();
+            if (publisher.current().getSegments().size() > MAX_PATCH_SEGMENTS) {
+                compactSegmentsInBackground();
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest patch segments on a background thread, so the checkpoint and ingestion do not wait for it.
+     * Their matches stay in the lifetime data, and their files are removed by the next checkpoint.
+     */
+    private static void compactSegmentsInBackground() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("patch-segment-compaction").start(() -> {
+            try {
+                List<Integer> dropped = publisher.compact(MAX_PATCH_SEGMENTS);
+                for (int patch : dropped) {
+                    Log.info("Compacted patch {} into the lifetime data", PatchVersion.format(patch));
                 }
+            } finally {
+                compacting.set(false);
             }
+        });
+    }
+
+    // Checkpoints unless another thread reaching the threshold at the same time already has
+    private static synchronized void checkpointIfFull() {
+        if (matchLog.getMatchCount() >= COMPACTION_THRESHOLD) {
+            checkpoint();
         }
-        // Save the updated championData to the file
-        try (FileWriter writer = new FileWriter(DATA_FILE_PATH, false)) {
-            gson.toJson(championData, writer);
+    }
+
+    // Writes the matchup data and global win rates to champion_data.json and global_winrate_data.json
+    public static synchronized void exportJson() {
+        try {
+            SnapshotConverter.writeJson(publisher.publish().getTable(), DATA_FILE_PATH, GLOBAL_WINRATE_FILE_PATH);
         } catch (IOException e) {
-            System.out.println("Error updating champion data file: " + e.getMessage());
+            Log.error("Error exporting champion data: {}", e.getMessage());
         }
     }
 
-    //NEW ATTEMPT
-    public static void readProcessedMatchIdsFromFile() throws IOException {
-        File dataFile = new File(PROCESSED_FILE_PATH);
-        Gson gson = new Gson();
-        if (dataFile.exists()) {
-            // Directly read the HashSet from the file
-            try (Reader reader = new FileReader(PROCESSED_FILE_PATH)) {
-                Type setType = new TypeToken<HashSet<String>>() {}.getType();
-                processedMatchIds = gson.fromJson(reader, setType);
-                if (processedMatchIds == null) {
-                    processedMatchIds = new HashSet<>();
-                }
-            } catch (FileNotFoundException e) {
-                System.err.println("Processed matches file not found: " + e.getMessage());
+    // Returns the generation in the checkpoint file written before binary snapshots existed, or 0 if there is none
+    private static long readCheckpointGeneration() {
+        File checkpointFile = new File(CHECKPOINT_FILE_PATH);
+        if (checkpointFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(checkpointFile))) {
+                return Long.parseLong(reader.readLine().trim());
+            } catch (IOException | NumberFormatException | NullPointerException e) {
+                Log.error("Error reading checkpoint file: {}", e.getMessage());
             }
-        } else {
-            processedMatchIds = new HashSet<>();
         }
+        return 0;
+    }
+
+    /**
+     * Loads the IDs of processed matches from the binary ID file, importing processed_match_ids.json on first use.
+     */
+    public static void readProcessedMatchIdsFromFile() throws IOException {
+        processedMatchIds = new ProcessedMatchIdStore(PROCESSED_BINARY_FILE_PATH, PROCESSED_FILE_PATH);
     }
 
     public static void writeProcessedMatchIdToFile(String matchId) {
-        // No need to check if the ID already exists, HashSet takes care of uniqueness
-        boolean isNew = processedMatchIds.add(matchId);
-        if (isNew) {
-            // If the match ID was indeed new and added, then persist the updated set
-            Gson gson = new Gson();
-            try (Writer writer = new FileWriter(PROCESSED_FILE_PATH, false)) {
-                gson.toJson(processedMatchIds, writer);
-            } catch (IOException e) {
-                System.err.println("Error writing processed match IDs to file: " + e.getMessage());
-            }
+        try {
+            processedMatchIds.add(matchId);
+        } catch (IOException e) {
+            Log.error("Error writing processed match IDs to file: {}", e.getMessage());
+        }
+    }
+
+    // Writes every processed match ID to processed_match_ids.json
+    public static void exportProcessedMatchIds() {
+        try {
+            processedMatchIds.exportJson(PROCESSED_FILE_PATH);
+        } catch (IOException e) {
+            Log.error("Error exporting processed match IDs: {}", e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,617 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the best picks for the open slots of a draft by scoring whole compositions instead of one champion at a
+ * time. A composition's score is the sum of win rate deltas over its picks:
+ *   - each pick's record against every enemy, over its global win rate, as CounterIndex ranks counters: in the
+ *     lane of its slot where the pair has enough games there, and in any position otherwise
+ *   - each pick's record with every locked ally and every other pick, over the pair's average global win rate
+ *   - each pick's record in the role of its slot, over its global win rate
+ * Records with fewer than CounterIndex.MIN_GAMES games count as 0. Slots are filled by a depth-first search over
+ * each slot's candidates, best first, which stops as soon as the score so far plus an upper bound for the slots
+ * left cannot beat the k-th best composition found. Slots with the same role are interchangeable, so their picks
+ * are only searched in increasing candidate order. The candidates of the first slot are searched in parallel,
+ * sharing the best compositions so every branch prunes against the best score found by any of them.
+ */
+public class DraftEvaluator {
+
+    public static final int TEAM_SIZE = 5;
+    // Candidates kept for the later slots of a role beyond one per slot, to bound them without a scan per candidate
+    private static final int SPARE_CANDIDATES = 4;
+
+    /**
+     * A champion picked for a slot. The role is UNKNOWN for a slot open to any role.
+     */
+    public record Pick(String champion, Role role) {
+    }
+
+    /**
+     * A composition of picks for the open slots, in the order the slots were given, with its score.
+     */
+    public record Draft(List<Pick> picks, double score) {
+    }
+
+    private final MatchupTable table;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param table The matchup, synergy and role data to score with. It must not change during a search.
+     * @param pool The pool to search on.
+     */
+    public DraftEvaluator(MatchupTable table, ForkJoinPool pool) {
+        this.table = table;
+        this.pool = pool;
+    }
+
+    public DraftEvaluator(MatchupTable table) {
+        this(table, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the best compositions for the open slots of a team.
+     * @param allies The champion IDs already locked in on the team. IDs outside the index are ignored.
+     * @param enemies The champion IDs of the enemy team. IDs outside the index are ignored.
+     * @param openRoles The role of each open slot, or UNKNOWN for a slot open to any role. At least 1, and no
+     *                  more than the slots the allies leave; a role other than UNKNOWN may only be given once.
+     * @param roleMasks The Role mask of the roles each champion can play, by ID, which a slot's champion must
+     *                  include the slot's role in. Null to let any champion fill any slot.
+     * @param k The number of compositions to return.
+     * @return The best compositions, best first. Fewer than k if there are not enough candidates.
+     * @throws IllegalArgumentException If the open slots are not valid for the team.
+     */
+    public List<Draft> bestDrafts(int[] allies, int[] enemies, Role[] openRoles, int[] roleMasks, int k) {
+        int slots = openRoles.length;
+        if (slots < 1 || slots + allies.length > TEAM_SIZE) {
+            throw new IllegalArgumentException("A team has between 1 and " + (TEAM_SIZE - allies.length) + " open slots left, not " + slots);
+        }
+        boolean[] rolesTaken = new boolean[Role.COUNT];
+        for (Role role : openRoles) {
+            if (role != Role.UNKNOWN && rolesTaken[role.ordinal()]) {
+                throw new IllegalArgumentException("The " + role.getShortName() + " slot is open more than once");
+            }
+            rolesTaken[role.ordinal()] = true;
+        }
+        Search search = new Search(allies, enemies, openRoles, roleMasks, Math.max(1, k));
+        pool.invoke(new RootTask(search));
+        return search.results.drafts(search);
+    }
+
+    // Global win rate of a champion, or NaN if it has no games
+    private double globalRate(int champion) {
+        int games = table.getGlobalGames(champion);
+        return (games == 0) ? Double.NaN : (double) table.getGlobalWins(champion) / games;
+    }
+
+    /**
+     * The scores and candidate orders of one query, and the best compositions found so far. Candidates are
+     * renumbered 0..n-1 so the pair scores between them fit a small dense array.
+     */
+    private class Search {
+        final int slots;
+        final Role[] openRoles;
+        // Champion ID of each candidate
+        final int[] champions;
+        // value[slot][candidate]: the candidate's score against the enemies, with the allies and in the slot's role
+        final double[][] value;
+        // pair[a * n + b]: the synergy score of two candidates on the same team
+        final double[] pair;
+        // topPairs[c * slots + j]: the sum of the candidate's j best positive synergies with other candidates
+        final double[] topPairs;
+        // Slots in search order, and each slot's candidates sorted by their bound, best first
+        final int[] slotOrder;
+        final int[][] order;
+        final double[][] bound;
+        // sameRole[d]: the last depth before d whose slot has the same role, or -1
+        final int[] sameRole;
+        // remaining[d]: the best bound of every slot searched after depth d - 1, summed
+        final double[] remaining;
+        final TopDrafts results;
+
+        Search(int[] allies, int[] enemies, Role[] openRoles, int[] roleMasks, int k) {
+            this.slots = openRoles.length;
+            this.openRoles = openRoles;
+            int size = table.getIndex().size();
+            double[] rates = new double[size];
+            for (int champion = 0; champion < size; champion++) {
+                rates[champion] = globalRate(champion);
+            }
+            boolean[] locked = new boolean[size];
+            for (int champion : allies) {
+                if (champion >= 0 && champion < size) {
+                    locked[champion] = true;
+                }
+            }
+            for (int champion : enemies) {
+                if (champion >= 0 && champion < size) {
+                    locked[champion] = true;
+                }
+            }
+
+            // Every champion that may fill at least one slot and has games to be scored from
+            int[] candidates = new int[size];
+            int n = 0;
+            for (int champion = 0; champion < size; champion++) {
+                if (locked[champion] || Double.isNaN(rates[champion])) {
+                    continue;
+                }
+                for (int slot = 0; slot < slots; slot++) {
+                    if (CounterIndex.canPlay(roleMasks, champion, openRoles[slot])) {
+                        candidates[n++] = champion;
+                        break;
+                    }
+                }
+            }
+            champions = Arrays.copyOf(candidates, n);
+
+            double[] withAllies = new double[n];
+            for (int c = 0; c < n; c++) {
+                for (int ally : allies) {
+                    if (ally >= 0 && ally < size) {
+                        withAllies[c] += synergyScore(champions[c], ally, rates);
+                    }
+                }
+            }
+            value = new double[slots][n];
+            for (int slot = 0; slot < slots; slot++) {
+                Role role = openRoles[slot];
+                for (int c = 0; c < n; c++) {
+                    int champion = champions[c];
+                    if (!CounterIndex.canPlay(roleMasks, champion, role)) {
+                        value[slot][c] = Double.NaN;
+                        continue;
+                    }
+                    double score = withAllies[c] + roleScore(champion, role, rates);
+                    for (int enemy : enemies) {
+                        if (enemy >= 0 && enemy < size) {
+                            score += counterScore(champion, enemy, role, rates);
+                        }
+                    }
+                    value[slot][c] = score;
+                }
+            }
+            renumberByValue();
+            pair = new double[(slots > 1) ? n * n : 0];
+            for (int a = 1; a < n && slots > 1; a++) {
+                for (int b = 0; b < a; b++) {
+                    double score = synergyScore(champions[a], champions[b], rates);
+                    pair[a * n + b] = score;
+                    pair[b * n + a] = score;
+                }
+            }
+            topPairs = new double[n * slots];
+            double[] best = new double[slots - 1];
+            for (int a = 0; a < n && slots > 1; a++) {
+                Arrays.fill(best, 0);
+                for (int b = 0; b < n; b++) {
+                    double score = pair[a * n + b];
+                    // best is kept in descending order, so a score only has to beat the last entry
+                    for (int i = best.length - 1; i >= 0 && score > best[i]; i--) {
+                        if (i + 1 < best.length) {
+                            best[i + 1] = best[i];
+                        }
+                        best[i] = score;
+                    }
+                }
+                for (int j = 0; j < best.length; j++) {
+                    topPairs[a * slots + j + 1] = topPairs[a * slots + j] + best[j];
+                }
+            }
+
+            order = new int[slots][];
+            Integer[] bySize = new Integer[slots];
+            List<List<Integer>> eligible = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                List<Integer> slotCandidates = new ArrayList<>();
+                for (int c = 0; c < n; c++) {
+                    if (!Double.isNaN(value[slot][c])) {
+                        slotCandidates.add(c);
+                    }
+                }
+                eligible.add(slotCandidates);
+                bySize[slot] = slot;
+            }
+            // The slots with the fewest candidates are filled first, so most branches are cut near the root
+            Arrays.sort(bySize, (a, b) -> Integer.compare(eligible.get(a).size(), eligible.get(b).size()));
+            slotOrder = new int[slots];
+            for (int depth = 0; depth < slots; depth++) {
+                slotOrder[depth] = bySize[depth];
+            }
+            // A pick's synergy with the picks of earlier slots is added when it is picked, so every pair is counted
+            // once. Candidates are sorted by their value plus their best synergies with the picks of later slots,
+            // which with the best synergy of any candidate with the earlier picks bounds what a pick can add
+            bound = new double[slots][];
+            remaining = new double[slots + 1];
+            for (int depth = slots - 1; depth >= 0; depth--) {
+                int slot = slotOrder[depth];
+                double[] slotBound = new double[n];
+                double slotBest = Double.NEGATIVE_INFINITY;
+                for (int c : eligible.get(slot)) {
+                    slotBound[c] = value[slot][c] + topPairs[c * slots + slots - depth - 1];
+                    // A pick at depth d gains at most its d best synergies with the earlier picks
+                    slotBest = Math.max(slotBest, value[slot][c] + topPairs[c * slots + depth]);
+                }
+                remaining[depth] = remaining[depth + 1] + slotBest;
+                List<Integer> slotCandidates = eligible.get(slot);
+                slotCandidates.sort((a, b) -> Double.compare(slotBound[b], slotBound[a]));
+                order[slot] = slotCandidates.stream().mapToInt(Integer::intValue).toArray();
+                bound[slot] = new double[order[slot].length];
+                for (int i = 0; i < order[slot].length; i++) {
+                    bound[slot][i] = slotBound[order[slot][i]];
+                }
+            }
+            // Slots with the same role (open to any role) are interchangeable, so their picks are only searched in
+            // increasing candidate order instead of in every order
+            sameRole = new int[slots];
+            for (int depth = 0; depth < slots; depth++) {
+                sameRole[depth] = -1;
+                for (int earlier = 0; earlier < depth; earlier++) {
+                    if (openRoles[slotOrder[earlier]] == openRoles[slotOrder[depth]]) {
+                        sameRole[depth] = earlier;
+                    }
+                }
+            }
+            results = new TopDrafts(k);
+        }
+
+        /**
+         * Fills the slots from the depth on, depth first.
+         * @param chosen The candidate picked for each slot so far, by slot.
+         * @param withPicks withPicks[depth][c]: the candidate's synergy with the picks so far, or -Infinity if it
+         *                  is one of them.
+         * @param score The score of the picks so far.
+         */
+        void search(int depth, int[] chosen, double[][] withPicks, double score) {
+            if (depth == slots) {
+                results.offer(chosen, score);
+                return;
+            }
+            LaterSlots later = new LaterSlots(depth, chosen, withPicks[depth]);
+            double bestWithPicks = Double.NEGATIVE_INFINITY;
+            for (double synergy : withPicks[depth]) {
+                bestWithPicks = Math.max(bestWithPicks, synergy);
+            }
+            int after = slots - depth - 1;
+            int slot = slotOrder[depth];
+            int[] candidates = order[slot];
+            for (int i = 0; i < candidates.length; i++) {
+                // Candidates are sorted by bound, so none of the rest can do better either
+                if (score + bound[slot][i] + bestWithPicks + later.base <= results.threshold()) {
+                    return;
+                }
+                int c = candidates[i];
+                if (sameRole[depth] >= 0 && c <= chosen[slotOrder[sameRole[depth]]]) {
+                    continue;
+                }
+                // The exact synergy with the earlier picks is usually well below the bound
+                double gain = value[slot][c] + withPicks[depth][c];
+                if (score + gain + topPairs[c * slots + after] + later.base <= results.threshold()
+                        || score + gain + later.bound(c, openRoles[slot]) <= results.threshold()) {
+                    continue;
+                }
+                chosen[slot] = c;
+                if (depth + 1 < slots) {
+                    pick(withPicks, depth, c);
+                }
+                search(depth + 1, chosen, withPicks, score + gain);
+            }
+        }
+
+        // Adds the synergy with the candidate picked at the depth to the synergy of every candidate for the next
+        void pick(double[][] withPicks, int depth, int c) {
+            int n = champions.length;
+            double[] previous = withPicks[depth];
+            double[] next = withPicks[depth + 1];
+            for (int other = 0; other < n; other++) {
+                next[other] = previous[other] + pair[other * n + c];
+            }
+            next[c] = Double.NEGATIVE_INFINITY;
+        }
+
+        /**
+         * The best candidates of each role of the slots after a depth, for an upper bound on what those slots add
+         * once a candidate is picked at the depth. The synergy between the picks of the later slots is split evenly
+         * between them, so each adds at most half of its best synergies with as many others.
+         */
+        private class LaterSlots {
+            final Role[] roles;
+            // The number of later slots of each role, and its best candidates by their bound, best first
+            final int[] counts;
+            final int[][] best;
+            final double[][] bounds;
+            // The bound of the best candidates of every role, summed, before the synergy with the pick at the depth
+            final double base;
+            final double[] top;
+
+            LaterSlots(int depth, int[] chosen, double[] withPicks) {
+                int groups = 0;
+                for (int later = depth + 1; later < slots; later++) {
+                    if (sameRole[later] <= depth) {
+                        groups++;
+                    }
+                }
+                roles = new Role[groups];
+                counts = new int[groups];
+                best = new int[groups][];
+                bounds = new double[groups][];
+                int partners = slots - depth - 2;
+                int group = 0;
+                for (int first = depth + 1; first < slots; first++) {
+                    // The slots of a role are counted with the first of them
+                    if (sameRole[first] > depth) {
+                        continue;
+                    }
+                    roles[group] = openRoles[slotOrder[first]];
+                    for (int later = first; later < slots; later++) {
+                        if (openRoles[slotOrder[later]] == roles[group]) {
+                            counts[group]++;
+                        }
+                    }
+                    int previous = sameRole[first];
+                    while (previous >= depth) {
+                        previous = sameRole[previous];
+                    }
+                    int from = (previous >= 0) ? chosen[slotOrder[previous]] + 1 : 0;
+                    int size = counts[group] + SPARE_CANDIDATES;
+                    int[] groupBest = new int[size];
+                    double[] groupBounds = new double[size];
+                    Arrays.fill(groupBounds, Double.NEGATIVE_INFINITY);
+                    double[] slotValue = value[slotOrder[first]];
+                    for (int c = from; c < champions.length; c++) {
+                        double score = slotValue[c] + withPicks[c] + topPairs[c * slots + partners] / 2;
+                        // Kept in descending order, so a score only has to beat the last entry
+                        for (int j = size - 1; j >= 0 && score > groupBounds[j]; j--) {
+                            if (j + 1 < size) {
+                                groupBounds[j + 1] = groupBounds[j];
+                                groupBest[j + 1] = groupBest[j];
+                            }
+                            groupBounds[j] = score;
+                            groupBest[j] = c;
+                        }
+                    }
+                    best[group] = groupBest;
+                    bounds[group] = groupBounds;
+                    group++;
+                }
+                double sum = 0;
+                for (group = 0; group < groups; group++) {
+                    for (int i = 0; i < counts[group]; i++) {
+                        sum += bounds[group][i];
+                    }
+                }
+                base = sum;
+                top = new double[slots];
+            }
+
+            /**
+             * An upper bound for what the later slots add once a candidate is picked at the depth. Candidates past
+             * the ones kept are bounded by the last one kept plus the picked candidate's best synergy.
+             * @param c The candidate picked at the depth.
+             * @param role The role of the slot at the depth.
+             */
+            double bound(int c, Role role) {
+                int n = champions.length;
+                double total = 0;
+                for (int group = 0; group < roles.length; group++) {
+                    int count = counts[group];
+                    Arrays.fill(top, 0, count, Double.NEGATIVE_INFINITY);
+                    int[] groupBest = best[group];
+                    double[] groupBounds = bounds[group];
+                    double rest = groupBounds[groupBounds.length - 1] + bestPair(c);
+                    for (int i = 0; i < groupBest.length + count; i++) {
+                        double score;
+                        if (i >= groupBest.length) {
+                            score = rest;
+                        } else if (groupBest[i] == c || (roles[group] == role && groupBest[i] < c)) {
+                            continue;
+                        } else {
+                            score = groupBounds[i] + pair[groupBest[i] * n + c];
+                        }
+                        for (int j = count - 1; j >= 0 && score > top[j]; j--) {
+                            if (j + 1 < count) {
+                                top[j + 1] = top[j];
+                            }
+                            top[j] = score;
+                        }
+                    }
+                    for (int j = 0; j < count; j++) {
+                        total += top[j];
+                    }
+                }
+                return total;
+            }
+        }
+
+        /**
+         * Renumbers the candidates by their best value, best first, so the increasing order searched for slots
+         * with the same role starts with the candidates most likely to be picked.
+         */
+        private void renumberByValue() {
+            int n = champions.length;
+            Integer[] byValue = new Integer[n];
+            double[] best = new double[n];
+            for (int c = 0; c < n; c++) {
+                byValue[c] = c;
+                best[c] = Double.NEGATIVE_INFINITY;
+                for (int slot = 0; slot < slots; slot++) {
+                    if (value[slot][c] > best[c]) {
+                        best[c] = value[slot][c];
+                    }
+                }
+            }
+            Arrays.sort(byValue, (a, b) -> Double.compare(best[b], best[a]));
+            int[] renumbered = new int[n];
+            for (int c = 0; c < n; c++) {
+                renumbered[c] = champions[byValue[c]];
+            }
+            System.arraycopy(renumbered, 0, champions, 0, n);
+            for (int slot = 0; slot < slots; slot++) {
+                double[] slotValue = value[slot].clone();
+                for (int c = 0; c < n; c++) {
+                    value[slot][c] = slotValue[byValue[c]];
+                }
+            }
+        }
+
+        // The best positive synergy of a candidate with another, or 0
+        double bestPair(int c) {
+            return (slots > 1) ? topPairs[c * slots + 1] : 0;
+        }
+
+        String championName(int c) {
+            return table.getIndex().nameOf(champions[c]);
+        }
+    }
+
+    private double counterScore(int champion, int enemy, Role role, double[] rates) {
+        int laneGames = table.getLaneGames(champion, enemy, role);
+        if (laneGames >= CounterIndex.MIN_GAMES) {
+            return (double) table.getLaneWins(champion, enemy, role) / laneGames - rates[champion];
+        }
+        int games = table.getGames(champion, enemy);
+        if (games < CounterIndex.MIN_GAMES) {
+            return 0;
+        }
+        return (double) table.getWins(champion, enemy) / games - rates[champion];
+    }
+
+    private double synergyScore(int champion, int ally, double[] rates) {
+        int games = table.getSynergyGames(champion, ally);
+        if (games < CounterIndex.MIN_GAMES || Double.isNaN(rates[ally])) {
+            return 0;
+        }
+        return (double) table.getSynergyWins(champion, ally) / games - (rates[champion] + rates[ally]) / 2;
+    }
+
+    private double roleScore(int champion, Role role, double[] rates) {
+        if (role == Role.UNKNOWN) {
+            return 0;
+        }
+        int games = table.getRoleGames(champion, role);
+        if (games < CounterIndex.MIN_GAMES) {
+            return 0;
+        }
+        return (double) table.getRoleWins(champion, role) / games - rates[champion];
+    }
+
+    // Searches the subtree of each candidate of the first slot as a task of its own
+    private static class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Search search;
+
+        RootTask(Search search) {
+            this.search = search;
+        }
+
+        @Override
+        protected void compute() {
+            int slot = search.slotOrder[0];
+            List<BranchTask> branches = new ArrayList<>();
+            for (int i = 0; i < search.order[slot].length; i++) {
+                branches.add(new BranchTask(search, i));
+            }
+            invokeAll(branches);
+        }
+    }
+
+    private static class BranchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Search search;
+        private final int rank;
+
+        BranchTask(Search search, int rank) {
+            this.search = search;
+            this.rank = rank;
+        }
+
+        @Override
+        protected void compute() {
+            int slot = search.slotOrder[0];
+            // The branches of worse candidates usually start after the best ones have raised the threshold
+            int c = search.order[slot][rank];
+            if (search.value[slot][c] + search.remaining[1] <= search.results.threshold()) {
+                return;
+            }
+            int[] chosen = new int[search.slots];
+            double[][] withPicks = new double[search.slots][search.champions.length];
+            chosen[slot] = c;
+            if (search.slots > 1) {
+                search.pick(withPicks, 0, c);
+            }
+            search.search(1, chosen, withPicks, search.value[slot][c]);
+        }
+    }
+
+    /**
+     * The k best compositions found so far, shared by every branch of a search. A set of champions is kept once,
+     * in its best assignment to the slots.
+     */
+    private static class TopDrafts {
+        private final int k;
+        private final List<int[]> picks = new ArrayList<>();
+        // The candidates of each composition in increasing order, to find a set already kept
+        private final List<int[]> sets = new ArrayList<>();
+        private final List<Double> scores = new ArrayList<>();
+        // The k-th best score once k compositions are found. Read without locking by the pruning checks
+        private volatile double threshold = Double.NEGATIVE_INFINITY;
+
+        TopDrafts(int k) {
+            this.k = k;
+        }
+
+        double threshold() {
+            return threshold;
+        }
+
+        synchronized void offer(int[] chosen, double score) {
+            if (score <= threshold) {
+                return;
+            }
+            int[] set = chosen.clone();
+            Arrays.sort(set);
+            for (int i = 0; i < sets.size(); i++) {
+                if (Arrays.equals(set, sets.get(i))) {
+                    if (score <= scores.get(i)) {
+                        return;
+                    }
+                    picks.remove(i);
+                    sets.remove(i);
+                    scores.remove(i);
+                    break;
+                }
+            }
+            int position = 0;
+            while (position < scores.size() && scores.get(position) >= score) {
+                position++;
+            }
+            picks.add(position, chosen.clone());
+            sets.add(position, set);
+            scores.add(position, score);
+            if (picks.size() > k) {
+                picks.remove(k);
+                sets.remove(k);
+                scores.remove(k);
+            }
+            if (picks.size() == k) {
+                threshold = scores.get(k - 1);
+            }
+        }
+
+        synchronized List<Draft> drafts(Search search) {
+            List<Draft> drafts = new ArrayList<>(picks.size());
+            for (int i = 0; i < picks.size(); i++) {
+                List<Pick> draft = new ArrayList<>(search.slots);
+                for (int slot = 0; slot < search.slots; slot++) {
+                    draft.add(new Pick(search.championName(picks.get(i)[slot]), search.openRoles[slot]));
+                }
+                drafts.add(new Draft(draft, scores.get(i)));
+            }
+            return drafts;
+        }
+    }
+}
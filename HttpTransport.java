@@ -0,0 +1,31 @@
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sends requests to the Riot API over HTTP.
+ */
+public class HttpTransport implements RiotTransport {
+
+    private final OkHttpClient httpClient = new OkHttpClient();
+
+    @Override
+    public Response get(String url) throws IOException {
+        Request request = new Request.Builder().url(url).build();
+        try (okhttp3.Response response = httpClient.newCall(request).execute()) {
+            Map<String, String> headers = new HashMap<>();
+            for (String name : HEADERS) {
+                String value = response.header(name);
+                if (value != null) {
+                    headers.put(name.toLowerCase(Locale.ROOT), value);
+                }
+            }
+            String body = (response.body() == null) ? "" : response.body().string();
+            return new Response(response.code(), response.message(), body, headers);
+        }
+    }
+}
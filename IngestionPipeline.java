@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs ingestion as a chain of stages connected by bounded queues, so league pages, summoner lookups, match ID
+ * lookups and match downloads overlap instead of waiting on each other. Every stage runs its workers on virtual
+ * threads, HTTP stages are paced by RiotAPI's rate limiters, and several chains (one per region) can merge into a
+ * shared aggregation stage that applies matches to DataStorage.
+ */
+public class IngestionPipeline {
+
+    // How long an idle worker waits on its queue before checking whether the upstream stage has finished
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * The work done by a stage for one input item. Outputs are handed to emit, which blocks while the next queue is full.
+     */
+    public interface StageFunction<I, O> {
+        void apply(I input, Emitter<O> emit) throws IOException, RiotApiException, InterruptedException;
+    }
+
+    public interface Emitter<O> {
+        void emit(O output) throws InterruptedException;
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Stage<?, ?>> stages = new ArrayList<>();
+    private volatile boolean aborted = false;
+
+    /**
+     * Adds the first stage, fed from a fixed list of inputs.
+     */
+    public <I, O> Stage<I, O> source(String name, List<I> inputs, int workers, int outputCapacity, StageFunction<I, O> function) {
+        Stage<I, O> stage = new Stage<>(name, new LinkedBlockingQueue<>(inputs), List.of(), workers, outputCapacity, function);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Adds a stage that consumes the output of the given stage.
+     */
+    public <I, O> Stage<I, O> then(Stage<?, I> upstream, String name, int workers, int outputCapacity, StageFunction<I, O> function) {
+        return then(List.of(upstream), name, workers, outputCapacity, function);
+    }
+
+    /**
+     * Adds a stage that consumes the merged output of several stages, e.g. the last stage of each regional crawl.
+     * The upstream stages are redirected to share the output queue of the first one.
+     */
+    public <I, O> Stage<I, O> then(List<Stage<?, I>> upstreams, String name, int workers, int outputCapacity, StageFunction<I, O> function) {
+        BlockingQueue<I> merged = upstreams.get(0).output;
+        for (Stage<?, I> upstream : upstreams) {
+            upstream.output = merged;
+        }
+        Stage<I, O> stage = new Stage<>(name, merged, upstreams, workers, outputCapacity, function);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Starts every stage and blocks until all of them have drained.
+     */
+    public void run() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        for (Stage<?, ?> stage : stages) {
+            stage.start();
+        }
+        for (Stage<?, ?> stage : stages) {
+            stage.awaitDone();
+        }
+        executor.shutdown();
+        long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+        for (Stage<?, ?> stage : stages) {
+            Log.info("{}: {} processed, {} failed ({}/s)", stage.name, stage.processed.get(), stage.failed.get(), stage.processed.get() / seconds);
+        }
+    }
+
+    // Stops every stage after the items currently being processed
+    public void abort() {
+        aborted = true;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * A group of workers taking items from one queue and emitting results into the next.
+     */
+    public class Stage<I, O> {
+
+        private final String name;
+        private final BlockingQueue<I> input;
+        private BlockingQueue<O> output;
+        private final List<Stage<?, I>> upstreams;
+        private final int workers;
+        private final StageFunction<I, O> function;
+        private final AtomicInteger runningWorkers;
+        private final CountDownLatch done;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private Stage(String name, BlockingQueue<I> input, List<Stage<?, I>> upstreams, int workers, int outputCapacity, StageFunction<I, O> function) {
+            this.name = name;
+            this.input = input;
+            this.output = new ArrayBlockingQueue<>(Math.max(1, outputCapacity));
+            this.upstreams = upstreams;
+            this.workers = workers;
+            this.function = function;
+            this.runningWorkers = new AtomicInteger(workers);
+            this.done = new CountDownLatch(1);
+        }
+
+        private void start() {
+            for (int i = 0; i < workers; i++) {
+                executor.submit(this::work);
+            }
+        }
+
+        private void work() {
+            try {
+                while (!aborted) {
+                    I item = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        if (upstreamsDone()) {
+                            // The upstream stage may have emitted its last item between the poll and the check
+                            item = input.poll();
+                            if (item == null) {
+                                break;
+                            }
+                        } else {
+                            continue;
+                        }
+                    }
+                    try {
+                        function.apply(item, this::emit);
+                        processed.incrementAndGet();
+                    } catch (IOException | RiotApiException e) {
+                        failed.incrementAndGet();
+                        Log.warn("{} failed: {}", name, e.getMessage());
+                        if (e instanceof RiotApiException && ((RiotApiException) e).isFatal()) {
+                            // A bad or expired key fails every request, so there is no point continuing
+                            abort();
+                        }
+                    } catch (RuntimeException e) {
+                        // A malformed item must not end the worker, or the upstream stages block on a full queue
+                        failed.incrementAndGet();
+                        Log.error("{} failed: {}", name, e.toString());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort();
+            } finally {
+                if (runningWorkers.decrementAndGet() == 0) {
+                    done.countDown();
+                }
+            }
+        }
+
+        // Blocks while the downstream queue is full, giving up if the pipeline is aborted
+        private void emit(O item) throws InterruptedException {
+            while (!aborted) {
+                if (output.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        private boolean upstreamsDone() {
+            for (Stage<?, I> upstream : upstreams) {
+                if (!upstream.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void awaitDone() throws InterruptedException {
+            done.await();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in fixed buckets, like a Prometheus histogram: each bucket counts the observations up to its
+ * bound, from a tenth of a millisecond to two minutes (the longest rate limit window), plus one for anything
+ * longer. Recording is a short search over the bounds and two adds without locking, so it can sit on every request.
+ * Quantiles are estimated as the bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    // Upper bounds of the buckets in nanoseconds
+    private static final long[] BOUNDS_NANOS = {
+            100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L,
+            10_000_000_000L, 30_000_000_000L, 60_000_000_000L, 120_000_000_000L};
+
+    // One counter per bound, then the overflow bucket
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(Math.max(0, nanos));
+    }
+
+    // Records the time since a System.nanoTime() reading
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // The number of buckets with a bound; cumulativeCounts() has one more entry for the overflow bucket
+    public static int boundCount() {
+        return BOUNDS_NANOS.length;
+    }
+
+    public static double boundSeconds(int bucket) {
+        return BOUNDS_NANOS[bucket] / 1e9;
+    }
+
+    /**
+     * @return The observations up to each bound, and finally the total, read once so they are consistent.
+     */
+    public long[] cumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    public double getMeanMillis() {
+        long count = getCount();
+        return (count == 0) ? 0 : sumNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * @param quantile Between 0 and 1, e.g. 0.99.
+     * @return The bound of the bucket the quantile falls in, in milliseconds. Infinite if it is beyond the last bound.
+     */
+    public double getQuantileMillis(double quantile) {
+        long[] counts = cumulativeCounts();
+        long total = counts[counts.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            if (counts[i] >= rank) {
+                return BOUNDS_NANOS[i] / 1e6;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leveled logging written by a background thread. Callers only queue the message pattern and its arguments, so a
+ * message costs a queue offer instead of a synchronized console write, and a disabled level costs nothing but the
+ * check. Formatting and writing happen on the logging thread. When the queue is full, messages are dropped and
+ * counted rather than blocking the crawl.
+ *
+ * Patterns use {} for each argument, e.g. Log.info("Replayed {} matches from {}", count, path).
+ * The level is set with -Dlog.level=debug|info|warn|error and is INFO by default. DEBUG and INFO go to standard
+ * output, WARN and ERROR to standard error.
+ */
+public final class Log {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int QUEUE_CAPACITY = 8192;
+    // Entries written per drain, so one long burst cannot starve flush()
+    private static final int DRAIN_BATCH = 256;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static final Level threshold = parseLevel(System.getProperty("log.level"));
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+    // Held while entries taken from the queue are being written, so flush() knows when they are out
+    private static final Object writeLock = new Object();
+
+    private record Entry(Level level, long timeMillis, String thread, String pattern, Object[] args) {
+    }
+
+    static {
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush));
+    }
+
+    private Log() {
+
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    public static void debug(String pattern, Object... args) {
+        log(Level.DEBUG, pattern, args);
+    }
+
+    public static void info(String pattern, Object... args) {
+        log(Level.INFO, pattern, args);
+    }
+
+    public static void warn(String pattern, Object... args) {
+        log(Level.WARN, pattern, args);
+    }
+
+    public static void error(String pattern, Object... args) {
+        log(Level.ERROR, pattern, args);
+    }
+
+    // Messages dropped because the queue was full
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes every message queued so far before returning, e.g. before printing console output that should come
+     * after them.
+     */
+    public static void flush() {
+        synchronized (writeLock) {
+            drain(Integer.MAX_VALUE);
+        }
+    }
+
+    private static void log(Level level, String pattern, Object[] args) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (!queue.offer(new Entry(level, System.currentTimeMillis(), Thread.currentThread().getName(), pattern, args))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                synchronized (writeLock) {
+                    write(first);
+                    drain(DRAIN_BATCH);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void drain(int max) {
+        List<Entry> entries = new ArrayList<>();
+        queue.drainTo(entries, max);
+        for (Entry entry : entries) {
+            write(entry);
+        }
+        System.out.flush();
+        System.err.flush();
+    }
+
+    private static void write(Entry entry) {
+        PrintStream stream = (entry.level().compareTo(Level.WARN) >= 0) ? System.err : System.out;
+        String time = LocalTime.ofInstant(Instant.ofEpochMilli(entry.timeMillis()), ZoneId.systemDefault()).format(TIME_FORMAT);
+        stream.println(time + " " + entry.level() + " [" + entry.thread() + "] " + format(entry.pattern(), entry.args()));
+    }
+
+    // Replaces each {} in the pattern with the next argument
+    static String format(String pattern, Object[] args) {
+        if (args == null || args.length == 0) {
+            return pattern;
+        }
+        StringBuilder message = new StringBuilder(pattern.length() + 16 * args.length);
+        int argument = 0;
+        int start = 0;
+        int placeholder;
+        while (argument < args.length && (placeholder = pattern.indexOf("{}", start)) >= 0) {
+            message.append(pattern, start, placeholder).append(args[argument++]);
+            start = placeholder + 2;
+        }
+        return message.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static Level parseLevel(String name) {
+        if (name != null) {
+            for (Level level : Level.values()) {
+                if (level.name().equalsIgnoreCase(name.trim())) {
+                    return level;
+                }
+            }
+        }
+        return Level.INFO;
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing hash set of primitive longs. Avoids the boxed Long (or String) per element that a
+ * HashSet would need, which matters once hundreds of thousands of match IDs are tracked.
+ */
+public class LongHashSet {
+
+    // Marks an unused slot. Zero itself is tracked separately
+    private static final long EMPTY = 0L;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] slots;
+    private int size = 0;
+    private boolean containsZero = false;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        slots = new long[capacity];
+    }
+
+    /**
+     * Adds a value to the set.
+     * @return True if the value was not already present.
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int slot = mix(value) & mask;
+        while (slots[slot] != EMPTY) {
+            if (slots[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        size++;
+        if (size > slots.length * MAX_LOAD) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+        int mask = slots.length - 1;
+        int slot = mix(value) & mask;
+        while (slots[slot] != EMPTY) {
+            if (slots[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Passes every value to the action, in no particular order
+    public void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0L);
+        }
+        for (long value : slots) {
+            if (value != EMPTY) {
+                action.accept(value);
+            }
+        }
+    }
+
+    // Returns the values in ascending order
+    public long[] toSortedArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (containsZero) {
+            values[i++] = 0L;
+        }
+        for (long value : slots) {
+            if (value != EMPTY) {
+                values[i++] = value;
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int slot = mix(value) & mask;
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+            }
+        }
+    }
+
+    // Spreads the bits so sequential match numbers don't cluster in neighbouring slots
+    static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
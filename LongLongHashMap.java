@@ -0,0 +1,116 @@
+/**
+ * Open-addressing hash map from primitive longs to primitive longs, the map counterpart of LongHashSet. Used to
+ * index millions of encoded match IDs without a boxed key and value per entry.
+ */
+public class LongLongHashMap {
+
+    // Marks an unused slot. Zero itself is tracked separately
+    private static final long EMPTY = 0L;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int size = 0;
+    private boolean containsZero = false;
+    private long zeroValue;
+
+    public LongLongHashMap() {
+        this(1024);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Maps a key to a value, replacing any value it had.
+     * @return True if the key was not already present.
+     */
+    public boolean put(long key, long value) {
+        if (key == EMPTY) {
+            boolean added = !containsZero;
+            containsZero = true;
+            zeroValue = value;
+            if (added) {
+                size++;
+            }
+            return added;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > keys.length * MAX_LOAD) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    // Returns the value of the key, or missingValue if it is not present
+    public long get(long key, long missingValue) {
+        if (key == EMPTY) {
+            return containsZero ? zeroValue : missingValue;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return containsZero;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The heap used by the key and value arrays, for the memory metrics
+    public long estimatedHeapBytes() {
+        return 16L * keys.length;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = LongHashSet.mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
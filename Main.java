@@ -1,6 +1,11 @@
+import com.sun.net.httpserver.HttpServer;
+
 import javax.swing.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
 
@@ -35,8 +40,11 @@ public class Main {
         System.out.println("1. Calculate with present data");
         System.out.println("2. Recalculate the roles");
         System.out.println("3. Process new data (requires an API key)");
+        System.out.println("4. Start the recommendation server");
+        System.out.println("5. Rebuild the matchup data from archived matches");
+        System.out.println("6. Find the best picks for the open slots of a draft");
         int input = sc.nextInt();
-        while ((input!=1 && input!=2) && input!=3) {
+        while (input < 1 || input > 6) {
             input = sc.nextInt();
         }
         switch(input) {
@@ -51,11 +59,77 @@ public class Main {
                 generator.changeChampRoles();
                 break;
             case 3:
-                System.out.println("Please input the API key you've been provided: ");
-                String apiKey = sc.next();
-                RiotAPI.setApiKey(apiKey);
+                // -Driot.record=<file> records the crawl's responses, -Driot.replay=<file> reruns a recorded crawl offline
+                RiotTransport transport = RiotTransport.fromSystemProperties();
+                RiotAPI.setTransport(transport);
+                if (transport.isRateLimited()) {
+                    System.out.println("Please input the API key you've been provided: ");
+                    String apiKey = sc.next();
+                    RiotAPI.setApiKey(apiKey);
+                }
+                sc.nextLine();
+                System.out.println("Enter the regions to crawl separated by commas (e.g. na1,euw1,kr), or leave blank for na1: ");
+                List<Region> regions = new ArrayList<>();
+                for (String name : sc.nextLine().split(",")) {
+                    Region region = name.isBlank() ? null : Region.fromName(name);
+                    if (region != null) {
+                        regions.add(region);
+                    } else if (!name.isBlank()) {
+                        System.out.println("Unknown region: " + name.trim());
+                    }
+                }
+                if (regions.isEmpty()) {
+                    regions.add(Region.NA1);
+                }
                 DataStorage dataStorage = DataStorage.getInstance();
-                RiotAPI.fetchAndProcessGameData();
+                // Progress can be followed on the metrics endpoint or over JMX while the crawl runs
+                HttpServer metricsEndpoint = null;
+                try {
+                    metricsEndpoint = Metrics.startEndpoint(Metrics.DEFAULT_PORT);
+                } catch (IOException e) {
+                    Log.warn("Could not serve metrics on port {}: {}", Metrics.DEFAULT_PORT, e.getMessage());
+                }
+                RiotAPI.fetchAndProcessGameData(regions);
+                transport.close();
+                if (metricsEndpoint != null) {
+                    metricsEndpoint.stop(0);
+                }
+                break;
+            case 4:
+                sc.nextLine();
+                System.out.println("Enter the port to listen on, or leave blank for " + RecommendationServer.DEFAULT_PORT + ": ");
+                String port = sc.nextLine().trim();
+                RecommendationServer server = new RecommendationServer(port.isEmpty() ? RecommendationServer.DEFAULT_PORT : Integer.parseInt(port));
+                // The server keeps running on its own threads until the process is stopped
+                server.start();
+                break;
+            case 5:
+                DataStorage.getInstance();
+                int archived = DataStorage.getMatchArchive().size();
+                int processed = DataStorage.getProcessedMatchCount();
+                if (archived < processed) {
+                    // Matches processed before the archive existed would be dropped from the data
+                    System.out.println("Only " + archived + " of the " + processed + " processed matches are archived, and the rebuilt data will only include those. Continue? (y/n)");
+                    if (!sc.next().trim().equalsIgnoreCase("y")) {
+                        break;
+                    }
+                }
+                // A pool of its own, since the common pool leaves one core to the caller
+                ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                long start = System.nanoTime();
+                MatchupRebuilder.Result result = DataStorage.rebuildFromArchive(pool);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                pool.shutdown();
+                System.out.printf("Rebuilt the data from %d matches in %.1fs on %d threads (%.0f matches/s)%n",
+                        result.matches(), seconds, pool.getParallelism(), result.matches() / seconds);
+                if (result.failed() > 0) {
+                    System.out.println(result.failed() + " archived matches could not be read");
+                }
+                DataStorage.exportJson();
+                break;
+            case 6:
+                new ChampionDataFetcher().getBestDraft();
+                break;
             default:
                 System.out.println("How");
                 break;
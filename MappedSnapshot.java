@@ -0,0 +1,314 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the matchup data, read through a memory mapping so startup does not have to parse
+ * and box every matchup. Queries read the mapped cells directly.
+ *
+ * Layout (big-endian):
+ *   header     magic, version, champion count, index length, log generation, index CRC, data CRC, header CRC
+ *   index      champion names in ID order, each as a length-prefixed UTF string, padded to 8 bytes
+ *   global     one packed cell per champion with its global games and wins
+ *   roles      Role.COUNT packed cells per champion with its games and wins in each role
+ *   tiers      Tier.COUNT packed cells per champion with its games and wins in each tier
+ *   matrix     champion count squared packed cells, row-major by champion then opponent
+ *   synergy    one packed cell per pair of distinct champions on the same team, in MatchupMatrix's triangular
+ *              order
+ *   lanes      champion count squared packed cells for each Role but UNKNOWN, in ordinal order, each row-major by
+ *              champion then opponent, counting games where both played that position
+ * Cells hold games in the upper 32 bits and wins in the lower 32 bits, the same as MatchupMatrix.
+ * The log generation is the last match event log folded into the snapshot.
+ */
+public class MappedSnapshot implements MatchupTable {
+
+    private static final int MAGIC = 0x4C434353; // "LCCS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final long WINS_MASK = 0xFFFFFFFFL;
+
+    private final ChampionIndex index;
+    // Number of champions stored in the file. The index may grow past this as new champions are interned
+    private final int size;
+    private final long generation;
+    private final LongBuffer global;
+    private final LongBuffer roles;
+    private final LongBuffer tiers;
+    private final LongBuffer cells;
+    private final LongBuffer synergy;
+    private final LongBuffer lanes;
+
+    private MappedSnapshot(ChampionIndex index, int size, long generation, LongBuffer global, LongBuffer roles, LongBuffer tiers, LongBuffer cells,
+                           LongBuffer synergy, LongBuffer lanes) {
+        this.index = index;
+        this.size = size;
+        this.generation = generation;
+        this.global = global;
+        this.roles = roles;
+        this.tiers = tiers;
+        this.cells = cells;
+        this.synergy = synergy;
+        this.lanes = lanes;
+    }
+
+    /**
+     * Maps a snapshot file and verifies its header and checksums.
+     * @param path The snapshot file.
+     * @return The mapped snapshot. Its champion index holds the champions in the file, in file order.
+     * @throws IOException If the file cannot be read, is not a snapshot, or fails a checksum.
+     */
+    public static MappedSnapshot open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Snapshot is too short: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a champion data snapshot: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + path);
+        }
+        if (buffer.getInt(32) != checksum(buffer, 0, 32)) {
+            throw new IOException("Snapshot header checksum mismatch: " + path);
+        }
+        int size = buffer.getInt(8);
+        int indexLength = buffer.getInt(12);
+        long generation = buffer.getLong(16);
+        int dataOffset = HEADER_SIZE + padded(indexLength);
+        long synergyCells = (long) size * (size - 1) / 2;
+        long laneCells = (long) (Role.COUNT - 1) * size * size;
+        long dataLength = ((long) size * (1 + Role.COUNT + Tier.COUNT) + (long) size * size + synergyCells + laneCells) * Long.BYTES;
+        if (buffer.capacity() != dataOffset + dataLength) {
+            throw new IOException("Snapshot has the wrong length: " + path);
+        }
+        if (buffer.getInt(24) != checksum(buffer, HEADER_SIZE, indexLength)) {
+            throw new IOException("Snapshot index checksum mismatch: " + path);
+        }
+        if (buffer.getInt(28) != checksum(buffer, dataOffset, (int) dataLength)) {
+            throw new IOException("Snapshot data checksum mismatch: " + path);
+        }
+
+        byte[] indexBytes = new byte[indexLength];
+        buffer.get(HEADER_SIZE, indexBytes);
+        List<String> names = new ArrayList<>(size);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(indexBytes))) {
+            for (int i = 0; i < size; i++) {
+                names.add(in.readUTF());
+            }
+        }
+        ChampionIndex index = new ChampionIndex(names);
+        int offset = dataOffset;
+        LongBuffer global = buffer.slice(offset, size * Long.BYTES).asLongBuffer();
+        offset += size * Long.BYTES;
+        LongBuffer roles = buffer.slice(offset, size * Role.COUNT * Long.BYTES).asLongBuffer();
+        offset += size * Role.COUNT * Long.BYTES;
+        LongBuffer tiers = buffer.slice(offset, size * Tier.COUNT * Long.BYTES).asLongBuffer();
+        offset += size * Tier.COUNT * Long.BYTES;
+        LongBuffer cells = buffer.slice(offset, (int) ((long) size * size * Long.BYTES)).asLongBuffer();
+        offset += (int) ((long) size * size * Long.BYTES);
+        LongBuffer synergy = buffer.slice(offset, (int) (synergyCells * Long.BYTES)).asLongBuffer();
+        offset += (int) (synergyCells * Long.BYTES);
+        LongBuffer lanes = buffer.slice(offset, (int) (laneCells * Long.BYTES)).asLongBuffer();
+        return new MappedSnapshot(index, size, generation, global, roles, tiers, cells, synergy, lanes);
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and moves it into place.
+     * @param path The snapshot file to create or replace.
+     * @param table The matchup data, global records, rollups, synergy and lanes. Every champion in its index is written.
+     * @param generation The last match event log generation included in the data.
+     */
+    public static void write(Path path, MatchupTable table, long generation) throws IOException {
+        ChampionIndex index = table.getIndex();
+        List<String> names = index.names();
+        int size = names.size();
+
+        ByteArrayOutputStream indexStream = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(indexStream)) {
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+        byte[] indexBytes = indexStream.toByteArray();
+        int dataOffset = HEADER_SIZE + padded(indexBytes.length);
+        long fileLength = dataOffset + ((long) size * (1 + Role.COUNT + Tier.COUNT) + (long) size * size + (long) size * (size - 1) / 2
+                + (long) (Role.COUNT - 1) * size * size) * Long.BYTES;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Too many champions for a snapshot: " + size);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileLength);
+        buffer.put(HEADER_SIZE, indexBytes);
+        buffer.position(dataOffset);
+        for (int champion = 0; champion < size; champion++) {
+            buffer.putLong(pack(table.getGlobalWins(champion), table.getGlobalGames(champion)));
+        }
+        for (int champion = 0; champion < size; champion++) {
+            for (Role role : Role.values()) {
+                buffer.putLong(pack(table.getRoleWins(champion, role), table.getRoleGames(champion, role)));
+            }
+        }
+        for (int champion = 0; champion < size; champion++) {
+            for (Tier tier : Tier.values()) {
+                buffer.putLong(pack(table.getTierWins(champion, tier), table.getTierGames(champion, tier)));
+            }
+        }
+        for (int champion = 0; champion < size; champion++) {
+            for (int opponent = 0; opponent < size; opponent++) {
+                buffer.putLong(pack(table.getWins(champion, opponent), table.getGames(champion, opponent)));
+            }
+        }
+        for (int champion = 1; champion < size; champion++) {
+            for (int ally = 0; ally < champion; ally++) {
+                buffer.putLong(pack(table.getSynergyWins(champion, ally), table.getSynergyGames(champion, ally)));
+            }
+        }
+        for (Role role : Role.values()) {
+            if (role == Role.UNKNOWN) {
+                continue;
+            }
+            for (int champion = 0; champion < size; champion++) {
+                for (int opponent = 0; opponent < size; opponent++) {
+                    buffer.putLong(pack(table.getLaneWins(champion, opponent, role), table.getLaneGames(champion, opponent, role)));
+                }
+            }
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, size);
+        buffer.putInt(12, indexBytes.length);
+        buffer.putLong(16, generation);
+        buffer.putInt(24, checksum(buffer, HEADER_SIZE, indexBytes.length));
+        buffer.putInt(28, checksum(buffer, dataOffset, (int) (fileLength - dataOffset)));
+        buffer.putInt(32, checksum(buffer, 0, 32));
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public ChampionIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public int getGames(int champion, int opponent) {
+        if (champion >= size || opponent >= size) {
+            return 0;
+        }
+        return (int) (cells.get(champion * size + opponent) >>> 32);
+    }
+
+    @Override
+    public int getWins(int champion, int opponent) {
+        if (champion >= size || opponent >= size) {
+            return 0;
+        }
+        return (int) (cells.get(champion * size + opponent) & WINS_MASK);
+    }
+
+    @Override
+    public int getGlobalGames(int champion) {
+        return (champion >= size) ? 0 : (int) (global.get(champion) >>> 32);
+    }
+
+    @Override
+    public int getGlobalWins(int champion) {
+        return (champion >= size) ? 0 : (int) (global.get(champion) & WINS_MASK);
+    }
+
+    @Override
+    public int getRoleGames(int champion, Role role) {
+        return (champion >= size) ? 0 : (int) (roles.get(champion * Role.COUNT + role.ordinal()) >>> 32);
+    }
+
+    @Override
+    public int getRoleWins(int champion, Role role) {
+        return (champion >= size) ? 0 : (int) (roles.get(champion * Role.COUNT + role.ordinal()) & WINS_MASK);
+    }
+
+    @Override
+    public int getTierGames(int champion, Tier tier) {
+        return (champion >= size) ? 0 : (int) (tiers.get(champion * Tier.COUNT + tier.ordinal()) >>> 32);
+    }
+
+    @Override
+    public int getTierWins(int champion, Tier tier) {
+        return (champion >= size) ? 0 : (int) (tiers.get(champion * Tier.COUNT + tier.ordinal()) & WINS_MASK);
+    }
+
+    @Override
+    public int getSynergyGames(int champion, int ally) {
+        if (champion >= size || ally >= size || champion == ally) {
+            return 0;
+        }
+        return (int) (synergy.get(MatchupMatrix.synergyCell(champion, ally)) >>> 32);
+    }
+
+    @Override
+    public int getSynergyWins(int champion, int ally) {
+        if (champion >= size || ally >= size || champion == ally) {
+            return 0;
+        }
+        return (int) (synergy.get(MatchupMatrix.synergyCell(champion, ally)) & WINS_MASK);
+    }
+
+    @Override
+    public int getLaneGames(int champion, int opponent, Role role) {
+        if (champion >= size || opponent >= size || role == Role.UNKNOWN) {
+            return 0;
+        }
+        return (int) (lanes.get(((role.ordinal() - 1) * size + champion) * size + opponent) >>> 32);
+    }
+
+    @Override
+    public int getLaneWins(int champion, int opponent, Role role) {
+        if (champion >= size || opponent >= size || role == Role.UNKNOWN) {
+            return 0;
+        }
+        return (int) (lanes.get(((role.ordinal() - 1) * size + champion) * size + opponent) & WINS_MASK);
+    }
+
+    // The last match event log generation included in this snapshot
+    public long getGeneration() {
+        return generation;
+    }
+
+    private static long pack(int wins, int games) {
+        return ((long) games << 32) | (wins & WINS_MASK);
+    }
+
+    private static int padded(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,515 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps the raw JSON of every processed match, so the matchup data can be rebuilt or extended with new stats without
+ * downloading the matches again.
+ *
+ * Matches are collected into blocks of about BLOCK_SIZE bytes that are deflated together, since neighbouring
+ * payloads share most of their keys. Blocks are appended to segment files named match_archive-<n>.bin of up to
+ * SEGMENT_SIZE bytes. Layout of a segment: a header (magic, version, segment number) followed by blocks. A block
+ * holds its match count, the encoded ID (see MatchIds), length and tier of each match, then the compressed length
+ * and the deflated payloads. The headers come before the compressed bytes, so opening the archive indexes every
+ * match by skipping from header to header without inflating anything.
+ *
+ * Looking a match up is one probe of the in-memory index and one block read, whatever the size of the archive;
+ * forEach streams the blocks in order, and forEachInBlocks lets several threads each read a range of them.
+ * Matches wait in memory until their block is full or sync() is called, so a crash loses the payloads of the open
+ * block (the matches themselves are still counted through the event log). A torn block at the end of a segment
+ * is truncated away on open. Appends from several threads are serialized; reads only lock to probe the index.
+ */
+public class MatchArchive implements Closeable {
+
+    private static final int MAGIC = 0x4C434D41; // "LCMA"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    // The bytes describing each match in a block header: ID, length and tier
+    private static final int ENTRY_SIZE = 13;
+    private static final byte BLOCK_RECORD = 'B';
+    private static final String FILE_PREFIX = "match_archive-";
+    private static final String FILE_SUFFIX = ".bin";
+    // Raw bytes collected before a block is compressed, a handful of typical match-v5 payloads
+    private static final int BLOCK_SIZE = 256 * 1024;
+    // The index stores a match's position in its block in a byte
+    private static final int MAX_BLOCK_MATCHES = 255;
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+    // Index values pack the segment (16 bits), the block's offset in it (40 bits) and the match's entry in it (8 bits)
+    private static final long OFFSET_MASK = (1L << 40) - 1;
+
+    /**
+     * Receives the archived matches during a scan.
+     */
+    public interface MatchHandler {
+        void accept(String matchId, String matchData, Tier tier);
+    }
+
+    private final Path directory;
+    private final LongLongHashMap index;
+    // The location of every block in archive order, packed like the index values with entry 0
+    private long[] blocks;
+    private int blockCount;
+    // A reader for each segment, opened on first use. Positional reads let any number of threads share one
+    private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+    // The fastest level, so archiving does not slow down ingestion; blocks of similar payloads still compress well
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private int segment;
+    private long segmentLength;
+    private long closedSegmentsLength;
+    private FileOutputStream fileStream;
+    private DataOutputStream out;
+
+    // Matches waiting for the current block to fill up
+    private final long[] pendingIds = new long[MAX_BLOCK_MATCHES];
+    private final int[] pendingLengths = new int[MAX_BLOCK_MATCHES];
+    private final byte[] pendingTiers = new byte[MAX_BLOCK_MATCHES];
+    private int pendingCount = 0;
+    private byte[] pending = new byte[BLOCK_SIZE + 64 * 1024];
+    private int pendingSize = 0;
+    private byte[] compressed = new byte[BLOCK_SIZE];
+
+    private MatchArchive(Path directory, LongLongHashMap index, long[] blocks, int blockCount, int segment, long closedSegmentsLength) throws IOException {
+        this.directory = directory;
+        this.index = index;
+        this.blocks = blocks;
+        this.blockCount = blockCount;
+        this.closedSegmentsLength = closedSegmentsLength;
+        openSegment(segment);
+    }
+
+    // Opens a segment for appending, writing its header if it is new
+    private void openSegment(int segment) throws IOException {
+        Path path = segmentPath(directory, segment);
+        boolean exists = Files.exists(path) && Files.size(path) >= HEADER_SIZE;
+        this.segment = segment;
+        this.fileStream = new FileOutputStream(path.toFile(), exists);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileStream));
+        if (exists) {
+            segmentLength = Files.size(path);
+        } else {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(segment);
+            out.flush();
+            segmentLength = HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Opens the archive in the given directory, indexing every match in its segments.
+     */
+    public static MatchArchive open(Path directory) throws IOException {
+        List<Integer> segments = listSegments(directory);
+        LongLongHashMap index = new LongLongHashMap(64 * 1024);
+        long[][] blocks = {new long[1024]};
+        int[] blockCount = {0};
+        long closedLength = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int segment = segments.get(i);
+            long length = indexSegment(segmentPath(directory, segment), segment, index, blockOffset -> {
+                if (blockCount[0] == blocks[0].length) {
+                    blocks[0] = Arrays.copyOf(blocks[0], blocks[0].length * 2);
+                }
+                blocks[0][blockCount[0]++] = location(segment, blockOffset, 0);
+            });
+            if (i < segments.size() - 1) {
+                closedLength += length;
+            }
+        }
+        if (index.size() > 0) {
+            Log.info("Indexed {} archived matches in {} segments", index.size(), segments.size());
+        }
+        int last = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        return new MatchArchive(directory, index, blocks[0], blockCount[0], last, closedLength);
+    }
+
+    // The segment numbers in the directory, in order
+    private static List<Integer> listSegments(Path directory) {
+        List<Integer> segments = new ArrayList<>();
+        File[] files = directory.toFile().listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    segments.add(Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static Path segmentPath(Path directory, int segment) {
+        return directory.resolve(FILE_PREFIX + segment + FILE_SUFFIX);
+    }
+
+    private interface BlockHandler {
+        void accept(long blockOffset);
+    }
+
+    /**
+     * Adds the matches of a segment to the index, truncating a torn block at its end.
+     * @return The length of the valid part of the segment.
+     */
+    private static long indexSegment(Path path, int segment, LongLongHashMap index, BlockHandler blockHandler) throws IOException {
+        long fileLength = Files.size(path);
+        if (fileLength < HEADER_SIZE) {
+            Files.delete(path);
+            return 0;
+        }
+        long validLength;
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(path.toFile())));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != segment) {
+                throw new IOException("Unrecognized match archive segment: " + path);
+            }
+            validLength = HEADER_SIZE;
+            long[] ids = new long[MAX_BLOCK_MATCHES];
+            while (true) {
+                try {
+                    if (in.readByte() != BLOCK_RECORD) {
+                        break;
+                    }
+                    int count = in.readUnsignedShort();
+                    if (count > MAX_BLOCK_MATCHES) {
+                        break;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        ids[i] = in.readLong();
+                        in.skipNBytes(ENTRY_SIZE - 8);
+                    }
+                    in.skipNBytes(in.readInt());
+                    // Skipping can move past the end of the file without noticing
+                    if (counter.getCount() > fileLength) {
+                        break;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        index.put(ids[i], location(segment, validLength, i));
+                    }
+                    blockHandler.accept(validLength);
+                    validLength = counter.getCount();
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        if (validLength < fileLength) {
+            Log.warn("Truncating torn block at the end of {}", path);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(validLength);
+            }
+        }
+        return validLength;
+    }
+
+    private static long location(int segment, long blockOffset, int entry) {
+        return ((long) segment << 48) | (blockOffset << 8) | entry;
+    }
+
+    /**
+     * Archives a match, unless it is archived already or its ID is not a Riot match ID.
+     * @param tier The tier of the league the match was found through, which is not part of the payload.
+     * @return True if the match was added.
+     */
+    public synchronized boolean append(String matchId, String matchData, Tier tier) throws IOException {
+        long id = MatchIds.encode(matchId);
+        if (id < 0 || index.containsKey(id) || pendingEntry(id) >= 0) {
+            return false;
+        }
+        byte[] bytes = matchData.getBytes(StandardCharsets.UTF_8);
+        if (pendingSize + bytes.length > pending.length) {
+            byte[] larger = new byte[Math.max(pending.length * 2, pendingSize + bytes.length)];
+            System.arraycopy(pending, 0, larger, 0, pendingSize);
+            pending = larger;
+        }
+        System.arraycopy(bytes, 0, pending, pendingSize, bytes.length);
+        pendingSize += bytes.length;
+        pendingIds[pendingCount] = id;
+        pendingLengths[pendingCount] = bytes.length;
+        pendingTiers[pendingCount] = (byte) tier.ordinal();
+        pendingCount++;
+        if (pendingSize >= BLOCK_SIZE || pendingCount == MAX_BLOCK_MATCHES) {
+            writeBlock();
+        }
+        return true;
+    }
+
+    private int pendingEntry(long id) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Compresses the pending matches into a block at the end of the current segment, starting a new one when it is full
+    private void writeBlock() throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+        int compressedLength = deflate();
+        long blockLength = 1 + 2 + (long) ENTRY_SIZE * pendingCount + 4 + compressedLength;
+        if (segmentLength > HEADER_SIZE && segmentLength + blockLength > SEGMENT_SIZE) {
+            out.close();
+            closedSegmentsLength += segmentLength;
+            openSegment(segment + 1);
+        }
+        out.writeByte(BLOCK_RECORD);
+        out.writeShort(pendingCount);
+        for (int i = 0; i < pendingCount; i++) {
+            out.writeLong(pendingIds[i]);
+            out.writeInt(pendingLengths[i]);
+            out.writeByte(pendingTiers[i]);
+        }
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+        out.flush();
+        for (int i = 0; i < pendingCount; i++) {
+            index.put(pendingIds[i], location(segment, segmentLength, i));
+        }
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        blocks[blockCount++] = location(segment, segmentLength, 0);
+        segmentLength += blockLength;
+        pendingCount = 0;
+        pendingSize = 0;
+    }
+
+    // Deflates the pending bytes into the compressed buffer, growing it as needed, and returns the compressed length
+    private int deflate() {
+        deflater.reset();
+        deflater.setInput(pending, 0, pendingSize);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return length;
+    }
+
+    /**
+     * Looks up the raw JSON of a match.
+     * @return The payload, or null if the match is not archived.
+     */
+    public String get(String matchId) throws IOException {
+        long id = MatchIds.encode(matchId);
+        if (id < 0) {
+            return null;
+        }
+        long location;
+        synchronized (this) {
+            location = index.get(id, -1);
+            if (location < 0) {
+                int entry = pendingEntry(id);
+                if (entry < 0) {
+                    return null;
+                }
+                int start = 0;
+                for (int i = 0; i < entry; i++) {
+                    start += pendingLengths[i];
+                }
+                return new String(pending, start, pendingLengths[entry], StandardCharsets.UTF_8);
+            }
+        }
+        try (BlockReader reader = new BlockReader()) {
+            int entry = (int) (location & 0xFF);
+            reader.read(location, entry + 1);
+            return reader.payload(entry);
+        }
+    }
+
+    /**
+     * Passes every archived match to the handler in the order they were archived. Matches archived while the
+     * scan runs may or may not be included.
+     * @return The number of matches passed to the handler.
+     */
+    public long forEach(MatchHandler handler) throws IOException {
+        int blocks;
+        synchronized (this) {
+            writeBlock();
+            blocks = blockCount;
+        }
+        return forEachInBlocks(0, blocks, handler);
+    }
+
+    /**
+     * The number of written blocks. Matches still waiting for their block to fill up are not in any; sync()
+     * writes them.
+     */
+    public synchronized int blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Passes the matches of a range of blocks to the handler, in order. Threads reading different ranges do not
+     * wait on each other.
+     * @param from The first block, from 0.
+     * @param to The block after the last one, at most blockCount().
+     * @return The number of matches passed to the handler.
+     */
+    public long forEachInBlocks(int from, int to, MatchHandler handler) throws IOException {
+        long[] locations;
+        synchronized (this) {
+            if (from < 0 || to > blockCount || from > to) {
+                throw new IndexOutOfBoundsException("Blocks " + from + " to " + to + " of " + blockCount);
+            }
+            locations = Arrays.copyOfRange(blocks, from, to);
+        }
+        long matches = 0;
+        try (BlockReader reader = new BlockReader()) {
+            for (long location : locations) {
+                int count = reader.read(location, -1);
+                for (int i = 0; i < count; i++) {
+                    handler.accept(MatchIds.decode(reader.ids[i]), reader.payload(i), Tier.ofOrdinal(reader.tiers[i]));
+                }
+                matches += count;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Reads blocks with positional reads, reusing its buffers from block to block. Used by one thread at a time.
+     */
+    private class BlockReader implements AutoCloseable {
+        final long[] ids = new long[MAX_BLOCK_MATCHES];
+        final int[] starts = new int[MAX_BLOCK_MATCHES + 1];
+        final byte[] tiers = new byte[MAX_BLOCK_MATCHES];
+        private final Inflater inflater = new Inflater();
+        private final ByteBuffer header = ByteBuffer.allocate(3 + ENTRY_SIZE * MAX_BLOCK_MATCHES + 4);
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        private byte[] raw = new byte[BLOCK_SIZE * 2];
+
+        /**
+         * Reads the block at a location and inflates its payloads.
+         * @param entries The number of payloads to inflate, or -1 for all of them.
+         * @return The number of matches in the block.
+         */
+        int read(long location, int entries) throws IOException {
+            int segment = (int) (location >>> 48);
+            long offset = (location >>> 8) & OFFSET_MASK;
+            FileChannel channel = reader(segment);
+            readFully(channel, offset, header, 3);
+            if (header.get() != BLOCK_RECORD) {
+                throw new IOException("Corrupt block in match archive segment " + segment);
+            }
+            int count = header.getShort() & 0xFFFF;
+            readFully(channel, offset + 3, header, ENTRY_SIZE * count + 4);
+            for (int i = 0; i < count; i++) {
+                ids[i] = header.getLong();
+                starts[i + 1] = starts[i] + header.getInt();
+                tiers[i] = header.get();
+            }
+            int compressedLength = header.getInt();
+            if (compressedLength > block.capacity()) {
+                block = ByteBuffer.allocate(compressedLength);
+            }
+            readFully(channel, offset + 3 + (long) ENTRY_SIZE * count + 4, block, compressedLength);
+            int rawLength = starts[(entries < 0) ? count : Math.min(entries, count)];
+            if (rawLength > raw.length) {
+                raw = new byte[rawLength];
+            }
+            inflater.reset();
+            inflater.setInput(block.array(), 0, compressedLength);
+            try {
+                int inflated = 0;
+                while (inflated < rawLength) {
+                    int read = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (read == 0 && (inflater.needsInput() || inflater.finished())) {
+                        throw new IOException("Block in match archive segment " + segment + " is shorter than its header says");
+                    }
+                    inflated += read;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block in match archive segment " + segment, e);
+            }
+            return count;
+        }
+
+        String payload(int entry) {
+            return new String(raw, starts[entry], starts[entry + 1] - starts[entry], StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+
+    private FileChannel reader(int segment) throws IOException {
+        FileChannel channel = readers.get(segment);
+        if (channel == null) {
+            synchronized (readers) {
+                channel = readers.get(segment);
+                if (channel == null) {
+                    channel = FileChannel.open(segmentPath(directory, segment), StandardOpenOption.READ);
+                    readers.put(segment, channel);
+                }
+            }
+        }
+        return channel;
+    }
+
+    // Fills the start of the buffer with length bytes from the position and flips it for reading
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Match archive block cut off");
+            }
+        }
+        buffer.flip();
+    }
+
+    // Writes the open block and forces the current segment to disk
+    public synchronized void sync() throws IOException {
+        writeBlock();
+        out.flush();
+        fileStream.getFD().sync();
+    }
+
+    public synchronized int size() {
+        return index.size() + pendingCount;
+    }
+
+    // The size of the segment files
+    public synchronized long getBytes() {
+        return closedSegmentsLength + segmentLength;
+    }
+
+    public synchronized long estimatedHeapBytes() {
+        return index.estimatedHeapBytes() + 8L * blocks.length + pending.length + compressed.length;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+        deflater.end();
+        for (FileChannel channel : readers.values()) {
+            channel.close();
+        }
+        readers.clear();
+    }
+}
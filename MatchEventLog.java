@@ -0,0 +1,236 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only binary log of processed matches. Each match is written as a small record instead of
+ * rewriting the whole champion data file, and the log is folded into the snapshot files periodically.
+ *
+ * Layout: a header (magic, version, generation) followed by records. A champion record ('C') binds a
+ * champion ID used in this log to a name; a match record ('M') holds the match ID, the champion ID, team
+ * and role of every participant, the winning team, the tier the match was found through and its patch key.
+ * Writes are fsynced in batches of syncBatchSize records. Appends from several threads are serialized.
+ */
+public class MatchEventLog implements Closeable {
+
+    private static final int MAGIC = 0x4C434C47; // "LCLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final byte CHAMPION_RECORD = 'C';
+    private static final byte MATCH_RECORD = 'M';
+
+    /**
+     * Receives the matches stored in a log during replay, with champion IDs translated into the caller's index.
+     */
+    public interface MatchHandler {
+        void accept(String matchId, int[] championIds, int[] teamIds, int[] roles, int participantCount, int winningTeamId, int tier, int patch);
+    }
+
+    private final Path path;
+    private final int syncBatchSize;
+    private long generation;
+    private FileOutputStream fileStream;
+    private DataOutputStream out;
+    // Champion IDs that already have a champion record in this log
+    private boolean[] definedChampions = new boolean[256];
+    private int unsyncedRecords = 0;
+    private int matchCount = 0;
+
+    private MatchEventLog(Path path, long generation, int syncBatchSize, boolean writeHeader) throws IOException {
+        this.path = path;
+        this.syncBatchSize = syncBatchSize;
+        openFile(generation, writeHeader);
+    }
+
+    // Opens the file for appending, or recreates it with a fresh header
+    private void openFile(long generation, boolean writeHeader) throws IOException {
+        this.generation = generation;
+        this.fileStream = new FileOutputStream(path.toFile(), !writeHeader);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileStream));
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            sync();
+        }
+    }
+
+    /**
+     * Opens the log at the given path for appending, replaying any matches it holds that are newer than the
+     * last checkpoint. A log whose generation was already folded into the snapshot is discarded, and a torn
+     * record at the tail (from a crash mid-write) is truncated away.
+     * @param path The log file.
+     * @param checkpointGeneration The generation of the last log folded into the snapshot.
+     * @param index The champion index to translate replayed champions into.
+     * @param handler Receives every replayed match.
+     * @param syncBatchSize The number of records written between fsyncs.
+     */
+    public static MatchEventLog open(Path path, long checkpointGeneration, ChampionIndex index, MatchHandler handler, int syncBatchSize) throws IOException {
+        if (!Files.exists(path) || Files.size(path) < HEADER_SIZE) {
+            return new MatchEventLog(path, checkpointGeneration + 1, syncBatchSize, true);
+        }
+        long generation;
+        long validLength;
+        Map<Integer, Integer> championIds = new HashMap<>();
+        int replayed = 0;
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(path.toFile())));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unrecognized match event log: " + path);
+            }
+            generation = in.readLong();
+            validLength = HEADER_SIZE;
+            if (generation <= checkpointGeneration) {
+                // Already part of the snapshot. Start a fresh log
+                return new MatchEventLog(path, checkpointGeneration + 1, syncBatchSize, true);
+            }
+            int[] matchChampions = new int[10];
+            int[] matchTeams = new int[10];
+            int[] matchRoles = new int[10];
+            while (true) {
+                try {
+                    byte type = in.readByte();
+                    if (type == CHAMPION_RECORD) {
+                        int logId = in.readShort();
+                        String name = in.readUTF();
+                        // A later record may rebind the same log ID, so the latest binding wins
+                        championIds.put(logId, index.intern(name));
+                    } else if (type == MATCH_RECORD) {
+                        String matchId = in.readUTF();
+                        int count = in.readUnsignedByte();
+                        if (count > matchChampions.length) {
+                            matchChampions = new int[count];
+                            matchTeams = new int[count];
+                            matchRoles = new int[count];
+                        }
+                        for (int i = 0; i < count; i++) {
+                            Integer championId = championIds.get((int) in.readShort());
+                            if (championId == null) {
+                                throw new IOException("Match " + matchId + " references an undefined champion");
+                            }
+                            matchChampions[i] = championId;
+                            matchTeams[i] = in.readShort();
+                            matchRoles[i] = in.readUnsignedByte();
+                        }
+                        int winningTeamId = in.readShort();
+                        int tier = in.readUnsignedByte();
+                        int patch = in.readShort();
+                        handler.accept(matchId, matchChampions, matchTeams, matchRoles, count, winningTeamId, tier, patch);
+                        replayed++;
+                    } else {
+                        break;
+                    }
+                    validLength = counter.getCount();
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        if (validLength < Files.size(path)) {
+            Log.warn("Truncating torn record at the end of {}", path);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(validLength);
+            }
+        }
+        if (replayed > 0) {
+            Log.info("Replayed {} matches from {}", replayed, path);
+        }
+        MatchEventLog log = new MatchEventLog(path, generation, syncBatchSize, false);
+        log.matchCount = replayed;
+        // Log IDs that are bound to a different champion in the caller's index get rebound on their next use
+        for (Map.Entry<Integer, Integer> entry : championIds.entrySet()) {
+            if (entry.getKey().equals(entry.getValue())) {
+                log.markDefined(entry.getKey());
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Appends a match to the log. Champion records are written first for any champion not yet defined in this log.
+     * @param matchId The Riot match ID.
+     * @param championIds The champion IDs of the participants.
+     * @param teamIds The team ID of each participant.
+     * @param participantCount The number of valid entries in championIds and teamIds.
+     * @param roles The Role ordinal of each participant.
+     * @param winningTeamId The team ID of the winning team, or -1 if no team won.
+     * @param tier The Tier ordinal of the match.
+     * @param patch The patch key of the match, see PatchVersion.
+     * @param index The champion index the IDs belong to.
+     */
+    public synchronized void append(String matchId, int[] championIds, int[] teamIds, int[] roles, int participantCount, int winningTeamId, int tier, int patch, ChampionIndex index) throws IOException {
+        for (int i = 0; i < participantCount; i++) {
+            int championId = championIds[i];
+            if (!isDefined(championId)) {
+                out.writeByte(CHAMPION_RECORD);
+                out.writeShort(championId);
+                out.writeUTF(index.nameOf(championId));
+                markDefined(championId);
+            }
+        }
+        out.writeByte(MATCH_RECORD);
+        out.writeUTF(matchId);
+        out.writeByte(participantCount);
+        for (int i = 0; i < participantCount; i++) {
+            out.writeShort(championIds[i]);
+            out.writeShort(teamIds[i]);
+            out.writeByte(roles[i]);
+        }
+        out.writeShort(winningTeamId);
+        out.writeByte(tier);
+        out.writeShort(patch);
+        matchCount++;
+        if (++unsyncedRecords >= syncBatchSize) {
+            sync();
+        }
+    }
+
+    // Flushes buffered records and forces them to disk
+    public synchronized void sync() throws IOException {
+        out.flush();
+        fileStream.getFD().sync();
+        unsyncedRecords = 0;
+    }
+
+    /**
+     * Empties the log once its contents have been folded into the snapshot, starting the next generation.
+     * @return The new generation of the log.
+     */
+    public synchronized long reset(long checkpointGeneration) throws IOException {
+        out.close();
+        openFile(checkpointGeneration + 1, true);
+        definedChampions = new boolean[definedChampions.length];
+        matchCount = 0;
+        return generation;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    // Number of matches in the log since the last checkpoint
+    public synchronized int getMatchCount() {
+        return matchCount;
+    }
+
+    private boolean isDefined(int championId) {
+        return championId < definedChampions.length && definedChampions[championId];
+    }
+
+    private void markDefined(int championId) {
+        if (championId >= definedChampions.length) {
+            boolean[] grown = new boolean[Math.max(championId + 1, definedChampions.length * 2)];
+            System.arraycopy(definedChampions, 0, grown, 0, definedChampions.length);
+            definedChampions = grown;
+        }
+        definedChampions[championId] = true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts Riot match IDs such as "NA1_4912345678" to and from a single long.
+ * The platform is stored in the top byte and the match number in the remaining 56 bits.
+ */
+public class MatchIds {
+
+    // Platform prefixes that can appear in match IDs. The position is the code stored in the top byte, so only append
+    private static final String[] PLATFORMS = {
+            "NA1", "BR1", "LA1", "LA2", "EUW1", "EUN1", "TR1", "RU", "KR", "JP1", "OC1", "PH2", "SG2", "TH2", "TW2", "VN2", "ME1"
+    };
+    private static final Map<String, Integer> PLATFORM_CODES = new HashMap<>();
+    private static final long NUMBER_MASK = (1L << 56) - 1;
+
+    static {
+        for (int i = 0; i < PLATFORMS.length; i++) {
+            PLATFORM_CODES.put(PLATFORMS[i], i);
+        }
+    }
+
+    private MatchIds() {
+
+    }
+
+    /**
+     * Encodes a match ID into a long.
+     * @param matchId The match ID, e.g. "NA1_4912345678".
+     * @return The encoded ID, or -1 if the match ID is not in the expected format.
+     */
+    public static long encode(String matchId) {
+        int separator = matchId.indexOf('_');
+        if (separator <= 0 || separator == matchId.length() - 1) {
+            return -1;
+        }
+        Integer platform = PLATFORM_CODES.get(matchId.substring(0, separator));
+        if (platform == null) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = separator + 1; i < matchId.length(); i++) {
+            char c = matchId.charAt(i);
+            if (c < '0' || c > '9' || number > NUMBER_MASK / 10) {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        if (number > NUMBER_MASK) {
+            return -1;
+        }
+        return ((long) platform << 56) | number;
+    }
+
+    // Converts an encoded ID back into the match ID Riot uses
+    public static String decode(long encoded) {
+        return PLATFORMS[(int) (encoded >>> 56)] + "_" + (encoded & NUMBER_MASK);
+    }
+}
@@ -0,0 +1,139 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Extracts a MatchSummary from a match-v5 payload with a streaming reader. Only metadata.matchId, info.gameVersion,
+ * info.participants[].championName/teamId/teamPosition and info.teams[].teamId/win are read; everything else is skipped
+ * without being built into a JSON tree.
+ */
+public class MatchParser {
+
+    private MatchParser() {
+
+    }
+
+    /**
+     * Parses a match payload into the given summary.
+     * @param matchData The JSON string containing data about the match.
+     * @param summary The summary to fill. Its previous contents are cleared.
+     * @return True if the payload held participants and teams, false if it was malformed or incomplete.
+     */
+    public static boolean parse(String matchData, MatchSummary summary) {
+        summary.reset();
+        boolean hasParticipants = false;
+        boolean hasTeams = false;
+        try (JsonReader reader = new JsonReader(new StringReader(matchData))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "metadata" -> readMetadata(reader, summary);
+                    case "info" -> {
+                        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "participants" -> {
+                                    readParticipants(reader, summary);
+                                    hasParticipants = true;
+                                }
+                                case "teams" -> {
+                                    readTeams(reader, summary);
+                                    hasTeams = true;
+                                }
+                                case "gameVersion" -> summary.patch = PatchVersion.parse(reader.nextString());
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            Log.warn("Error parsing match data: {}", e.getMessage());
+            return false;
+        }
+        if (!hasParticipants) {
+            Log.warn("Error parsing match data: participants field is null");
+            return false;
+        }
+        if (!hasTeams) {
+            Log.warn("Error parsing match data: teams field is null");
+            return false;
+        }
+        return true;
+    }
+
+    private static void readMetadata(JsonReader reader, MatchSummary summary) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("matchId") && reader.peek() == JsonToken.STRING) {
+                summary.matchId = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readParticipants(JsonReader reader, MatchSummary summary) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int participant = summary.participantCount;
+            summary.ensureParticipantCapacity(participant + 1);
+            String championName = null;
+            int teamId = -1;
+            Role role = Role.UNKNOWN;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "championName" -> championName = reader.nextString();
+                    case "teamId" -> teamId = reader.nextInt();
+                    case "teamPosition" -> role = Role.fromTeamPosition(reader.nextString());
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (championName == null) {
+                throw new IllegalStateException("participant without championName");
+            }
+            summary.championNames[participant] = championName;
+            summary.teamIds[participant] = teamId;
+            summary.roles[participant] = role.ordinal();
+            summary.participantCount++;
+        }
+        reader.endArray();
+    }
+
+    private static void readTeams(JsonReader reader, MatchSummary summary) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int teamId = -1;
+            boolean win = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "teamId" -> teamId = reader.nextInt();
+                    case "win" -> win = reader.nextBoolean();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (win && summary.winningTeamId == -1) {
+                summary.winningTeamId = teamId;
+            }
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.Arrays;
+
+/**
+ * The few fields of a match-v5 payload that aggregation needs. Instances are reused between matches,
+ * so parsing a match does not allocate a new object graph each time.
+ */
+public class MatchSummary {
+
+    private static final int DEFAULT_PARTICIPANTS = 10;
+
+    String matchId = "";
+    // Champion names as sent by Riot, e.g. "MonkeyKing"
+    String[] championNames = new String[DEFAULT_PARTICIPANTS];
+    int[] teamIds = new int[DEFAULT_PARTICIPANTS];
+    // Role ordinal of each participant, from teamPosition
+    int[] roles = new int[DEFAULT_PARTICIPANTS];
+    int participantCount = 0;
+    // The team ID of the winning team, or -1 if no team won (e.g. a remake)
+    int winningTeamId = -1;
+    // The patch key of info.gameVersion, see PatchVersion
+    int patch = PatchVersion.UNKNOWN;
+
+    public String getMatchId() {
+        return matchId;
+    }
+
+    public String getChampionName(int participant) {
+        return championNames[participant];
+    }
+
+    public int getTeamId(int participant) {
+        return teamIds[participant];
+    }
+
+    public Role getRole(int participant) {
+        return Role.ofOrdinal(roles[participant]);
+    }
+
+    public int getParticipantCount() {
+        return participantCount;
+    }
+
+    public int getWinningTeamId() {
+        return winningTeamId;
+    }
+
+    public int getPatch() {
+        return patch;
+    }
+
+    // Clears the summary so it can be filled with the next match
+    void reset() {
+        matchId = "";
+        participantCount = 0;
+        winningTeamId = -1;
+        patch = PatchVersion.UNKNOWN;
+    }
+
+    // Makes room for another participant. Regular games have ten, but other queues can have more
+    void ensureParticipantCapacity(int count) {
+        if (count > championNames.length) {
+            int capacity = Math.max(count, championNames.length * 2);
+            championNames = Arrays.copyOf(championNames, capacity);
+            teamIds = Arrays.copyOf(teamIds, capacity);
+            roles = Arrays.copyOf(roles, capacity);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers, for each PUUID, the span of time whose matches have already been listed, so later crawls can ask
+ * the match-v5 API only for matches that started after it. Times are epoch seconds, the unit the API's startTime
+ * parameter uses. The start of each interval is when the player was first crawled and the end is the last crawl.
+ *
+ * File layout: magic, version, entry count, then each entry as PUUID (UTF), start time (long) and end time (long).
+ */
+public class MatchWatermarkStore {
+
+    private static final int MAGIC = 0x4C43574D; // "LCWM"
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final Map<String, TimeInterval> watermarks = new HashMap<>();
+
+    public MatchWatermarkStore(Path path) {
+        this.path = path;
+        load();
+    }
+
+    /**
+     * @return The interval already listed for a player, or null if the player has never been crawled.
+     */
+    public synchronized TimeInterval get(String puuid) {
+        TimeInterval watermark = watermarks.get(puuid);
+        return (watermark == null) ? null : new TimeInterval(watermark.getStartTime(), watermark.getEndTime());
+    }
+
+    /**
+     * Extends the listed interval of a player up to the given time.
+     * @param listedUntil The time, in epoch seconds, up to which every match of the player has been listed.
+     */
+    public synchronized void advance(String puuid, long listedUntil) {
+        TimeInterval watermark = watermarks.get(puuid);
+        if (watermark == null) {
+            watermarks.put(puuid, new TimeInterval(listedUntil, listedUntil));
+        } else if (listedUntil > watermark.getEndTime()) {
+            watermark.setEndTime(listedUntil);
+        }
+    }
+
+    public synchronized int size() {
+        return watermarks.size();
+    }
+
+    /**
+     * Writes the watermarks to a temporary file and moves it into place.
+     */
+    public synchronized void save() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(watermarks.size());
+            for (Map.Entry<String, TimeInterval> entry : watermarks.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().getStartTime());
+                out.writeLong(entry.getValue().getEndTime());
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.warn("Ignoring unrecognized match watermark file: {}", path);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String puuid = in.readUTF();
+                watermarks.put(puuid, new TimeInterval(in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            // Players without a watermark are listed in full again, so a damaged file only costs requests
+            Log.error("Error reading match watermarks: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Aggregates matches from several threads at once without the threads sharing any counters. Matches are recorded
+ * into one of a fixed set of partial matrices (stripes) chosen by thread, each guarded by its own lock, and merge()
+ * folds the partials into the base matrix. While there are no more threads than stripes, each thread has
+ * its stripe to itself, so recording scales with the number of threads. Totals are exact: every match is added
+ * to exactly one stripe under that stripe's lock, and every stripe is drained under the same lock.
+ *
+ * Each stripe keeps a partial per patch, so merge() also adds every match to the segment of its patch. The base
+ * matrix holds the lifetime totals and the segments hold the same matches split by patch. Segments of patches
+ * older than the compaction cutoff are dropped, and their matches only count towards the lifetime totals.
+ */
+public class MatchupAggregator {
+
+    private final MatchupMatrix base;
+    // Lifetime totals split by patch key, oldest first. Matches of an unknown patch are only in the base matrix
+    private final TreeMap<Integer, MatchupMatrix> segments;
+    // Patches below this were compacted away and get no segment
+    private int oldestSegmentPatch = PatchVersion.UNKNOWN + 1;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    // Threads are assigned stripes round-robin on first use, so no two share one until there are more threads than stripes
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final ThreadLocal<Integer> threadStripe;
+
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final ChampionIndex index;
+        // Partial of each patch recorded since the last merge. Usually only the current patch
+        final Map<Integer, MatchupMatrix> partials = new HashMap<>();
+        // Set when the partials hold unmerged matches, so merge() can skip idle stripes without locking them
+        volatile boolean dirty;
+
+        Stripe(ChampionIndex index) {
+            this.index = index;
+        }
+
+        MatchupMatrix partial(int patch) {
+            MatchupMatrix partial = partials.get(patch);
+            if (partial == null) {
+                partial = new MatchupMatrix(index);
+                partials.put(patch, partial);
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * @param base The lifetime matrix merged into. It must only be modified through merge() from now on.
+     */
+    public MatchupAggregator(MatchupMatrix base) {
+        this(base, new TreeMap<>());
+    }
+
+    /**
+     * @param base The lifetime matrix merged into. It must only be modified through merge() from now on.
+     * @param segments The matrix of each patch, already included in base. Taken over the same way as base.
+     */
+    public MatchupAggregator(MatchupMatrix base, Map<Integer, MatchupMatrix> segments) {
+        this.base = base;
+        this.segments = new TreeMap<>(segments);
+        // Twice the processors, rounded up to a power of two, keeps collisions between threads rare
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(base.getIndex());
+        }
+        this.stripeMask = count - 1;
+        this.threadStripe = ThreadLocal.withInitial(() -> nextStripe.getAndIncrement() & stripeMask);
+    }
+
+    /**
+     * Records a match into the calling thread's stripe. Safe to call from any number of threads.
+     * @param patch The patch key of the match, see PatchVersion.
+     * @see MatchupMatrix#recordMatch(int[], int[], int[], int, int, int)
+     */
+    public void record(int[] championIds, int[] teamIds, int[] roles, int participantCount, int winningTeamId, int tier, int patch) {
+        Stripe stripe = stripes[threadStripe.get()];
+        stripe.lock.lock();
+        try {
+            stripe.partial(patch).recordMatch(championIds, teamIds, roles, participantCount, winningTeamId, tier);
+            stripe.dirty = true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Folds every stripe into the base matrix and the segments, and empties the stripes.
+     * @param changedPatches Receives the patch key of every segment that changed. May be null.
+     * @return True if any matches were merged.
+     */
+    public synchronized boolean merge(Set<Integer> changedPatches) {
+        boolean merged = false;
+        for (Stripe stripe : stripes) {
+            if (!stripe.dirty) {
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                for (Map.Entry<Integer, MatchupMatrix> entry : stripe.partials.entrySet()) {
+                    int patch = entry.getKey();
+                    MatchupMatrix partial = entry.getValue();
+                    base.addAll(partial);
+                    if (patch >= oldestSegmentPatch) {
+                        segments.computeIfAbsent(patch, key -> new MatchupMatrix(base.getIndex())).addAll(partial);
+                        if (changedPatches != null) {
+                            changedPatches.add(patch);
+                        }
+                    }
+                }
+                // Partials of patches that stop appearing are released rather than cleared and kept
+                stripe.partials.clear();
+                stripe.dirty = false;
+                merged = true;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return merged;
+    }
+
+    public boolean merge() {
+        return merge(null);
+    }
+
+    /**
+     * Drops every segment except the newest ones. Their matches stay in the base matrix, and later matches of those
+     * patches go to the base matrix only.
+     * @param keep The number of segments to keep.
+     * @return The patch keys of the dropped segments.
+     */
+    public synchronized List<Integer> compactSegments(int keep) {
+        List<Integer> dropped = new ArrayList<>();
+        while (segments.size() > keep) {
+            int patch = segments.firstKey();
+            segments.remove(patch);
+            dropped.add(patch);
+            oldestSegmentPatch = Math.max(oldestSegmentPatch, patch + 1);
+        }
+        return dropped;
+    }
+
+    // Heap used by the base matrix and the segments. Unmerged partials are small and not counted
+    public synchronized long estimatedHeapBytes() {
+        long bytes = base.estimatedHeapBytes();
+        for (MatchupMatrix segment : segments.values()) {
+            bytes += segment.estimatedHeapBytes();
+        }
+        return bytes;
+    }
+
+    // The merged totals. Matches recorded since the last merge() are not included
+    public MatchupMatrix getBase() {
+        return base;
+    }
+
+    // The merged segments by patch key. Changed by merge() and compactSegments(), so read it from the thread calling those
+    public synchronized NavigableMap<Integer, MatchupMatrix> getSegments() {
+        return Collections.unmodifiableNavigableMap(segments);
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One published version of the matchup data. The table never changes after publication, so any number of readers
+ * can use it without locking while ingestion keeps recording into the working matrix. The counter index is built
+ * from this table on first use and shared by every reader of the epoch.
+ *
+ * The epoch also holds the frozen segment of every tracked patch, and answers "last N patches" queries with a
+ * window epoch summing the newest N segments. Windows are built on first use and cached for the epoch.
+ */
+public class MatchupEpoch {
+
+    private final long number;
+    private final MatchupTable table;
+    private volatile CounterIndex counterIndex;
+    // Frozen segments by patch key, oldest first. Empty for a window epoch
+    private final NavigableMap<Integer, MatchupMatrix> segments;
+    private final PatchWindows windows;
+    private final Map<Integer, MatchupEpoch> windowCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param number Increases by one with every publication.
+     * @param table The data of this epoch. It must not be modified afterwards.
+     */
+    public MatchupEpoch(long number, MatchupTable table) {
+        this(number, table, Collections.emptyNavigableMap(), null);
+    }
+
+    /**
+     * @param number Increases by one with every publication.
+     * @param table The lifetime data of this epoch. It must not be modified afterwards.
+     * @param segments The frozen segment of each tracked patch.
+     * @param windows The prefix cache shared by the publisher's epochs.
+     */
+    public MatchupEpoch(long number, MatchupTable table, NavigableMap<Integer, MatchupMatrix> segments, PatchWindows windows) {
+        this.number = number;
+        this.table = table;
+        this.segments = Collections.unmodifiableNavigableMap(segments);
+        this.windows = windows;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public MatchupTable getTable() {
+        return table;
+    }
+
+    // The frozen segment of each tracked patch, oldest first
+    public NavigableMap<Integer, MatchupMatrix> getSegments() {
+        return segments;
+    }
+
+    // Builds the counter index the first time it is needed. Concurrent first callers wait for a single build
+    public CounterIndex getCounterIndex() {
+        CounterIndex current = counterIndex;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (counterIndex == null) {
+                counterIndex = CounterIndex.build(table, number);
+            }
+            return counterIndex;
+        }
+    }
+
+    /**
+     * Returns the data of the newest tracked patches, with its own counter index.
+     * @param patches The number of patches, at least 1. Capped at the number of tracked patches.
+     */
+    public MatchupEpoch getWindow(int patches) {
+        int count = Math.max(1, Math.min(patches, segments.size()));
+        return windowCache.computeIfAbsent(count, key -> {
+            List<MatchupMatrix> ordered = new ArrayList<>(segments.values());
+            MatchupMatrix sum = (windows == null) ? new MatchupMatrix(table.getIndex()).frozenCopy() : windows.window(ordered, key, table.getIndex());
+            return new MatchupEpoch(number, sum);
+        });
+    }
+
+    // The patch keys covered by getWindow(patches), oldest first
+    public List<Integer> getWindowPatches(int patches) {
+        List<Integer> keys = new ArrayList<>(segments.keySet());
+        return keys.subList(Math.max(0, keys.size() - Math.max(1, patches)), keys.size());
+    }
+}
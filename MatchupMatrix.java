@@ -0,0 +1,498 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Stores the matchup record of every champion against every other champion in a single packed array,
+ * plus each champion's global record and its record in each role and tier. Each cell holds the games played in its upper 32 bits and the wins
+ * in its lower 32 bits, so recording a game is one addition and a lookup is plain array indexing.
+ * The record of champions played on the same team is kept in a second, triangular array with one cell per
+ * unordered pair, since a pair's games and wins are the same from either side. Lane matchups, where both champions
+ * played the same position, are also kept in one matrix per position, so role queries read only the games of the lane.
+ * Not thread-safe; MatchupAggregator gives each thread its own matrix to record into. A frozen copy
+ * rejects every update, so it can be shared with readers once published.
+ */
+public class MatchupMatrix implements MatchupTable {
+
+    // Adding this to a cell counts one game; adding 1 more counts the win
+    private static final long ONE_GAME = 1L << 32;
+    private static final long WINS_MASK = 0xFFFFFFFFL;
+    private static final int MIN_CAPACITY = 8;
+    // Every Role but UNKNOWN has a lane matrix, at ordinal - 1
+    private static final int LANES = Role.COUNT - 1;
+
+    private final ChampionIndex index;
+    // Row length of the cells array. Always at least index.size()
+    private int capacity;
+    // Row-major cells: cells[champion * capacity + opponent]
+    private long[] cells;
+    // Packed global record of each champion
+    private long[] global;
+    // Packed record of each champion in each role: roles[champion * Role.COUNT + role]
+    private long[] roles;
+    // Packed record of each champion in each tier: tiers[champion * Tier.COUNT + tier]
+    private long[] tiers;
+    // Packed record of each pair of champions on the same team: synergy[synergyCell(champion, ally)]. The layout
+    // does not depend on the capacity, so growing only extends the array
+    private long[] synergy;
+    // Row-major lane matrices, one after another: lanes[(role - 1) * capacity * capacity + champion * capacity + opponent]
+    private long[] lanes;
+    // Set on copies made by frozenCopy(), which must never change
+    private boolean frozen = false;
+
+    public MatchupMatrix(ChampionIndex index) {
+        this.index = index;
+        this.capacity = Math.max(MIN_CAPACITY, index.size());
+        this.cells = new long[capacity * capacity];
+        this.global = new long[capacity];
+        this.roles = new long[capacity * Role.COUNT];
+        this.tiers = new long[capacity * Tier.COUNT];
+        this.synergy = new long[synergyCells(capacity)];
+        this.lanes = new long[LANES * capacity * capacity];
+    }
+
+    private MatchupMatrix(ChampionIndex index, int capacity, long[] cells, long[] global, long[] roles, long[] tiers, long[] synergy, long[] lanes) {
+        this.index = index;
+        this.capacity = capacity;
+        this.cells = cells;
+        this.global = global;
+        this.roles = roles;
+        this.tiers = tiers;
+        this.synergy = synergy;
+        this.lanes = lanes;
+    }
+
+    @Override
+    public ChampionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Records a single game of a champion against an opponent.
+     * @param champion The ID of the champion whose record is updated.
+     * @param opponent The ID of the opposing champion.
+     * @param won True if the champion won the game.
+     */
+    public void record(int champion, int opponent, boolean won) {
+        checkMutable();
+        ensureCapacity(Math.max(champion, opponent) + 1);
+        cells[champion * capacity + opponent] += won ? ONE_GAME + 1 : ONE_GAME;
+    }
+
+    /**
+     * Adds a batch of games to the record of a champion against an opponent.
+     */
+    public void add(int champion, int opponent, int wins, int games) {
+        checkMutable();
+        ensureCapacity(Math.max(champion, opponent) + 1);
+        cells[champion * capacity + opponent] += ((long) games << 32) + wins;
+    }
+
+    /**
+     * Adds a batch of games to the record of two champions on the same team.
+     */
+    public void addSynergy(int champion, int ally, int wins, int games) {
+        checkMutable();
+        if (champion == ally) {
+            return;
+        }
+        ensureCapacity(Math.max(champion, ally) + 1);
+        synergy[synergyCell(champion, ally)] += ((long) games << 32) + wins;
+    }
+
+    /**
+     * Adds a batch of games to the record of a champion against an opponent in the same lane.
+     * @param role The position both champions played. UNKNOWN is ignored.
+     */
+    public void addLane(int champion, int opponent, Role role, int wins, int games) {
+        checkMutable();
+        if (role == Role.UNKNOWN) {
+            return;
+        }
+        ensureCapacity(Math.max(champion, opponent) + 1);
+        lanes[laneCell(champion, opponent, role.ordinal() - 1)] += ((long) games << 32) + wins;
+    }
+
+    /**
+     * Records a match: every participant gets a game against each opponent on the other team, a game towards
+     * their global record for each of those opponents, and one game in the rollups of their role and of the tier.
+     * Every pair of teammates gets one game in the synergy record, and every pair of opponents who played the same
+     * known position gets one game in that lane's matrix, counted in the same pass.
+     * @param championIds The champion IDs of the participants.
+     * @param teamIds The team ID of each participant.
+     * @param roles The Role ordinal of each participant.
+     * @param participantCount The number of valid entries in championIds, teamIds and roles.
+     * @param winningTeamId The team ID of the winning team.
+     * @param tier The Tier ordinal of the match.
+     */
+    public void recordMatch(int[] championIds, int[] teamIds, int[] roles, int participantCount, int winningTeamId, int tier) {
+        checkMutable();
+        for (int i = 0; i < participantCount; i++) {
+            ensureCapacity(championIds[i] + 1);
+            boolean won = teamIds[i] == winningTeamId;
+            long game = won ? ONE_GAME + 1 : ONE_GAME;
+            int lane = Role.ofOrdinal(roles[i]).ordinal() - 1;
+            int opponents = 0;
+            for (int j = 0; j < participantCount; j++) {
+                if (teamIds[i] != teamIds[j]) { // If champions are on opposite teams
+                    record(championIds[i], championIds[j], won);
+                    opponents++;
+                    if (lane >= 0 && roles[j] == roles[i]) {
+                        lanes[laneCell(championIds[i], championIds[j], lane)] += game;
+                    }
+                } else if (j > i && championIds[i] != championIds[j]) { // Each pair of teammates once
+                    ensureCapacity(championIds[j] + 1);
+                    synergy[synergyCell(championIds[i], championIds[j])] += game;
+                }
+            }
+            // The global record counts a game per opponent, added once instead of inside the loop
+            global[championIds[i]] += game * opponents;
+            this.roles[championIds[i] * Role.COUNT + Role.ofOrdinal(roles[i]).ordinal()] += game;
+            tiers[championIds[i] * Tier.COUNT + Tier.ofOrdinal(tier).ordinal()] += game;
+        }
+    }
+
+    /**
+     * Adds a batch of games to the global record of a champion.
+     */
+    public void addGlobal(int champion, int wins, int games) {
+        checkMutable();
+        ensureCapacity(champion + 1);
+        global[champion] += ((long) games << 32) + wins;
+    }
+
+    /**
+     * Adds a batch of games to the record of a champion in a role.
+     */
+    public void addRole(int champion, Role role, int wins, int games) {
+        checkMutable();
+        ensureCapacity(champion + 1);
+        roles[champion * Role.COUNT + role.ordinal()] += ((long) games << 32) + wins;
+    }
+
+    /**
+     * Adds a batch of games to the record of a champion in a tier.
+     */
+    public void addTier(int champion, Tier tier, int wins, int games) {
+        checkMutable();
+        ensureCapacity(champion + 1);
+        tiers[champion * Tier.COUNT + tier.ordinal()] += ((long) games << 32) + wins;
+    }
+
+    /**
+     * Adds every cell, global record and rollup of another matrix over the same index to this one.
+     */
+    public void addAll(MatchupMatrix other) {
+        checkMutable();
+        ensureCapacity(other.capacity);
+        for (int row = 0; row < other.capacity; row++) {
+            int from = row * other.capacity;
+            int to = row * capacity;
+            for (int column = 0; column < other.capacity; column++) {
+                cells[to + column] += other.cells[from + column];
+            }
+            global[row] += other.global[row];
+        }
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int row = 0; row < other.capacity; row++) {
+                int from = other.laneCell(row, 0, lane);
+                int to = laneCell(row, 0, lane);
+                for (int column = 0; column < other.capacity; column++) {
+                    lanes[to + column] += other.lanes[from + column];
+                }
+            }
+        }
+        // Rollup rows have a fixed width, so they line up regardless of capacity
+        for (int i = 0; i < other.roles.length; i++) {
+            roles[i] += other.roles[i];
+        }
+        for (int i = 0; i < other.tiers.length; i++) {
+            tiers[i] += other.tiers[i];
+        }
+        for (int i = 0; i < other.synergy.length; i++) {
+            synergy[i] += other.synergy[i];
+        }
+    }
+
+    /**
+     * Subtracts every cell, global record and rollup of another matrix over the same index from this one.
+     * Every record of the other matrix must be included in this one, e.g. an earlier prefix of the same segments.
+     */
+    public void subtractAll(MatchupMatrix other) {
+        checkMutable();
+        ensureCapacity(other.capacity);
+        for (int row = 0; row < other.capacity; row++) {
+            int from = row * other.capacity;
+            int to = row * capacity;
+            for (int column = 0; column < other.capacity; column++) {
+                cells[to + column] -= other.cells[from + column];
+            }
+            global[row] -= other.global[row];
+        }
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int row = 0; row < other.capacity; row++) {
+                int from = other.laneCell(row, 0, lane);
+                int to = laneCell(row, 0, lane);
+                for (int column = 0; column < other.capacity; column++) {
+                    lanes[to + column] -= other.lanes[from + column];
+                }
+            }
+        }
+        for (int i = 0; i < other.roles.length; i++) {
+            roles[i] -= other.roles[i];
+        }
+        for (int i = 0; i < other.tiers.length; i++) {
+            tiers[i] -= other.tiers[i];
+        }
+        for (int i = 0; i < other.synergy.length; i++) {
+            synergy[i] -= other.synergy[i];
+        }
+    }
+
+    // Resets every record to zero, keeping the allocated capacity
+    public void clear() {
+        checkMutable();
+        Arrays.fill(cells, 0);
+        Arrays.fill(global, 0);
+        Arrays.fill(roles, 0);
+        Arrays.fill(tiers, 0);
+        Arrays.fill(synergy, 0);
+        Arrays.fill(lanes, 0);
+    }
+
+    @Override
+    public int getGames(int champion, int opponent) {
+        if (champion >= capacity || opponent >= capacity) {
+            return 0;
+        }
+        return (int) (cells[champion * capacity + opponent] >>> 32);
+    }
+
+    @Override
+    public int getWins(int champion, int opponent) {
+        if (champion >= capacity || opponent >= capacity) {
+            return 0;
+        }
+        return (int) (cells[champion * capacity + opponent] & WINS_MASK);
+    }
+
+    @Override
+    public int getGlobalGames(int champion) {
+        return (champion >= capacity) ? 0 : (int) (global[champion] >>> 32);
+    }
+
+    @Override
+    public int getGlobalWins(int champion) {
+        return (champion >= capacity) ? 0 : (int) (global[champion] & WINS_MASK);
+    }
+
+    @Override
+    public int getRoleGames(int champion, Role role) {
+        return (champion >= capacity) ? 0 : (int) (roles[champion * Role.COUNT + role.ordinal()] >>> 32);
+    }
+
+    @Override
+    public int getRoleWins(int champion, Role role) {
+        return (champion >= capacity) ? 0 : (int) (roles[champion * Role.COUNT + role.ordinal()] & WINS_MASK);
+    }
+
+    @Override
+    public int getTierGames(int champion, Tier tier) {
+        return (champion >= capacity) ? 0 : (int) (tiers[champion * Tier.COUNT + tier.ordinal()] >>> 32);
+    }
+
+    @Override
+    public int getTierWins(int champion, Tier tier) {
+        return (champion >= capacity) ? 0 : (int) (tiers[champion * Tier.COUNT + tier.ordinal()] & WINS_MASK);
+    }
+
+    @Override
+    public int getSynergyGames(int champion, int ally) {
+        if (champion >= capacity || ally >= capacity || champion == ally) {
+            return 0;
+        }
+        return (int) (synergy[synergyCell(champion, ally)] >>> 32);
+    }
+
+    @Override
+    public int getSynergyWins(int champion, int ally) {
+        if (champion >= capacity || ally >= capacity || champion == ally) {
+            return 0;
+        }
+        return (int) (synergy[synergyCell(champion, ally)] & WINS_MASK);
+    }
+
+    @Override
+    public int getLaneGames(int champion, int opponent, Role role) {
+        if (champion >= capacity || opponent >= capacity || role == Role.UNKNOWN) {
+            return 0;
+        }
+        return (int) (lanes[laneCell(champion, opponent, role.ordinal() - 1)] >>> 32);
+    }
+
+    @Override
+    public int getLaneWins(int champion, int opponent, Role role) {
+        if (champion >= capacity || opponent >= capacity || role == Role.UNKNOWN) {
+            return 0;
+        }
+        return (int) (lanes[laneCell(champion, opponent, role.ordinal() - 1)] & WINS_MASK);
+    }
+
+    // Position of a lane matchup in the lanes array, with lane being the Role ordinal - 1
+    private int laneCell(int champion, int opponent, int lane) {
+        return (lane * capacity + champion) * capacity + opponent;
+    }
+
+    /**
+     * Position of the record of a pair of distinct champions in the triangular synergy array: the pairs of the
+     * higher ID come after those of every lower one, so the pairs of IDs below n fill the first synergyCells(n) cells.
+     */
+    static int synergyCell(int champion, int ally) {
+        int high = Math.max(champion, ally);
+        return high * (high - 1) / 2 + Math.min(champion, ally);
+    }
+
+    // The number of pairs of distinct champion IDs below size
+    static int synergyCells(int size) {
+        return size * (size - 1) / 2;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("A frozen matchup matrix cannot be updated");
+        }
+    }
+
+    // Grows the rows and columns when the index has outgrown the current capacity
+    private void ensureCapacity(int size) {
+        if (size <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(size, capacity * 2);
+        long[] grown = new long[newCapacity * newCapacity];
+        for (int row = 0; row < capacity; row++) {
+            System.arraycopy(cells, row * capacity, grown, row * newCapacity, capacity);
+        }
+        cells = grown;
+        long[] grownLanes = new long[LANES * newCapacity * newCapacity];
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int row = 0; row < capacity; row++) {
+                System.arraycopy(lanes, laneCell(row, 0, lane), grownLanes, (lane * newCapacity + row) * newCapacity, capacity);
+            }
+        }
+        lanes = grownLanes;
+        global = Arrays.copyOf(global, newCapacity);
+        roles = Arrays.copyOf(roles, newCapacity * Role.COUNT);
+        tiers = Arrays.copyOf(tiers, newCapacity * Tier.COUNT);
+        synergy = Arrays.copyOf(synergy, synergyCells(newCapacity));
+        capacity = newCapacity;
+    }
+
+    /**
+     * Returns a copy of this matrix that rejects updates. Copying the arrays directly is much faster than copyOf,
+     * which goes through the table interface cell by cell.
+     */
+    public MatchupMatrix frozenCopy() {
+        MatchupMatrix copy = copy();
+        copy.frozen = true;
+        return copy;
+    }
+
+    // Heap used by the arrays of this matrix
+    public long estimatedHeapBytes() {
+        return 8L * (cells.length + global.length + roles.length + tiers.length + synergy.length + lanes.length);
+    }
+
+    // Returns an updatable copy of this matrix, even if this one is frozen
+    public MatchupMatrix copy() {
+        return new MatchupMatrix(index, capacity, cells.clone(), global.clone(), roles.clone(), tiers.clone(), synergy.clone(), lanes.clone());
+    }
+
+    /**
+     * Copies another table, such as a mapped snapshot, into a new matrix that can be updated.
+     * The new matrix shares the table's champion index.
+     */
+    public static MatchupMatrix copyOf(MatchupTable table) {
+        ChampionIndex index = table.getIndex();
+        MatchupMatrix matrix = new MatchupMatrix(index);
+        int size = index.size();
+        for (int champion = 0; champion < size; champion++) {
+            for (int opponent = 0; opponent < size; opponent++) {
+                matrix.add(champion, opponent, table.getWins(champion, opponent), table.getGames(champion, opponent));
+            }
+            matrix.addGlobal(champion, table.getGlobalWins(champion), table.getGlobalGames(champion));
+            for (Role role : Role.values()) {
+                matrix.addRole(champion, role, table.getRoleWins(champion, role), table.getRoleGames(champion, role));
+            }
+            for (Tier tier : Tier.values()) {
+                matrix.addTier(champion, tier, table.getTierWins(champion, tier), table.getTierGames(champion, tier));
+            }
+            for (int ally = 0; ally < champion; ally++) {
+                matrix.addSynergy(champion, ally, table.getSynergyWins(champion, ally), table.getSynergyGames(champion, ally));
+            }
+            for (Role role : Role.values()) {
+                for (int opponent = 0; opponent < size; opponent++) {
+                    matrix.addLane(champion, opponent, role, table.getLaneWins(champion, opponent, role), table.getLaneGames(champion, opponent, role));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Copies a table with its own champion index, such as a separately stored snapshot, into a new matrix over the
+     * given index. Champions are matched by name and interned into the index if they are missing.
+     */
+    public static MatchupMatrix copyOf(MatchupTable table, ChampionIndex index) {
+        ChampionIndex source = table.getIndex();
+        int size = source.size();
+        int[] ids = new int[size];
+        for (int champion = 0; champion < size; champion++) {
+            ids[champion] = index.intern(source.nameOf(champion));
+        }
+        MatchupMatrix matrix = new MatchupMatrix(index);
+        for (int champion = 0; champion < size; champion++) {
+            for (int opponent = 0; opponent < size; opponent++) {
+                matrix.add(ids[champion], ids[opponent], table.getWins(champion, opponent), table.getGames(champion, opponent));
+            }
+            matrix.addGlobal(ids[champion], table.getGlobalWins(champion), table.getGlobalGames(champion));
+            for (Role role : Role.values()) {
+                matrix.addRole(ids[champion], role, table.getRoleWins(champion, role), table.getRoleGames(champion, role));
+            }
+            for (Tier tier : Tier.values()) {
+                matrix.addTier(ids[champion], tier, table.getTierWins(champion, tier), table.getTierGames(champion, tier));
+            }
+            for (int ally = 0; ally < champion; ally++) {
+                matrix.addSynergy(ids[champion], ids[ally], table.getSynergyWins(champion, ally), table.getSynergyGames(champion, ally));
+            }
+            for (Role role : Role.values()) {
+                for (int opponent = 0; opponent < size; opponent++) {
+                    matrix.addLane(ids[champion], ids[opponent], role, table.getLaneWins(champion, opponent, role), table.getLaneGames(champion, opponent, role));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Builds a matrix from the nested map format used by champion_data.json.
+     * Every champion in the map is interned into the given index. Global records are left at zero.
+     */
+    public static MatchupMatrix fromMap(Map<String, Map<String, ChampionMatchupData>> data, ChampionIndex index) {
+        for (String champion : data.keySet()) {
+            index.intern(champion);
+        }
+        MatchupMatrix matrix = new MatchupMatrix(index);
+        for (Map.Entry<String, Map<String, ChampionMatchupData>> row : data.entrySet()) {
+            int championId = index.indexOf(row.getKey());
+            for (Map.Entry<String, ChampionMatchupData> cell : row.getValue().entrySet()) {
+                int opponentId = index.indexOf(cell.getKey());
+                // Skips leftover aggregate keys such as "all"
+                if (opponentId < 0 || opponentId == championId) {
+                    continue;
+                }
+                matrix.add(championId, opponentId, cell.getValue().getWins(), cell.getValue().getGames());
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Separates the matchup data being written from the data being read. Matches are recorded into a working matrix
+ * through a MatchupAggregator, and publish() merges them and swaps in a frozen copy as the next MatchupEpoch
+ * through a single volatile reference. Readers take the current epoch and keep reading it for as long as they
+ * like: they never lock, never wait on ingestion and never see a half-merged match.
+ *
+ * Patch segments are published the same way. Only segments that received matches are copied; the others are
+ * shared with the previous epoch, which also lets PatchWindows reuse their prefix sums.
+ */
+public class MatchupPublisher {
+
+    private final long intervalNanos;
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private volatile MatchupEpoch published;
+    // The data the working matrices are copied from when the first match is recorded
+    private final MatchupTable initial;
+    private final NavigableMap<Integer, MatchupMatrix> initialSegments;
+    private final PatchWindows windows = new PatchWindows();
+    // Created when the first match is recorded, so a mapped snapshot is only copied if there is something to add
+    private volatile MatchupAggregator aggregator;
+    private volatile long lastPublishNanos = System.nanoTime();
+
+    /**
+     * @param initial The data to start from, published as epoch 0. It must not be modified afterwards.
+     * @param intervalMillis The minimum time between publications made by publishIfDue().
+     */
+    public MatchupPublisher(MatchupTable initial, long intervalMillis) {
+        this(initial, new TreeMap<>(), intervalMillis);
+    }
+
+    /**
+     * @param initial The lifetime data to start from, published as epoch 0. It must not be modified afterwards.
+     * @param initialSegments The segment of each tracked patch, already included in initial. Not modified either.
+     * @param intervalMillis The minimum time between publications made by publishIfDue().
+     */
+    public MatchupPublisher(MatchupTable initial, NavigableMap<Integer, MatchupMatrix> initialSegments, long intervalMillis) {
+        this.initial = initial;
+        this.initialSegments = new TreeMap<>(initialSegments);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.published = new MatchupEpoch(0, initial, this.initialSegments, windows);
+    }
+
+    // The latest published epoch. Never blocks
+    public MatchupEpoch current() {
+        return published;
+    }
+
+    /**
+     * Records a match into the working matrix. It becomes visible to readers with the next publication.
+     * Safe to call from any number of threads.
+     * @see MatchupAggregator#record(int[], int[], int[], int, int, int, int)
+     */
+    public void record(int[] championIds, int[] teamIds, int[] roles, int participantCount, int winningTeamId, int tier, int patch) {
+        aggregator().record(championIds, teamIds, roles, participantCount, winningTeamId, tier, patch);
+    }
+
+    /**
+     * Merges the matches recorded so far and publishes them as a new epoch. If nothing was recorded since the last
+     * publication the current epoch is kept.
+     * @return The epoch that is current after the call.
+     */
+    public MatchupEpoch publish() {
+        publishLock.lock();
+        try {
+            return publishLocked();
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Publishes if the interval has passed since the last publication. Called by ingestion threads after recording;
+     * if another thread is already publishing this returns at once instead of waiting.
+     */
+    public void publishIfDue() {
+        if (System.nanoTime() - lastPublishNanos < intervalNanos || !publishLock.tryLock()) {
+            return;
+        }
+        try {
+            if (System.nanoTime() - lastPublishNanos >= intervalNanos) {
+                publishLocked();
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Keeps only the newest segments and publishes the result. The matches of dropped segments stay in the
+     * lifetime data.
+     * @param keep The number of segments to keep.
+     * @return The patch keys of the dropped segments.
+     */
+    public List<Integer> compact(int keep) {
+        publishLock.lock();
+        try {
+            MatchupAggregator current = aggregator();
+            List<Integer> dropped = current.compactSegments(keep);
+            if (!dropped.isEmpty()) {
+                Set<Integer> changedPatches = new HashSet<>();
+                current.merge(changedPatches);
+                publishEpoch(current, changedPatches);
+            }
+            return dropped;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Estimates the heap used by the matchup data: the current epoch with its segments, and the working matrices.
+     * A table mapped from a snapshot lives outside the heap and counts as nothing.
+     */
+    public long estimatedHeapBytes() {
+        MatchupEpoch epoch = published;
+        long bytes = (epoch.getTable() instanceof MatchupMatrix matrix) ? matrix.estimatedHeapBytes() : 0;
+        for (MatchupMatrix segment : epoch.getSegments().values()) {
+            bytes += segment.estimatedHeapBytes();
+        }
+        MatchupAggregator current = aggregator;
+        return (current == null) ? bytes : bytes + current.estimatedHeapBytes();
+    }
+
+    private MatchupEpoch publishLocked() {
+        lastPublishNanos = System.nanoTime();
+        MatchupAggregator current = aggregator;
+        Set<Integer> changedPatches = new HashSet<>();
+        if (current == null || !current.merge(changedPatches)) {
+            return published;
+        }
+        return publishEpoch(current, changedPatches);
+    }
+
+    // Publishes the merged data, copying the changed segments and sharing the others with the previous epoch
+    private MatchupEpoch publishEpoch(MatchupAggregator current, Set<Integer> changedPatches) {
+        NavigableMap<Integer, MatchupMatrix> previous = published.getSegments();
+        NavigableMap<Integer, MatchupMatrix> segments = new TreeMap<>();
+        for (Map.Entry<Integer, MatchupMatrix> entry : current.getSegments().entrySet()) {
+            MatchupMatrix shared = previous.get(entry.getKey());
+            boolean changed = changedPatches.contains(entry.getKey()) || shared == null;
+            segments.put(entry.getKey(), changed ? entry.getValue().frozenCopy() : shared);
+        }
+        published = new MatchupEpoch(published.getNumber() + 1, current.getBase().frozenCopy(), segments, windows);
+        return published;
+    }
+
+    // Returns the aggregator, copying the initial data into the working matrices the first time
+    private MatchupAggregator aggregator() {
+        MatchupAggregator current = aggregator;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (aggregator == null) {
+                // Epoch 0 keeps reading the initial data, so the working matrices are always copies
+                Map<Integer, MatchupMatrix> segments = new TreeMap<>();
+                for (Map.Entry<Integer, MatchupMatrix> entry : initialSegments.entrySet()) {
+                    segments.put(entry.getKey(), entry.getValue().copy());
+                }
+                aggregator = new MatchupAggregator(MatchupMatrix.copyOf(initial), segments);
+            }
+            return aggregator;
+        }
+    }
+}
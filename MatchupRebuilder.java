@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Rebuilds the matchup data from the match archive instead of going through the ingestion path one match at a
+ * time. The archive's blocks are split into ranges across a ForkJoinPool; each task streams its range through
+ * MatchParser into its own MatchupMatrix and patch segments without any locking, and the partial results are
+ * added together pairwise as the tasks join, so the merge is a tree rather than a queue on one matrix. The work
+ * is split into a few ranges per worker, so the number of partial matrices stays small whatever the archive size.
+ */
+public class MatchupRebuilder {
+
+    // Ranges per worker, so a worker that finishes early can steal part of another's work
+    private static final int RANGES_PER_WORKER = 4;
+
+    /**
+     * The rebuilt lifetime data and patch segments, with the number of matches read and of those that could not
+     * be parsed.
+     */
+    public record Result(MatchupMatrix lifetime, NavigableMap<Integer, MatchupMatrix> segments, long matches, long failed) {
+    }
+
+    private MatchupRebuilder() {
+
+    }
+
+    /**
+     * Rebuilds the matchup data of every match in the archive.
+     * @param archive The archive, whose open block should be written first (see MatchArchive.sync()).
+     * @param index The champion index to record into. New champions are interned.
+     * @param pool The pool to run on; its parallelism decides how the archive is split.
+     */
+    public static Result rebuild(MatchArchive archive, ChampionIndex index, ForkJoinPool pool) throws IOException {
+        int blocks = archive.blockCount();
+        int leafBlocks = Math.max(1, blocks / (pool.getParallelism() * RANGES_PER_WORKER));
+        try {
+            Partial partial = pool.invoke(new RebuildTask(archive, index, 0, blocks, leafBlocks));
+            return new Result(partial.lifetime, partial.segments, partial.matches, partial.failed);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // The data rebuilt from a range of blocks
+    private static class Partial {
+        final MatchupMatrix lifetime;
+        final NavigableMap<Integer, MatchupMatrix> segments = new TreeMap<>();
+        long matches = 0;
+        long failed = 0;
+
+        Partial(ChampionIndex index) {
+            lifetime = new MatchupMatrix(index);
+        }
+
+        void addAll(Partial other) {
+            lifetime.addAll(other.lifetime);
+            for (Map.Entry<Integer, MatchupMatrix> segment : other.segments.entrySet()) {
+                MatchupMatrix own = segments.putIfAbsent(segment.getKey(), segment.getValue());
+                if (own != null) {
+                    own.addAll(segment.getValue());
+                }
+            }
+            matches += other.matches;
+            failed += other.failed;
+        }
+    }
+
+    private static class RebuildTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MatchArchive archive;
+        private final transient ChampionIndex index;
+        private final int from;
+        private final int to;
+        private final int leafBlocks;
+
+        RebuildTask(MatchArchive archive, ChampionIndex index, int from, int to, int leafBlocks) {
+            this.archive = archive;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+            this.leafBlocks = leafBlocks;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= leafBlocks) {
+                return rebuildRange();
+            }
+            int middle = (from + to) >>> 1;
+            RebuildTask left = new RebuildTask(archive, index, from, middle, leafBlocks);
+            left.fork();
+            Partial right = new RebuildTask(archive, index, middle, to, leafBlocks).compute();
+            Partial result = left.join();
+            result.addAll(right);
+            return result;
+        }
+
+        // Parses and records every match of the range into a new partial
+        private Partial rebuildRange() {
+            Partial partial = new Partial(index);
+            MatchSummary summary = new MatchSummary();
+            int[][] buffers = {new int[10], new int[10], new int[10]};
+            try {
+                archive.forEachInBlocks(from, to, (matchId, matchData, tier) -> {
+                    if (!MatchParser.parse(matchData, summary)) {
+                        partial.failed++;
+                        return;
+                    }
+                    int participantCount = summary.getParticipantCount();
+                    if (participantCount > buffers[0].length) {
+                        buffers[0] = new int[participantCount];
+                        buffers[1] = new int[participantCount];
+                        buffers[2] = new int[participantCount];
+                    }
+                    int[] championIds = buffers[0];
+                    int[] teamIds = buffers[1];
+                    int[] roles = buffers[2];
+                    for (int i = 0; i < participantCount; i++) {
+                        championIds[i] = index.intern(summary.getChampionName(i).toLowerCase(Locale.ROOT));
+                        teamIds[i] = summary.getTeamId(i);
+                        roles[i] = summary.getRole(i).ordinal();
+                    }
+                    int winningTeamId = summary.getWinningTeamId();
+                    partial.lifetime.recordMatch(championIds, teamIds, roles, participantCount, winningTeamId, tier.ordinal());
+                    int patch = summary.getPatch();
+                    if (patch != PatchVersion.UNKNOWN) {
+                        partial.segments.computeIfAbsent(patch, key -> new MatchupMatrix(index))
+                                .recordMatch(championIds, teamIds, roles, participantCount, winningTeamId, tier.ordinal());
+                    }
+                    partial.matches++;
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read access to the matchup record of every champion against every other champion, indexed by champion ID.
+ * Implemented by the in-memory MatchupMatrix and by the memory-mapped MappedSnapshot.
+ */
+public interface MatchupTable {
+
+    ChampionIndex getIndex();
+
+    // Games the champion has played against the opponent. 0 for IDs the table has no data for
+    int getGames(int champion, int opponent);
+
+    // Games the champion has won against the opponent. 0 for IDs the table has no data for
+    int getWins(int champion, int opponent);
+
+    // Games counted towards the champion's global win rate (one per opponent faced). 0 for IDs the table has no data for
+    int getGlobalGames(int champion);
+
+    // Wins counted towards the champion's global win rate. 0 for IDs the table has no data for
+    int getGlobalWins(int champion);
+
+    // Matches the champion has played in a role (one per match, unlike the global record)
+    int getRoleGames(int champion, Role role);
+
+    int getRoleWins(int champion, Role role);
+
+    // Matches the champion has played that were found through a league of the tier
+    int getTierGames(int champion, Tier tier);
+
+    int getTierWins(int champion, Tier tier);
+
+    // Matches the champion and the ally have played on the same team. Symmetric, and 0 for a champion with itself
+    int getSynergyGames(int champion, int ally);
+
+    // Matches the champion and the ally have won together
+    int getSynergyWins(int champion, int ally);
+
+    // Games the champion has played against the opponent with both in the role's position. 0 for the UNKNOWN role
+    int getLaneGames(int champion, int opponent, Role role);
+
+    // Games the champion has won against the opponent with both in the role's position
+    int getLaneWins(int champion, int opponent, Role role);
+
+    /**
+     * Returns a copy of the global win rate of every champion in the index, keyed by name.
+     */
+    default Map<String, ChampionMatchupData> getGlobalWinrates() {
+        ChampionIndex index = getIndex();
+        int size = index.size();
+        Map<String, ChampionMatchupData> global = new HashMap<>();
+        for (int champion = 0; champion < size; champion++) {
+            global.put(index.nameOf(champion), new ChampionMatchupData(getGlobalWins(champion), getGlobalGames(champion)));
+        }
+        return global;
+    }
+
+    /**
+     * Returns a copy of the record of a champion against an opponent.
+     * @return The matchup data, or null if either champion is unknown.
+     */
+    default ChampionMatchupData getMatchup(String champion, String opponent) {
+        int championId = getIndex().indexOf(champion);
+        int opponentId = getIndex().indexOf(opponent);
+        if (championId < 0 || opponentId < 0) {
+            return null;
+        }
+        return new ChampionMatchupData(getWins(championId, opponentId), getGames(championId, opponentId));
+    }
+
+    /**
+     * Converts the table into the nested map format used by champion_data.json,
+     * with an entry for every pair of distinct champions.
+     */
+    default Map<String, Map<String, ChampionMatchupData>> toMap() {
+        ChampionIndex index = getIndex();
+        int size = index.size();
+        Map<String, Map<String, ChampionMatchupData>> data = new HashMap<>();
+        for (int champion = 0; champion < size; champion++) {
+            Map<String, ChampionMatchupData> row = new HashMap<>();
+            for (int opponent = 0; opponent < size; opponent++) {
+                if (champion != opponent) {
+                    row.put(index.nameOf(opponent), new ChampionMatchupData(getWins(champion, opponent), getGames(champion, opponent)));
+                }
+            }
+            data.put(index.nameOf(champion), row);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,261 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Counters, rates, latency histograms and gauges for the crawl and the server, exposed over JMX as the MBean
+ * leaguecompcalculator:type=Metrics and as Prometheus text on /metrics. Metrics are created on first use and
+ * identified by name and labels, e.g. Metrics.histogram("riot_request_seconds", help, "method", method).
+ * Recording never locks, apart from a rate meter's per-second slot; the lookup is a map read, so callers on hot
+ * paths keep the metric in a field.
+ */
+public final class Metrics {
+
+    // The port the crawl serves /metrics on, the usual one for Prometheus exporters
+    public static final int DEFAULT_PORT = 9464;
+    private static final String JMX_NAME = "leaguecompcalculator:type=Metrics";
+
+    // Families by name, each with its series by label string, both sorted so the output is stable
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private record Family(String name, String type, String help, Map<String, Object> series) {
+    }
+
+    /**
+     * A count that only goes up.
+     */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    static {
+        gauge("log_messages_dropped", "Log messages dropped because the logging queue was full", () -> Log.getDropped());
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(JMX_NAME));
+        } catch (JMException e) {
+            Log.warn("Could not register the metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    private Metrics() {
+
+    }
+
+    /**
+     * @param name The metric name, ending in _total.
+     * @param labels Label names and values, alternating.
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return series(name, "counter", help, labels, Counter::new);
+    }
+
+    // A counter that also reports its rate over the last minute over JMX
+    public static RateMeter meter(String name, String help, String... labels) {
+        return series(name, "counter", help, labels, RateMeter::new);
+    }
+
+    // Durations, exposed in seconds. The name should end in _seconds
+    public static LatencyHistogram histogram(String name, String help, String... labels) {
+        return series(name, "histogram", help, labels, LatencyHistogram::new);
+    }
+
+    // A value read when the metrics are collected. Registering the same name again replaces the value
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        family(name, "gauge", help).series().put("", value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T series(String name, String type, String help, String[] labels, Supplier<T> create) {
+        return (T) family(name, type, help).series().computeIfAbsent(labelString(labels), key -> create.get());
+    }
+
+    private static Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, type, help, new ConcurrentSkipListMap<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type());
+        }
+        return family;
+    }
+
+    // Formats labels the way Prometheus writes them: method="match-v5.getMatch",route="americas"
+    private static String labelString(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return result.toString();
+    }
+
+    // Every metric in the Prometheus text format
+    public static String prometheusText() {
+        StringBuilder text = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            text.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            text.append("# TYPE ").append(family.name()).append(' ').append(family.type()).append('\n');
+            for (Map.Entry<String, Object> series : family.series().entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LatencyHistogram histogram) {
+                    long[] counts = histogram.cumulativeCounts();
+                    String prefix = labels.isEmpty() ? "" : labels + ",";
+                    for (int i = 0; i < LatencyHistogram.boundCount(); i++) {
+                        sample(text, family.name() + "_bucket", prefix + "le=\"" + LatencyHistogram.boundSeconds(i) + "\"", counts[i]);
+                    }
+                    sample(text, family.name() + "_bucket", prefix + "le=\"+Inf\"", counts[counts.length - 1]);
+                    sample(text, family.name() + "_sum", labels, histogram.getSumSeconds());
+                    sample(text, family.name() + "_count", labels, counts[counts.length - 1]);
+                } else {
+                    sample(text, family.name(), labels, value(metric));
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, Number value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    // The current value of a counter, meter or gauge
+    private static Number value(Object metric) {
+        if (metric instanceof Counter counter) {
+            return counter.get();
+        } else if (metric instanceof RateMeter meter) {
+            return meter.getCount();
+        }
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    /**
+     * Serves /metrics on the loopback interface, for runs without the recommendation server such as a crawl.
+     * @return The server, to be stopped by the caller.
+     */
+    public static HttpServer startEndpoint(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", Metrics::handle);
+        server.start();
+        Log.info("Metrics on http://localhost:{}/metrics", port);
+        return server;
+    }
+
+    // Answers a scrape with the Prometheus text
+    public static void handle(HttpExchange exchange) throws IOException {
+        byte[] bytes = prometheusText().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Exposes every series as read-only attributes named like the Prometheus series. Histograms become count,
+     * mean and 99th percentile attributes in milliseconds, and meters also get their rate per second. The attribute
+     * list is built on every request, so metrics created later show up too.
+     */
+    private static class MetricsMBean implements DynamicMBean {
+
+        private Map<String, Supplier<Object>> attributes() {
+            Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+            for (Family family : families.values()) {
+                for (Map.Entry<String, Object> series : family.series().entrySet()) {
+                    String name = series.getKey().isEmpty() ? family.name() : family.name() + "{" + series.getKey() + "}";
+                    Object metric = series.getValue();
+                    if (metric instanceof LatencyHistogram histogram) {
+                        attributes.put(name + ".count", histogram::getCount);
+                        attributes.put(name + ".meanMillis", histogram::getMeanMillis);
+                        attributes.put(name + ".p99Millis", () -> histogram.getQuantileMillis(0.99));
+                    } else if (metric instanceof RateMeter meter) {
+                        attributes.put(name, meter::getCount);
+                        attributes.put(name + ".perSecond", meter::getPerSecond);
+                    } else {
+                        attributes.put(name, () -> value(metric));
+                    }
+                }
+            }
+            return attributes;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Supplier<Object> value = attributes().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value.get();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Supplier<Object>> attributes = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                Supplier<Object> value = attributes.get(name);
+                if (value != null) {
+                    list.add(new Attribute(name, value.get()));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (Map.Entry<String, Supplier<Object>> attribute : attributes().entrySet()) {
+                Object value = attribute.getValue().get();
+                String type = (value instanceof Long) ? "long" : "double";
+                infos.add(new MBeanAttributeInfo(attribute.getKey(), type, attribute.getKey(), true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Crawl and server metrics", infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Converts game versions into the patch keys that matchup segments are stored under. Only the major and minor
+ * parts identify a patch: "14.4.566.1234" is patch 14.4, stored as 1404. Keys sort in release order.
+ */
+public final class PatchVersion {
+
+    // Matches whose game version is missing or unreadable. They only count towards the lifetime data
+    public static final int UNKNOWN = 0;
+
+    private PatchVersion() {
+
+    }
+
+    /**
+     * @param gameVersion A game version such as "14.4.566.1234" or "14.4".
+     * @return The patch key, or UNKNOWN if the version cannot be read.
+     */
+    public static int parse(String gameVersion) {
+        if (gameVersion == null) {
+            return UNKNOWN;
+        }
+        String[] parts = gameVersion.split("\\.");
+        if (parts.length < 2) {
+            return UNKNOWN;
+        }
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = Integer.parseInt(parts[1]);
+            if (major <= 0 || major > 300 || minor < 0 || minor >= 100) {
+                return UNKNOWN;
+            }
+            return major * 100 + minor;
+        } catch (NumberFormatException e) {
+            return UNKNOWN;
+        }
+    }
+
+    // Formats a patch key as "14.4"
+    public static String format(int patch) {
+        return (patch / 100) + "." + (patch % 100);
+    }
+}
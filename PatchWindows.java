@@ -0,0 +1,56 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sums the patch segments of a window of recent patches from cached prefix aggregates. prefix[i] holds the sum of
+ * segments 0..i, oldest first, so the last n segments are prefix[last] minus prefix[last - n]: one copy and one
+ * subtraction however wide the window is. Prefixes are rebuilt only from the first segment that changed, and new
+ * matches almost always land in the newest patch, so publishing an epoch usually only rebuilds the last prefix.
+ * Shared by every epoch of a publisher; thread-safe.
+ */
+public class PatchWindows {
+
+    // The segments the prefixes were built from, compared by identity: published segments never change
+    private final List<MatchupMatrix> segments = new ArrayList<>();
+    private final List<MatchupMatrix> prefixes = new ArrayList<>();
+
+    /**
+     * Sums the newest segments.
+     * @param current The segments of an epoch, oldest first.
+     * @param count The number of segments to sum, at least 1. Capped at the number of segments.
+     * @return A frozen matrix with the sum. Empty if there are no segments.
+     */
+    public synchronized MatchupMatrix window(List<MatchupMatrix> current, int count, ChampionIndex index) {
+        if (current.isEmpty()) {
+            return new MatchupMatrix(index).frozenCopy();
+        }
+        updatePrefixes(current);
+        int last = current.size() - 1;
+        int first = Math.max(0, current.size() - count);
+        MatchupMatrix sum = prefixes.get(last).copy();
+        if (first > 0) {
+            sum.subtractAll(prefixes.get(first - 1));
+        }
+        return sum.frozenCopy();
+    }
+
+    // Keeps the prefixes of the unchanged leading segments and rebuilds the rest
+    private void updatePrefixes(List<MatchupMatrix> current) {
+        int unchanged = 0;
+        while (unchanged < segments.size() && unchanged < current.size() && segments.get(unchanged) == current.get(unchanged)) {
+            unchanged++;
+        }
+        while (segments.size() > unchanged) {
+            segments.remove(segments.size() - 1);
+            prefixes.remove(prefixes.size() - 1);
+        }
+        for (int i = unchanged; i < current.size(); i++) {
+            MatchupMatrix prefix = (i == 0) ? current.get(0).copy() : prefixes.get(i - 1).copy();
+            if (i > 0) {
+                prefix.addAll(current.get(i));
+            }
+            segments.add(current.get(i));
+            prefixes.add(prefix);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Tracks which matches have been processed. Match IDs are encoded into longs and kept in a primitive set,
+ * with a Bloom filter in front so the usual "not seen yet" answer never probes the set.
+ *
+ * New IDs are appended to a binary file as 8-byte values, so adding a match costs a few bytes of I/O
+ * instead of rewriting every ID. IDs that do not fit the encoding are written as a -1 marker followed by the
+ * ID string. The old JSON format can still be imported and exported.
+ */
+public final class ProcessedMatchIdStore implements Closeable {
+
+    private static final long STRING_MARKER = -1L;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // IDs appended to the file between fsyncs
+    private static final int SYNC_BATCH_SIZE = 20;
+
+    private final File file;
+    private final LongHashSet ids;
+    // Match IDs that could not be encoded as a long
+    private final Set<String> otherIds = new HashSet<>();
+    private BloomFilter bloomFilter;
+    // The number of IDs the Bloom filter was sized for. It is rebuilt larger when exceeded
+    private int bloomCapacity;
+    private FileOutputStream fileStream;
+    private DataOutputStream out;
+    private int unsyncedIds = 0;
+
+    /**
+     * Loads the store from its binary file, importing the given JSON file first if the binary file does not exist yet.
+     * @param binaryFilePath The binary file the store reads and appends to.
+     * @param jsonFilePath The legacy JSON file to import from.
+     */
+    public ProcessedMatchIdStore(String binaryFilePath, String jsonFilePath) throws IOException {
+        this.file = new File(binaryFilePath);
+        this.ids = new LongHashSet();
+        boolean imported = false;
+        if (file.exists()) {
+            readBinaryFile();
+        } else {
+            imported = importJson(jsonFilePath);
+        }
+        rebuildBloomFilter();
+        if (imported) {
+            writeBinaryFile();
+        }
+        this.fileStream = new FileOutputStream(file, true);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileStream));
+    }
+
+    public synchronized boolean contains(String matchId) {
+        long encoded = MatchIds.encode(matchId);
+        if (encoded == -1) {
+            return otherIds.contains(matchId);
+        }
+        return bloomFilter.mightContain(encoded) && ids.contains(encoded);
+    }
+
+    /**
+     * Adds a match ID to the store and appends it to the binary file if it is new.
+     * @return True if the ID was not already present.
+     */
+    public synchronized boolean add(String matchId) throws IOException {
+        if (!addToMemory(matchId)) {
+            return false;
+        }
+        long encoded = MatchIds.encode(matchId);
+        out.writeLong(encoded);
+        if (encoded == -1) {
+            out.writeUTF(matchId);
+        }
+        if (++unsyncedIds >= SYNC_BATCH_SIZE) {
+            sync();
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        return ids.size() + otherIds.size();
+    }
+
+    public synchronized void sync() throws IOException {
+        out.flush();
+        fileStream.getFD().sync();
+        unsyncedIds = 0;
+    }
+
+    /**
+     * Writes every ID to a JSON file in the same format as processed_match_ids.json.
+     */
+    public synchronized void exportJson(String jsonFilePath) throws IOException {
+        Set<String> all = new TreeSet<>(otherIds);
+        for (long encoded : ids.toSortedArray()) {
+            all.add(MatchIds.decode(encoded));
+        }
+        try (Writer writer = new FileWriter(jsonFilePath, false)) {
+            new Gson().toJson(all, writer);
+        }
+    }
+
+    /**
+     * Adds every ID in a JSON file to the store.
+     * @return True if the file existed and held any IDs.
+     */
+    public synchronized boolean importJson(String jsonFilePath) throws IOException {
+        File jsonFile = new File(jsonFilePath);
+        if (!jsonFile.exists()) {
+            return false;
+        }
+        Set<String> jsonIds;
+        try (Reader reader = new FileReader(jsonFile)) {
+            Type setType = new TypeToken<HashSet<String>>() {}.getType();
+            jsonIds = new Gson().fromJson(reader, setType);
+        }
+        if (jsonIds == null || jsonIds.isEmpty()) {
+            return false;
+        }
+        for (String matchId : jsonIds) {
+            addToMemory(matchId);
+        }
+        // Appended IDs go through add(), so an import after startup needs the whole file rewritten
+        if (out != null) {
+            out.close();
+            writeBinaryFile();
+            fileStream = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileStream));
+        }
+        return true;
+    }
+
+    private boolean addToMemory(String matchId) {
+        long encoded = MatchIds.encode(matchId);
+        if (encoded == -1) {
+            return otherIds.add(matchId);
+        }
+        if (!ids.add(encoded)) {
+            return false;
+        }
+        // While the constructor loads the IDs there is no filter yet; it is built once they are all in
+        if (bloomFilter == null) {
+            return true;
+        }
+        if (ids.size() > bloomCapacity) {
+            rebuildBloomFilter();
+        } else {
+            bloomFilter.add(encoded);
+        }
+        return true;
+    }
+
+    private void rebuildBloomFilter() {
+        bloomCapacity = Math.max(1024, ids.size() * 2);
+        bloomFilter = new BloomFilter(bloomCapacity, FALSE_POSITIVE_RATE);
+        ids.forEach(bloomFilter::add);
+    }
+
+    private void readBinaryFile() throws IOException {
+        long validLength = 0;
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                try {
+                    long encoded = in.readLong();
+                    if (encoded == STRING_MARKER) {
+                        otherIds.add(in.readUTF());
+                    } else {
+                        ids.add(encoded);
+                    }
+                    validLength = counter.getCount();
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        // Cut off a torn value at the end so later appends stay aligned. At worst that match is fetched again
+        if (validLength < file.length()) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(validLength);
+            }
+        }
+    }
+
+    // Rewrites the binary file with every ID in ascending order
+    private void writeBinaryFile() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(stream))) {
+            for (long encoded : ids.toSortedArray()) {
+                tempOut.writeLong(encoded);
+            }
+            for (String matchId : otherIds) {
+                tempOut.writeLong(STRING_MARKER);
+                tempOut.writeUTF(matchId);
+            }
+            tempOut.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+    }
+}
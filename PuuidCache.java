@@ -0,0 +1,155 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the PUUID of each summoner so repeated crawls of the same leagues do not spend a summoner request
+ * per league entry. Entries are evicted least recently used first once the cache holds maxEntries, and
+ * expire after ttlMillis. The cache is saved to a binary file at the end of each crawl.
+ *
+ * File layout: magic, version, entry count, then each entry as key (UTF), PUUID (UTF) and fetch time (long),
+ * least recently used first so reloading keeps the eviction order.
+ */
+public class PuuidCache {
+
+    private static final int MAGIC = 0x4C435043; // "LCPC"
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final int maxEntries;
+    private final long ttlMillis;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Entry(String puuid, long fetchedAt) {
+    }
+
+    /**
+     * Creates the cache and loads the entries saved by the previous run, dropping expired ones.
+     * @param path The cache file.
+     * @param maxEntries The number of entries kept before the least recently used ones are evicted.
+     * @param ttlMillis How long an entry stays valid after it was fetched.
+     */
+    public PuuidCache(Path path, int maxEntries, long ttlMillis) {
+        this.path = path;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > PuuidCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Looks up the PUUID of a summoner.
+     * @param region The platform the summoner ID belongs to. Summoner IDs are only unique within a platform.
+     * @return The cached PUUID, or null if it is missing or expired.
+     */
+    public synchronized String get(Region region, String summonerId) {
+        String key = key(region, summonerId);
+        Entry entry = entries.get(key);
+        if (entry == null || isExpired(entry, System.currentTimeMillis())) {
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.puuid();
+    }
+
+    public synchronized void put(Region region, String summonerId, String puuid) {
+        entries.put(key(region, summonerId), new Entry(puuid, System.currentTimeMillis()));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Lookups answered from the cache. Each one is a summoner request that was not made
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Writes the cache to a temporary file and moves it into place, skipping expired entries.
+     */
+    public synchronized void save() throws IOException {
+        long now = System.currentTimeMillis();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int count = 0;
+            for (Entry entry : entries.values()) {
+                if (!isExpired(entry, now)) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (!isExpired(entry.getValue(), now)) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().puuid());
+                    out.writeLong(entry.getValue().fetchedAt());
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.warn("Ignoring unrecognized PUUID cache: {}", path);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Entry entry = new Entry(in.readUTF(), in.readLong());
+                if (!isExpired(entry, now)) {
+                    entries.put(key, entry);
+                }
+            }
+        } catch (IOException e) {
+            // A damaged cache only costs extra requests, so keep whatever was read
+            Log.error("Error reading PUUID cache: {}", e.getMessage());
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.fetchedAt() > ttlMillis;
+    }
+
+    private static String key(Region region, String summonerId) {
+        return region.name() + ":" + summonerId;
+    }
+}
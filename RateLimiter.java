@@ -0,0 +1,141 @@
+import java.util.*;
+
+/**
+ * Rate limiter for the Riot API with a token bucket for every window of the application limit and of each method's
+ * limit. The windows start from known defaults and are replaced by whatever the server reports in the
+ * X-App-Rate-Limit and X-Method-Rate-Limit headers, and the remaining tokens follow the matching -Count headers.
+ */
+public class RateLimiter {
+
+    private List<TokenBucket> appBuckets;
+    private final Map<String, List<TokenBucket>> methodBuckets = new HashMap<>();
+
+    /**
+     * @param defaultAppLimits The application limits to use until the server reports them, e.g. "20:1,100:120".
+     */
+    public RateLimiter(String defaultAppLimits) {
+        this.appBuckets = parseLimits(defaultAppLimits);
+    }
+
+    /**
+     * Blocks until every bucket of the application and the given method has a token, then takes one from each.
+     * @param method The method key the request counts against.
+     */
+    public void acquire(String method) throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                List<TokenBucket> buckets = bucketsFor(method);
+                wait = 0;
+                for (TokenBucket bucket : buckets) {
+                    wait = Math.max(wait, bucket.millisUntilAvailable(now));
+                }
+                if (wait == 0) {
+                    for (TokenBucket bucket : buckets) {
+                        bucket.consume(now);
+                    }
+                    return;
+                }
+            }
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Updates the buckets from the rate limit headers of a response. Any header may be null.
+     * @param method The method key the request counted against.
+     * @param appLimit The X-App-Rate-Limit header.
+     * @param appCount The X-App-Rate-Limit-Count header.
+     * @param methodLimit The X-Method-Rate-Limit header.
+     * @param methodCount The X-Method-Rate-Limit-Count header.
+     */
+    public synchronized void update(String method, String appLimit, String appCount, String methodLimit, String methodCount) {
+        long now = System.currentTimeMillis();
+        if (appLimit != null) {
+            appBuckets = reconcile(appBuckets, appLimit);
+        }
+        if (methodLimit != null) {
+            methodBuckets.put(method, reconcile(methodBuckets.getOrDefault(method, List.of()), methodLimit));
+        }
+        syncCounts(appBuckets, appCount, now);
+        syncCounts(methodBuckets.getOrDefault(method, List.of()), methodCount, now);
+    }
+
+    /**
+     * Stops requests against the application, or only the given method, until the Retry-After time has passed.
+     * @param method The method key, or null to block the whole application.
+     * @param retryAfterSeconds The Retry-After header value in seconds.
+     */
+    public synchronized void retryAfter(String method, long retryAfterSeconds) {
+        long until = System.currentTimeMillis() + retryAfterSeconds * 1000;
+        List<TokenBucket> buckets = (method == null) ? appBuckets : methodBuckets.getOrDefault(method, appBuckets);
+        for (TokenBucket bucket : buckets) {
+            bucket.block(until);
+        }
+    }
+
+    private List<TokenBucket> bucketsFor(String method) {
+        List<TokenBucket> buckets = new ArrayList<>(appBuckets);
+        buckets.addAll(methodBuckets.getOrDefault(method, List.of()));
+        return buckets;
+    }
+
+    // Keeps existing buckets whose limit and window are unchanged so their state survives, and replaces the rest
+    private static List<TokenBucket> reconcile(List<TokenBucket> current, String header) {
+        List<TokenBucket> reported = parseLimits(header);
+        List<TokenBucket> result = new ArrayList<>();
+        for (TokenBucket bucket : reported) {
+            TokenBucket existing = null;
+            for (TokenBucket candidate : current) {
+                if (candidate.getLimit() == bucket.getLimit() && candidate.getWindowMillis() == bucket.getWindowMillis()) {
+                    existing = candidate;
+                    break;
+                }
+            }
+            result.add(existing != null ? existing : bucket);
+        }
+        return result;
+    }
+
+    // Applies a "count:seconds,..." header to the buckets with the same window
+    private static void syncCounts(List<TokenBucket> buckets, String header, long now) {
+        if (header == null) {
+            return;
+        }
+        for (String part : header.split(",")) {
+            String[] values = part.trim().split(":");
+            if (values.length != 2) {
+                continue;
+            }
+            try {
+                int count = Integer.parseInt(values[0]);
+                long windowMillis = Long.parseLong(values[1]) * 1000;
+                for (TokenBucket bucket : buckets) {
+                    if (bucket.getWindowMillis() == windowMillis) {
+                        bucket.sync(count, now);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                Log.warn("Ignoring malformed rate limit count: {}", part);
+            }
+        }
+    }
+
+    // Parses a "limit:seconds,..." header into one bucket per window
+    private static List<TokenBucket> parseLimits(String header) {
+        List<TokenBucket> buckets = new ArrayList<>();
+        for (String part : header.split(",")) {
+            String[] values = part.trim().split(":");
+            if (values.length != 2) {
+                continue;
+            }
+            try {
+                buckets.add(new TokenBucket(Integer.parseInt(values[0]), Long.parseLong(values[1]) * 1000));
+            } catch (NumberFormatException e) {
+                Log.warn("Ignoring malformed rate limit: {}", part);
+            }
+        }
+        return buckets;
+    }
+}
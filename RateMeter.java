@@ -0,0 +1,49 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and their average rate over the last minute. Prometheus computes rates from the total itself, but
+ * JMX clients only see current values, so the meter also keeps the count of each of the last 60 seconds.
+ */
+public class RateMeter {
+
+    private static final int SLOTS = 60;
+
+    private final LongAdder total = new LongAdder();
+    // The second each slot was last used for, and the events counted in it
+    private final long[] slotSeconds = new long[SLOTS];
+    private final long[] slotCounts = new long[SLOTS];
+
+    public void mark() {
+        mark(1);
+    }
+
+    public void mark(long events) {
+        total.add(events);
+        long second = System.nanoTime() / 1_000_000_000L;
+        int slot = (int) Math.floorMod(second, (long) SLOTS);
+        synchronized (this) {
+            if (slotSeconds[slot] != second) {
+                slotSeconds[slot] = second;
+                slotCounts[slot] = 0;
+            }
+            slotCounts[slot] += events;
+        }
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    // Events per second over the last full minute, not counting the current second
+    public synchronized double getPerSecond() {
+        long second = System.nanoTime() / 1_000_000_000L;
+        long events = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long age = second - slotSeconds[slot];
+            if (age >= 1 && age < SLOTS) {
+                events += slotCounts[slot];
+            }
+        }
+        return events / (double) (SLOTS - 1);
+    }
+}
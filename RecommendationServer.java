@@ -0,0 +1,397 @@
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves recommendations and win rates as JSON over HTTP, so the data can be queried by other programs and by
+ * many clients at once instead of one console session. Each request runs on its own virtual thread and only reads
+ * the in-memory data: the counter index, the matchup table and the global win rates. It listens on the loopback
+ * interface only.
+ *
+ * Endpoints (GET only):
+ *   /recommend?enemies=ahri,zed&role=mid&limit=10   best champions against the enemies, normalized like the console
+ *   /recommend?enemies=ahri,zed&allies=lulu         the same, also counting each champion's record with the locked allies
+ *   /draft?enemies=ahri,zed&allies=lulu&roles=top,mid&limit=5
+ *                                                   best compositions for the open slots (roles left out: any role
+ *                                                   for every slot the allies leave)
+ *   /winrate?champion=ahri                          global win rate of one champion, or of every champion if omitted
+ *   /winrate?champion=ahri&role=mid&tier=gold       the same from the role or tier rollup (role or tier may be given alone)
+ *   /matchup?champion=ahri&opponent=zed             record of a champion against an opponent
+ *   /matchup?champion=ahri&opponent=zed&role=mid    the same, only counting games where both played the role
+ * Every endpoint also takes patches=N to only count the newest N tracked patches instead of the lifetime data.
+ *   /metrics                                        crawl and server metrics in the Prometheus text format
+ */
+public class RecommendationServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 200;
+    // Pending connections the OS queues while every accept is busy
+    private static final int BACKLOG = 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final DataStorage dataStorage;
+    private final ChampionDataFetcher fetcher;
+    private final Gson gson = new Gson();
+
+    /**
+     * Thrown by a handler to answer with an error status and message.
+     */
+    private static class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        RequestException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+
+    private interface Handler {
+        Object handle(Map<String, String> query) throws RequestException;
+    }
+
+    public RecommendationServer(int port) throws IOException {
+        // Responses are small, so without TCP_NODELAY each one can wait on the client's delayed ACK (about 40ms).
+        // The JDK server reads this once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        dataStorage = DataStorage.getInstance();
+        fetcher = new ChampionDataFetcher();
+        // A local service: /draft is expensive and /metrics is internal, so neither is exposed to the network
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/recommend", exchange -> respond(exchange, this::recommend));
+        server.createContext("/draft", exchange -> respond(exchange, this::draft));
+        server.createContext("/winrate", exchange -> respond(exchange, this::winrate));
+        server.createContext("/matchup", exchange -> respond(exchange, this::matchup));
+        server.createContext("/metrics", Metrics::handle);
+        server.createContext("/", exchange -> respond(exchange, query -> {
+            throw new RequestException(404, "Unknown endpoint. Use /recommend, /draft, /winrate, /matchup or /metrics");
+        }));
+    }
+
+    public void start() {
+        server.start();
+        Log.info("Recommendation server listening on http://localhost:{}", getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private Object recommend(Map<String, String> query) throws RequestException {
+        String enemiesParameter = query.get("enemies");
+        if (enemiesParameter == null || enemiesParameter.isBlank()) {
+            throw new RequestException(400, "Missing enemies parameter");
+        }
+        String role = query.containsKey("role") ? championName(query.get("role")) : "any";
+        if (role.isEmpty()) {
+            role = "any";
+        }
+        int limit = parseLimit(query.get("limit"));
+        MatchupEpoch published = DataStorage.getPublishedEpoch();
+        CounterIndex counterIndex = epochFor(published, query).getCounterIndex();
+        ChampionIndex index = counterIndex.getIndex();
+        List<String> unknown = new ArrayList<>();
+        List<String> enemies = knownChampions(enemiesParameter, index, unknown);
+        List<String> allies = knownChampions(query.get("allies"), index, unknown);
+        int[] enemyIds = idsOf(enemies, index);
+        int[] allyIds = idsOf(allies, index);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("enemies", enemies);
+        response.put("allies", allies);
+        response.put("unknown", unknown);
+        response.put("role", role);
+        putPatches(response, published, query);
+        response.put("recommendations", fetcher.recommend(counterIndex, enemyIds, allyIds, role, limit));
+        return response;
+    }
+
+    private Object draft(Map<String, String> query) throws RequestException {
+        MatchupEpoch published = DataStorage.getPublishedEpoch();
+        MatchupTable table = epochFor(published, query).getTable();
+        ChampionIndex index = table.getIndex();
+        List<String> unknown = new ArrayList<>();
+        List<String> enemies = knownChampions(query.get("enemies"), index, unknown);
+        List<String> allies = knownChampions(query.get("allies"), index, unknown);
+        if (allies.size() >= DraftEvaluator.TEAM_SIZE) {
+            throw new RequestException(400, "A team has at most " + (DraftEvaluator.TEAM_SIZE - 1) + " allies with a slot open");
+        }
+        Role[] openRoles = ChampionDataFetcher.parseOpenRoles(query.getOrDefault("roles", ""), allies.size());
+        if (openRoles == null) {
+            throw new RequestException(400, "Invalid roles. Use top, jungle, mid, adc, sup or any, no more than the open slots");
+        }
+        int limit = parseLimit(query.get("limit"));
+        List<DraftEvaluator.Draft> drafts;
+        try {
+            drafts = fetcher.bestDrafts(table, idsOf(allies, index), idsOf(enemies, index), openRoles, limit);
+        } catch (IllegalArgumentException e) {
+            throw new RequestException(400, e.getMessage());
+        }
+        List<String> roles = new ArrayList<>();
+        for (Role role : openRoles) {
+            roles.add(role.getShortName());
+        }
+        List<Map<String, Object>> compositions = new ArrayList<>();
+        for (DraftEvaluator.Draft draft : drafts) {
+            List<Map<String, Object>> picks = new ArrayList<>();
+            for (DraftEvaluator.Pick pick : draft.picks()) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("champion", pick.champion());
+                entry.put("role", pick.role().getShortName());
+                picks.add(entry);
+            }
+            Map<String, Object> composition = new LinkedHashMap<>();
+            composition.put("picks", picks);
+            composition.put("score", draft.score());
+            compositions.add(composition);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("enemies", enemies);
+        response.put("allies", allies);
+        response.put("unknown", unknown);
+        response.put("roles", roles);
+        putPatches(response, published, query);
+        response.put("drafts", compositions);
+        return response;
+    }
+
+    // The champions of a comma-separated list that are in the index. The others are added to unknown
+    private static List<String> knownChampions(String names, ChampionIndex index, List<String> unknown) {
+        List<String> known = new ArrayList<>();
+        if (names == null) {
+            return known;
+        }
+        for (String name : names.split(",")) {
+            String champion = championName(name);
+            if (index.contains(champion)) {
+                known.add(champion);
+            } else if (!champion.isEmpty()) {
+                unknown.add(champion);
+            }
+        }
+        return known;
+    }
+
+    private static int[] idsOf(List<String> champions, ChampionIndex index) {
+        int[] ids = new int[champions.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = index.indexOf(champions.get(i));
+        }
+        return ids;
+    }
+
+    private Object winrate(Map<String, String> query) throws RequestException {
+        Role role = null;
+        Tier tier = null;
+        if (query.containsKey("role")) {
+            role = Role.fromShortName(championName(query.get("role")));
+            if (role == Role.UNKNOWN) {
+                throw new RequestException(400, "Unknown role. Use top, jungle, mid, adc or sup");
+            }
+        }
+        if (query.containsKey("tier")) {
+            tier = Tier.fromName(championName(query.get("tier")));
+            if (tier == Tier.UNKNOWN) {
+                throw new RequestException(400, "Unknown tier: " + query.get("tier"));
+            }
+        }
+        if (role != null && tier != null) {
+            throw new RequestException(400, "Give either a role or a tier, not both");
+        }
+        // Every record comes from the same published epoch
+        MatchupEpoch published = DataStorage.getPublishedEpoch();
+        MatchupTable table = epochFor(published, query).getTable();
+        ChampionIndex index = table.getIndex();
+        if (query.containsKey("champion")) {
+            String champion = championName(query.get("champion"));
+            int championId = index.indexOf(champion);
+            if (championId < 0) {
+                throw new RequestException(404, "Unknown champion: " + champion);
+            }
+            Map<String, Object> record = rollupRecord(table, championId, role, tier);
+            putPatches(record, published, query);
+            return record;
+        }
+        List<Map<String, Object>> all = new ArrayList<>();
+        for (int championId = 0; championId < index.size(); championId++) {
+            all.add(rollupRecord(table, championId, role, tier));
+        }
+        all.sort(Comparator.comparing(entry -> (String) entry.get("champion")));
+        return all;
+    }
+
+    // The global record of a champion, or its record in the role or tier if one is given
+    private static Map<String, Object> rollupRecord(MatchupTable table, int championId, Role role, Tier tier) {
+        String champion = table.getIndex().nameOf(championId);
+        Map<String, Object> record;
+        if (role != null) {
+            record = record(champion, null, table.getRoleGames(championId, role), table.getRoleWins(championId, role));
+            record.put("role", role.getShortName());
+        } else if (tier != null) {
+            record = record(champion, null, table.getTierGames(championId, tier), table.getTierWins(championId, tier));
+            record.put("tier", tier.name().toLowerCase());
+        } else {
+            record = record(champion, null, table.getGlobalGames(championId), table.getGlobalWins(championId));
+        }
+        return record;
+    }
+
+    private Object matchup(Map<String, String> query) throws RequestException {
+        String champion = championName(query.getOrDefault("champion", ""));
+        String opponent = championName(query.getOrDefault("opponent", ""));
+        if (champion.isEmpty() || opponent.isEmpty()) {
+            throw new RequestException(400, "Missing champion or opponent parameter");
+        }
+        Role role = null;
+        if (query.containsKey("role")) {
+            role = Role.fromShortName(championName(query.get("role")));
+            if (role == Role.UNKNOWN) {
+                throw new RequestException(400, "Unknown role. Use top, jungle, mid, adc or sup");
+            }
+        }
+        MatchupEpoch published = DataStorage.getPublishedEpoch();
+        MatchupTable table = epochFor(published, query).getTable();
+        ChampionMatchupData data = table.getMatchup(champion, opponent);
+        if (data == null) {
+            throw new RequestException(404, "Unknown champion or opponent");
+        }
+        Map<String, Object> record;
+        if (role != null) {
+            int championId = table.getIndex().indexOf(champion);
+            int opponentId = table.getIndex().indexOf(opponent);
+            record = record(champion, opponent, table.getLaneGames(championId, opponentId, role), table.getLaneWins(championId, opponentId, role));
+            record.put("role", role.getShortName());
+        } else {
+            record = record(champion, opponent, data.getGames(), data.getWins());
+        }
+        putPatches(record, published, query);
+        return record;
+    }
+
+    // The published lifetime data, or the window of newest patches asked for with patches=N
+    private static MatchupEpoch epochFor(MatchupEpoch epoch, Map<String, String> query) throws RequestException {
+        int patches = parsePatches(query.get("patches"));
+        if (patches == 0) {
+            return epoch;
+        }
+        if (epoch.getSegments().isEmpty()) {
+            throw new RequestException(404, "No patches are tracked yet");
+        }
+        return epoch.getWindow(patches);
+    }
+
+    // Lists the patches a windowed response covers
+    private static void putPatches(Map<String, Object> response, MatchupEpoch epoch, Map<String, String> query) throws RequestException {
+        int patches = parsePatches(query.get("patches"));
+        if (patches > 0) {
+            List<String> names = new ArrayList<>();
+            for (int patch : epoch.getWindowPatches(patches)) {
+                names.add(PatchVersion.format(patch));
+            }
+            response.put("patches", names);
+        }
+    }
+
+    private static int parsePatches(String patches) throws RequestException {
+        if (patches == null || patches.isEmpty()) {
+            return 0;
+        }
+        try {
+            int count = Integer.parseInt(patches);
+            if (count < 1) {
+                throw new NumberFormatException();
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid patches: " + patches);
+        }
+    }
+
+    private static Map<String, Object> record(String champion, String opponent, int games, int wins) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("champion", champion);
+        if (opponent != null) {
+            record.put("opponent", opponent);
+        }
+        record.put("games", games);
+        record.put("wins", wins);
+        record.put("winRate", (games == 0) ? 0.0 : (double) wins / games);
+        return record;
+    }
+
+    // Runs a handler and writes its result, or the error it raised, as JSON, and records the latency of the endpoint
+    private void respond(HttpExchange exchange, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        int status = 200;
+        Object body;
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new RequestException(405, "Only GET is supported");
+            }
+            body = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (RequestException e) {
+            status = e.statusCode;
+            body = Map.of("error", e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            body = Map.of("error", "Internal error: " + e.getMessage());
+        }
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        Metrics.histogram("server_request_seconds", "Recommendation server request latency", "endpoint", exchange.getHttpContext().getPath()).recordSince(start);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode((equals < 0) ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = (equals < 0) ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+
+    private static int parseLimit(String limit) throws RequestException {
+        if (limit == null || limit.isEmpty()) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid limit: " + limit);
+        }
+    }
+
+    // Normalizes a champion or role name the same way the console input is
+    private static String championName(String name) {
+        return name.replaceAll("[^A-Za-z]", "").toLowerCase();
+    }
+}
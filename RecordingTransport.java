@@ -0,0 +1,103 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Passes requests to another transport and appends every response to an archive that ReplayTransport can serve
+ * a later crawl from.
+ *
+ * Layout: a header (magic, version) followed by one record per response: the request key (see
+ * RiotTransport.requestKey), status, message, the recorded headers, then the body's length and its own deflated
+ * bytes, so replay can inflate a single response without reading the ones before it. An end record marks a
+ * completely written archive. Responses from several threads are serialized.
+ */
+public class RecordingTransport implements RiotTransport {
+
+    static final int MAGIC = 0x4C435252; // "LCRR"
+    static final int VERSION = 1;
+    static final byte RESPONSE_RECORD = 'R';
+    static final byte END_RECORD = 'E';
+
+    private final RiotTransport upstream;
+    private final Path path;
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[64 * 1024];
+    private int recorded = 0;
+    private long rawBytes = 0;
+    private long compressedBytes = 0;
+
+    /**
+     * @param upstream The transport the requests are sent to.
+     * @param path The archive, which is replaced.
+     */
+    public RecordingTransport(RiotTransport upstream, Path path) throws IOException {
+        this.upstream = upstream;
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile())));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        Log.info("Recording Riot API responses to {}", path);
+    }
+
+    @Override
+    public Response get(String url) throws IOException {
+        Response response = upstream.get(url);
+        record(RiotTransport.requestKey(url), response);
+        return response;
+    }
+
+    private synchronized void record(String key, Response response) throws IOException {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        int length = deflate(body);
+        out.writeByte(RESPONSE_RECORD);
+        out.writeUTF(key);
+        out.writeShort(response.status());
+        out.writeUTF(response.message() == null ? "" : response.message());
+        out.writeByte(response.headers().size());
+        for (Map.Entry<String, String> header : response.headers().entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeUTF(header.getValue());
+        }
+        out.writeInt(body.length);
+        out.writeInt(length);
+        out.write(compressed, 0, length);
+        recorded++;
+        rawBytes += body.length;
+        compressedBytes += length;
+    }
+
+    // Deflates the body into the compressed buffer, growing it as needed, and returns the compressed length
+    private int deflate(byte[] body) {
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return length;
+    }
+
+    // The live transport's limits still apply while recording
+    @Override
+    public boolean isRateLimited() {
+        return upstream.isRateLimited();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.writeByte(END_RECORD);
+        out.close();
+        deflater.end();
+        upstream.close();
+        Log.info("Recorded {} responses to {} ({} KB, {} KB uncompressed)", recorded, path, compressedBytes / 1024, rawBytes / 1024);
+    }
+}
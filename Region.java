@@ -0,0 +1,78 @@
+/**
+ * The platforms that can be crawled, with the regional route their match data is served from.
+ * Riot rate limits apply per routing value, so every platform and regional route gets its own rate budget.
+ */
+public enum Region {
+    NA1("na1", "americas"),
+    BR1("br1", "americas"),
+    LA1("la1", "americas"),
+    LA2("la2", "americas"),
+    EUW1("euw1", "europe"),
+    EUN1("eun1", "europe"),
+    TR1("tr1", "europe"),
+    RU("ru", "europe"),
+    ME1("me1", "europe"),
+    KR("kr", "asia"),
+    JP1("jp1", "asia"),
+    OC1("oc1", "sea"),
+    PH2("ph2", "sea"),
+    SG2("sg2", "sea"),
+    TH2("th2", "sea"),
+    TW2("tw2", "sea"),
+    VN2("vn2", "sea");
+
+    // Replaces https://<route>.api.riotgames.com with <override>/<route> so a local stand-in server can be used
+    private static volatile String hostOverride = System.getProperty("riot.host");
+
+    private final String platformRoute;
+    private final String regionalRoute;
+
+    Region(String platformRoute, String regionalRoute) {
+        this.platformRoute = platformRoute;
+        this.regionalRoute = regionalRoute;
+    }
+
+    public String getPlatformRoute() {
+        return platformRoute;
+    }
+
+    public String getRegionalRoute() {
+        return regionalRoute;
+    }
+
+    // Base URL for platform endpoints such as league-v4 and summoner-v4
+    public String platformUrl() {
+        return urlFor(platformRoute);
+    }
+
+    // Base URL for regional endpoints such as match-v5
+    public String regionalUrl() {
+        return urlFor(regionalRoute);
+    }
+
+    /**
+     * Points every region at a different host, e.g. "http://localhost:8080". Requests then go to
+     * {host}/{route}/lol/..., so a single stand-in server can tell the routes apart. Pass null to use Riot again.
+     */
+    public static void setHostOverride(String host) {
+        hostOverride = host;
+    }
+
+    /**
+     * Finds a region by its platform route or name, ignoring case.
+     * @return The region, or null if there is none with that name.
+     */
+    public static Region fromName(String name) {
+        for (Region region : values()) {
+            if (region.name().equalsIgnoreCase(name.trim()) || region.platformRoute.equalsIgnoreCase(name.trim())) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    private static String urlFor(String route) {
+        String host = hostOverride;
+        return (host == null) ? "https://" + route + ".api.riotgames.com" : host + "/" + route;
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Answers requests from an archive written by RecordingTransport, so a crawl can be rerun offline without an API
+ * key, network or rate limits, e.g. to benchmark the whole pipeline. Opening the archive indexes where each
+ * response is; bodies are read and inflated on request with positional reads, so any number of threads can
+ * replay at once. A URL recorded several times (after a retry) gets its last response, and a URL that was never
+ * recorded gets a 404.
+ */
+public class ReplayTransport implements RiotTransport {
+
+    private record Entry(int status, String message, Map<String, String> headers, long bodyOffset, int rawLength, int compressedLength) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+
+    private ReplayTransport(Path path, FileChannel channel, Map<String, Entry> entries) {
+        this.path = path;
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    /**
+     * Indexes an archive for replay. An archive cut off mid-record (from a crawl that did not finish) replays the
+     * responses before the torn one.
+     */
+    public static ReplayTransport open(Path path) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        boolean complete = false;
+        long fileLength = Files.size(path);
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(path.toFile())));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            if (in.readInt() != RecordingTransport.MAGIC || in.readInt() != RecordingTransport.VERSION) {
+                throw new IOException("Unrecognized response archive: " + path);
+            }
+            while (true) {
+                try {
+                    byte type = in.readByte();
+                    if (type != RecordingTransport.RESPONSE_RECORD) {
+                        complete = (type == RecordingTransport.END_RECORD);
+                        break;
+                    }
+                    String key = in.readUTF();
+                    int status = in.readUnsignedShort();
+                    String message = in.readUTF();
+                    int headerCount = in.readUnsignedByte();
+                    Map<String, String> headers = new HashMap<>();
+                    for (int i = 0; i < headerCount; i++) {
+                        headers.put(in.readUTF(), in.readUTF());
+                    }
+                    int rawLength = in.readInt();
+                    int compressedLength = in.readInt();
+                    long bodyOffset = counter.getCount();
+                    in.skipNBytes(compressedLength);
+                    // Skipping can move past the end of the file without noticing
+                    if (counter.getCount() > fileLength) {
+                        break;
+                    }
+                    entries.put(key, new Entry(status, message, headers, bodyOffset, rawLength, compressedLength));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        if (!complete) {
+            Log.warn("{} ends without an end record, replaying the {} responses before it", path, entries.size());
+        }
+        Log.info("Replaying {} recorded responses from {}", entries.size(), path);
+        return new ReplayTransport(path, FileChannel.open(path, StandardOpenOption.READ), entries);
+    }
+
+    @Override
+    public Response get(String url) throws IOException {
+        Entry entry = entries.get(RiotTransport.requestKey(url));
+        if (entry == null) {
+            return new Response(404, "Not in the recording", "", Map.of());
+        }
+        return new Response(entry.status(), entry.message(), readBody(entry), entry.headers());
+    }
+
+    private String readBody(Entry entry) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(entry.compressedLength());
+        long position = entry.bodyOffset();
+        while (compressed.hasRemaining()) {
+            int read = channel.read(compressed, position);
+            if (read < 0) {
+                throw new EOFException("Response body cut off in " + path);
+            }
+            position += read;
+        }
+        byte[] body = new byte[entry.rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < body.length && !inflater.finished()) {
+                int inflated = inflater.inflate(body, length, body.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != body.length) {
+                throw new IOException("Response body is shorter than recorded in " + path);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt response body in " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean isRateLimited() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,31 +1,66 @@
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 import org.json.JSONArray;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 
 
 public class RiotAPI {
 
-    //Rate limiters
+    //Rate limiters. These are the development key limits, used until the server reports the real ones
     private static final int RATE_LIMIT_PER_SECOND = 20;
     private static final int RATE_LIMIT_PER_TWO_MINUTES = 100;
+    private static final String DEFAULT_APP_LIMITS = RATE_LIMIT_PER_SECOND + ":1," + RATE_LIMIT_PER_TWO_MINUTES + ":120";
+    // Riot counts requests separately for every routing value (na1, americas, euw1, ...), so each gets its own limiter
+    private static final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    //Method keys for the per-method rate limits
+    private static final String LEAGUE_METHOD = "league-v4.getLeagueByQueue";
+    private static final String LEAGUE_ENTRIES_METHOD = "league-exp-v4.getLeagueEntries";
+    private static final String SUMMONER_METHOD = "summoner-v4.getBySummonerId";
+    private static final String MATCH_IDS_METHOD = "match-v5.getMatchIdsByPUUID";
+    private static final String MATCH_METHOD = "match-v5.getMatch";
+
+    //summonerId -> PUUID cache. A summoner's PUUID never changes, so the TTL only bounds how long stale IDs are kept
+    private static final String PUUID_CACHE_FILE_PATH = "puuid_cache.bin";
+    private static final int PUUID_CACHE_MAX_ENTRIES = 200_000;
+    private static final long PUUID_CACHE_TTL_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    private static PuuidCache puuidCache;
+
+    //Per-PUUID watermarks, so returning players are only asked for matches newer than the last crawl
+    private static final String WATERMARK_FILE_PATH = "match_watermarks.bin";
+    // Games still in progress at the last crawl started before it, so the next query starts this much earlier
+    private static final long WATERMARK_OVERLAP_SECONDS = 60 * 60;
+    private static final int MATCH_IDS_PAGE_SIZE = 100;
+    // Bounds the pages requested for a player who has played many games since the last crawl
+    private static final int MAX_MATCH_ID_PAGES = 5;
+    private static MatchWatermarkStore matchWatermarks;
+
+    // Threads parsing and applying downloaded matches
+    private static final int AGGREGATION_WORKERS = 4;
+
+    // How many listed match IDs were skipped: already processed, or already claimed from another player's list
+    private static final Metrics.Counter matchIdsListed = Metrics.counter("match_ids_listed_total", "Match IDs returned by match ID list requests");
+    private static final Metrics.Counter matchIdsSkipped = Metrics.counter("match_ids_deduplicated_total", "Listed match IDs skipped because they were processed or claimed already");
+
+    static {
+        Metrics.gauge("match_id_dedup_hit_ratio", "Share of listed match IDs skipped as duplicates", () -> {
+            long listed = matchIdsListed.get();
+            return (listed == 0) ? 0 : (double) matchIdsSkipped.get() / listed;
+        });
+        Metrics.gauge("puuid_cache_hits", "Summoner lookups answered by the PUUID cache in this run", () -> (puuidCache == null) ? 0 : puuidCache.getHits());
+        Metrics.gauge("puuid_cache_misses", "Summoner lookups sent to the API in this run", () -> (puuidCache == null) ? 0 : puuidCache.getMisses());
+    }
 
-    //Urls for API
-    private static final String baseUrl = "https://na1.api.riotgames.com";
-    private static final String baseUrl2 = "https://americas.api.riotgames.com";
     private static String apiKey = "";
-    private static final OkHttpClient httpClient = new OkHttpClient();
+    // Live HTTP by default; Main swaps in a recording or replaying transport
+    private static volatile RiotTransport transport = new HttpTransport();
 
     public RiotAPI() {
 
@@ -35,179 +70,259 @@ public class RiotAPI {
         RiotAPI.apiKey = apiKey;
     }
 
-    //Fetches the game data from Riot, looping through top ranks then the top 10 pages of lower ranks.
+    public static void setTransport(RiotTransport transport) {
+        RiotAPI.transport = transport;
+    }
+
+    //Fetches the game data for North America
     public static void fetchAndProcessGameData() {
+        fetchAndProcessGameData(List.of(Region.NA1));
+    }
+
+    /**
+     * Fetches the game data from Riot, covering the top ranks then the top 10 pages of lower ranks of every region.
+     * Each region is crawled by its own chain of stages against its own rate limits, and all of them feed the same
+     * aggregation stage.
+     * @param regions The regions to crawl.
+     */
+    public static void fetchAndProcessGameData(List<Region> regions) {
         String[] tiers = {"CHALLENGER", "GRANDMASTER", "MASTER", "DIAMOND", "EMERALD", "PLATINUM", "GOLD", "SILVER"};
         String[] divisions = {"I", "II", "III", "IV"};
-        try {
-            for (String tier : tiers) {
-                if (tier.equals("CHALLENGER") || tier.equals("GRANDMASTER") || tier.equals("MASTER")) {
-                    try {
-                        List<String> accountIds = getPUUIDsByTierAndDivision(tier);
-                        for (String accountId : accountIds) {
-                            List<String> matchIds = getMatchIdsByPUUID(accountId);
-                            for (String matchId : matchIds) {
-                                String matchData = getMatchDataByMatchId(matchId);
-                                DataStorage.processGameData(matchData);
-                                DataStorage.writeProcessedMatchIdToFile(matchId);
-                            }
-                        }
-                    } catch (IOException | RiotApiException e) {
-                        e.printStackTrace();
-                        throw new RiotApiException(e.getMessage());
+        List<LeaguePage> pages = new ArrayList<>();
+        for (String tier : tiers) {
+            if (tier.equals("CHALLENGER") || tier.equals("GRANDMASTER") || tier.equals("MASTER")) {
+                pages.add(new LeaguePage(tier, null, 0));
+            } else { //If not challenger, grandmaster, or master
+                for (String division : divisions) {
+                    for (int i = 0; i < 10; i++) {
+                        pages.add(new LeaguePage(tier, division, i));
                     }
-                    System.out.println("Processed " + tier + " games");
-                } else { //If not challenger, grandmaster, or master
-                    for (String division : divisions) {
-                        try {
-                            for (int i = 0; i < 10; i++) {
-                                List<String> accountIds = getPUUIDsByTierAndDivision(tier, division, i);
-                                for (String accountId : accountIds) {
-                                    List<String> matchIds = getMatchIdsByPUUID(accountId);
-                                    for (String matchId : matchIds) {
-                                        String matchData = getMatchDataByMatchId(matchId);
-                                        DataStorage.processGameData(matchData);
-                                        DataStorage.writeProcessedMatchIdToFile(matchId);
-                                    }
-                                }
-                            }
-                        } catch (IOException | RiotApiException e) {
-                            e.printStackTrace();
-                            throw new RiotApiException(e.getMessage());
-                        }
-                        System.out.println("Processed " + tier + " games");
+                }
+            }
+        }
+        if (puuidCache == null) {
+            puuidCache = new PuuidCache(Paths.get(PUUID_CACHE_FILE_PATH), PUUID_CACHE_MAX_ENTRIES, PUUID_CACHE_TTL_MILLIS);
+        }
+        if (matchWatermarks == null) {
+            matchWatermarks = new MatchWatermarkStore(Paths.get(WATERMARK_FILE_PATH));
+        }
+        // Two players can share a match, so claim each ID before fetching it
+        Set<String> claimedMatchIds = ConcurrentHashMap.newKeySet();
+
+        IngestionPipeline pipeline = new IngestionPipeline();
+        List<IngestionPipeline.Stage<?, FetchedMatch>> regionalMatches = new ArrayList<>();
+        for (Region region : regions) {
+            String prefix = region.name() + " ";
+            // Every ID carries the tier of the league page it came from, so matches count towards that tier's rollup
+            IngestionPipeline.Stage<LeaguePage, TieredId> summonerIds = pipeline.source(prefix + "league pages", pages, 2, 1000, (page, emit) -> {
+                Tier tier = Tier.fromName(page.tier());
+                for (String summonerId : page.fetchSummonerIds(region)) {
+                    emit.emit(new TieredId(summonerId, tier));
+                }
+            });
+            IngestionPipeline.Stage<TieredId, TieredId> puuids = pipeline.then(summonerIds, prefix + "summoners", 8, 1000,
+                    (summonerId, emit) -> emit.emit(new TieredId(getPUUIDBySummonerId(region, summonerId.id()), summonerId.tier())));
+            IngestionPipeline.Stage<TieredId, ListedMatch> matchIds = pipeline.then(puuids, prefix + "match ID lists", 8, 1000, (puuid, emit) -> {
+                PlayerMatches player = getMatchIdsByPUUID(region, puuid.id());
+                List<String> claimed = new ArrayList<>();
+                for (String matchId : player.matchIds) {
+                    if (claimedMatchIds.add(matchId)) {
+                        claimed.add(matchId);
+                    } else {
+                        matchIdsSkipped.increment();
                     }
                 }
+                // Counted before any is emitted, since the aggregation workers may finish them while this one emits
+                player.expect(claimed.size());
+                for (String matchId : claimed) {
+                    emit.emit(new ListedMatch(matchId, puuid.tier(), player));
+                }
+            });
+            regionalMatches.add(pipeline.then(matchIds, prefix + "matches", 8, 64,
+                    (match, emit) -> emit.emit(new FetchedMatch(match.matchId(), getMatchDataByMatchId(region, match.matchId()), match.tier(), match.player()))));
+        }
+        // Matches from every region are parsed and applied by a few aggregation workers, which DataStorage keeps apart
+        pipeline.then(regionalMatches, "Aggregation", AGGREGATION_WORKERS, 1, (match, emit) -> {
+            if (!DataStorage.processGameData(match.matchData(), match.tier())) {
+                // Not recorded as processed and not counted for the player, so the next crawl lists it again
+                throw new IOException("Match " + match.matchId() + " could not be parsed or logged");
             }
+            DataStorage.writeProcessedMatchIdToFile(match.matchId());
+            match.player().processed();
+        });
+        try {
+            pipeline.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pipeline.abort();
+        }
+        DataStorage.checkpoint();
+        DataStorage.exportJson();
+        try {
+            puuidCache.save();
+        } catch (IOException e) {
+            Log.error("Error saving PUUID cache: {}", e.getMessage());
+        }
+        // An aborted crawl may have listed matches it never fetched, so its watermarks are not kept
+        if (!pipeline.isAborted()) {
+            try {
+                matchWatermarks.save();
+            } catch (IOException e) {
+                Log.error("Error saving match watermarks: {}", e.getMessage());
+            }
+        }
+        Log.info("PUUID cache: {} hits (summoner requests saved), {} misses, {} evictions, {} entries",
+                puuidCache.getHits(), puuidCache.getMisses(), puuidCache.getEvictions(), puuidCache.size());
+        Log.info("Crawl of {} {}", regions, pipeline.isAborted() ? "aborted" : "finished");
+        Log.flush();
+    }
 
-        } catch (RiotApiException e) {
-            e.printStackTrace();
+    // A page of a league to crawl. Apex tiers have a single page and no division
+    private record LeaguePage(String tier, String division, int page) {
+        List<String> fetchSummonerIds(Region region) throws IOException, RiotApiException {
+            return (division == null) ? getSummonerIdsByTier(region, tier) : getSummonerIdsByTierAndDivision(region, tier, division, page);
         }
-        System.out.println("We did it?");
     }
 
-    //This is for single-page tiers.
-    private static List<String> getPUUIDsByTierAndDivision(String tier) throws IOException, RiotApiException {
-        String url = baseUrl + "/lol/league/v4/" + tier.toLowerCase() + "leagues/by-queue/RANKED_SOLO_5x5?api_key=" + apiKey;
-        System.out.println(baseUrl);
-        System.out.print("Getting all PUUID'S: ");
-        String jsonResponse = makeRequest(url);
-        System.out.println("getPUUIDsByTierAndDivision JSON Response: " + Objects.requireNonNull(jsonResponse).substring(0,100) + "...");// Initialize the JSONArray to process
-        JSONArray jsonArray;
+    // A summoner ID or PUUID with the tier of the league it was found through
+    private record TieredId(String id, Tier tier) {
+    }
 
-// Try to parse the JSON response as an object to check for the old format
-        try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-            jsonArray = jsonObject.getJSONArray("entries"); // Old format
-        } catch (Exception e) {
-            // If parsing as an object fails, try parsing it as an array for the new format
-            jsonArray = new JSONArray(jsonResponse);
+    // A match ID with the tier of the league it was found through and the player whose list claimed it
+    private record ListedMatch(String matchId, Tier tier, PlayerMatches player) {
+    }
+
+    private record FetchedMatch(String matchId, String matchData, Tier tier, PlayerMatches player) {
+    }
+
+    /**
+     * The unprocessed matches listed for a player. The player's watermark only advances once every match claimed
+     * from the list has been aggregated, so a match that fails to download or parse is listed again by the next
+     * crawl. A list cut off by the page cap leaves the watermark where it was, since older matches were not listed.
+     */
+    private static class PlayerMatches {
+        final String puuid;
+        final List<String> matchIds;
+        // The time, in epoch seconds, up to which the list covers the player's matches
+        final long listedUntil;
+        final boolean complete;
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        PlayerMatches(String puuid, List<String> matchIds, long listedUntil, boolean complete) {
+            this.puuid = puuid;
+            this.matchIds = matchIds;
+            this.listedUntil = listedUntil;
+            this.complete = complete;
+        }
+
+        // Adds the matches claimed from the list. A match another player's list claimed first is left to that player
+        void expect(int claimed) {
+            pending.addAndGet(claimed);
+            processed();
         }
 
-        List<String> puuids = new ArrayList<>();
-        //CHANGED. TURN BACK TO JSONARRAY.LENGTH.
-        int summonerCount = jsonArray.length();
-        for (int i = 0; i < summonerCount; i++) {
-            JSONObject playerObject = jsonArray.getJSONObject(i);
-            String summonerId = playerObject.getString("summonerId");
-
-            // Get the summoner's data using summonerId
-            String summonerUrl = baseUrl + "/lol/summoner/v4/summoners/" + summonerId + "?api_key=" + apiKey;
-            System.out.println("Getting summoner data " + (i+1) + "/" + summonerCount + ": ");
-            String summonerJsonResponse = makeRequest(summonerUrl);
-            JSONObject summonerJsonObject = new JSONObject(Objects.requireNonNull(summonerJsonResponse));
-
-            // Get the PUUID from summoner's data
-            String puuid = summonerJsonObject.getString("puuid");
-            puuids.add(puuid);
+        // Called once a claimed match has been aggregated
+        void processed() {
+            if (pending.decrementAndGet() == 0 && complete) {
+                matchWatermarks.advance(puuid, listedUntil);
+            }
         }
-        return puuids;
     }
 
+    //This is for single-page tiers.
+    private static List<String> getSummonerIdsByTier(Region region, String tier) throws IOException, RiotApiException {
+        String url = region.platformUrl() + "/lol/league/v4/" + tier.toLowerCase() + "leagues/by-queue/RANKED_SOLO_5x5?api_key=" + apiKey;
+        Log.debug("Getting {} {} summoners", region, tier);
+        return parseSummonerIds(makeRequest(url, region.getPlatformRoute(), LEAGUE_METHOD));
+    }
 
     //This is for multi-page tiers
-    private static List<String> getPUUIDsByTierAndDivision(String tier, String division, int page) throws IOException, RiotApiException {
+    private static List<String> getSummonerIdsByTierAndDivision(Region region, String tier, String division, int page) throws IOException, RiotApiException {
         page++;
-        String url = baseUrl + "/lol/league-exp/v4/entries/RANKED_SOLO_5x5/" + tier + "/" + division + "?page=" + page + "&api_key=" + apiKey;
-        System.out.println(baseUrl);
-        System.out.print("Getting all PUUID'S: ");
-        String jsonResponse = makeRequest(url);
-        System.out.println("getPUUIDsByTierAndDivision JSON Response: " + Objects.requireNonNull(jsonResponse).substring(0,100) + "...");// Initialize the JSONArray to process
-        JSONArray jsonArray;
+        String url = region.platformUrl() + "/lol/league-exp/v4/entries/RANKED_SOLO_5x5/" + tier + "/" + division + "?page=" + page + "&api_key=" + apiKey;
+        Log.debug("Getting {} {} {} summoners, page {}", region, tier, division, page);
+        return parseSummonerIds(makeRequest(url, region.getPlatformRoute(), LEAGUE_ENTRIES_METHOD));
+    }
 
-// Try to parse the JSON response as an object to check for the old format
+    // Reads the summoner IDs from a league response
+    private static List<String> parseSummonerIds(String jsonResponse) {
+        JSONArray jsonArray;
+        // Try to parse the JSON response as an object to check for the old format
         try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
+            JSONObject jsonObject = new JSONObject(Objects.requireNonNull(jsonResponse));
             jsonArray = jsonObject.getJSONArray("entries"); // Old format
         } catch (Exception e) {
             // If parsing as an object fails, try parsing it as an array for the new format
             jsonArray = new JSONArray(jsonResponse);
         }
+        List<String> summonerIds = new ArrayList<>();
+        for (int i = 0; i < jsonArray.length(); i++) {
+            summonerIds.add(jsonArray.getJSONObject(i).getString("summonerId"));
+        }
+        return summonerIds;
+    }
 
-        List<String> puuids = new ArrayList<>();
-        System.out.println("Btw, jsonArray length was: " + jsonArray.length());
-        int summonerCount = jsonArray.length();
-        for (int i = 0; i < summonerCount; i++) {
-            JSONObject playerObject = jsonArray.getJSONObject(i);
-            String summonerId = playerObject.getString("summonerId");
-
-            // Get the summoner's data using summonerId
-            String summonerUrl = baseUrl + "/lol/summoner/v4/summoners/" + summonerId + "?api_key=" + apiKey;
-            System.out.println("Getting summoner data " + (i+1) + "/" + summonerCount + ": ");
-            String summonerJsonResponse = makeRequest(summonerUrl);
-            JSONObject summonerJsonObject = new JSONObject(Objects.requireNonNull(summonerJsonResponse));
-
-            // Get the PUUID from summoner's data
-            String puuid = summonerJsonObject.getString("puuid");
-            puuids.add(puuid);
+    // Gets the PUUID of a summoner using their summonerId, from the cache when possible
+    private static String getPUUIDBySummonerId(Region region, String summonerId) throws IOException, RiotApiException {
+        String puuid = puuidCache.get(region, summonerId);
+        if (puuid != null) {
+            return puuid;
         }
-        return puuids;
+        String summonerUrl = region.platformUrl() + "/lol/summoner/v4/summoners/" + summonerId + "?api_key=" + apiKey;
+        String summonerJsonResponse = makeRequest(summonerUrl, region.getPlatformRoute(), SUMMONER_METHOD);
+        JSONObject summonerJsonObject = new JSONObject(Objects.requireNonNull(summonerJsonResponse));
+        puuid = summonerJsonObject.getString("puuid");
+        puuidCache.put(region, summonerId, puuid);
+        return puuid;
     }
 
-    private static List<String> getMatchIdsByPUUID(String puuid) throws IOException, RiotApiException {
-        String url = baseUrl2 + "/lol/match/v5/matches/by-puuid/" + puuid + "/ids??start=0&count=100&api_key=" + apiKey;
-        System.out.print("Getting Match ID'S: ");
-        String jsonResponse = makeRequest(url);
-        System.out.println("getMatchIdsByPUUID JSON Response: " + jsonResponse);
-        JSONArray jsonArray = new JSONArray(Objects.requireNonNull(jsonResponse));
+    /**
+     * Lists the unprocessed match IDs of a player. A player crawled before is only asked for matches that started
+     * after their watermark, paging until a short page or the page cap; a new player gets their last 100 matches.
+     */
+    private static PlayerMatches getMatchIdsByPUUID(Region region, String puuid) throws IOException, RiotApiException {
+        long listedUntil = System.currentTimeMillis() / 1000;
+        TimeInterval watermark = matchWatermarks.get(puuid);
+        String baseUrl = region.regionalUrl() + "/lol/match/v5/matches/by-puuid/" + puuid + "/ids?count=" + MATCH_IDS_PAGE_SIZE + "&api_key=" + apiKey;
+        if (watermark != null) {
+            baseUrl += "&startTime=" + Math.max(0, watermark.getEndTime() - WATERMARK_OVERLAP_SECONDS);
+        }
+        int pages = (watermark == null) ? 1 : MAX_MATCH_ID_PAGES;
 
         // Load the set of processed match IDs directly from DataStorage
         // This operation assumes that the set is already loaded into memory and up-to-date
-        Set<String> processedMatchIds = DataStorage.processedMatchIds;
+        ProcessedMatchIdStore processedMatchIds = DataStorage.processedMatchIds;
 
         List<String> matchIds = new ArrayList<>();
-        System.out.println("Processing matches");
-        for (int i = 0; i < jsonArray.length(); i++) {
-            String matchId = jsonArray.getString(i);
-            // Only add match IDs that have not been processed
-            if (!processedMatchIds.contains(matchId)) {
-                matchIds.add(matchId);
-                System.out.println("Match processed!");
-            } else {
-                System.out.println("Redundant match Id");
+        int redundant = 0;
+        // A new player's history is deliberately cut at one page, so only a returning player can be cut off
+        boolean complete = (watermark == null);
+        for (int page = 0; page < pages; page++) {
+            String jsonResponse = makeRequest(baseUrl + "&start=" + page * MATCH_IDS_PAGE_SIZE, region.getRegionalRoute(), MATCH_IDS_METHOD);
+            JSONArray jsonArray = new JSONArray(Objects.requireNonNull(jsonResponse));
+            matchIdsListed.add(jsonArray.length());
+            for (int i = 0; i < jsonArray.length(); i++) {
+                String matchId = jsonArray.getString(i);
+                // Only add match IDs that have not been processed
+                if (!processedMatchIds.contains(matchId)) {
+                    matchIds.add(matchId);
+                } else {
+                    redundant++;
+                }
+            }
+            if (jsonArray.length() < MATCH_IDS_PAGE_SIZE) {
+                complete = true;
+                break;
             }
         }
-
-        return matchIds;
+        matchIdsSkipped.add(redundant);
+        Log.debug("Getting Match ID'S: {} new, {} redundant{}", matchIds.size(), redundant, (watermark == null) ? "" : " since the last crawl");
+        return new PlayerMatches(puuid, matchIds, listedUntil, complete);
     }
 
-    private static String getMatchDataByMatchId(String matchId) throws IOException, RiotApiException {
-        String url = baseUrl2 + "/lol/match/v5/matches/" + matchId + "?api_key=" + apiKey;
-        return makeRequest(url);
-    }
-
-    public static String getJsonResponse(String urlString) throws Exception {
-        URL url = new URL(urlString);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        String line;
-        StringBuilder jsonResponse = new StringBuilder();
-        while ((line = reader.readLine()) != null) {
-            jsonResponse.append(line);
-        }
-        reader.close();
-        return jsonResponse.toString();
+    private static String getMatchDataByMatchId(Region region, String matchId) throws IOException, RiotApiException {
+        String url = region.regionalUrl() + "/lol/match/v5/matches/" + matchId + "?api_key=" + apiKey;
+        return makeRequest(url, region.getRegionalRoute(), MATCH_METHOD);
     }
 
     public static Map<String, String> getChampionNamesAndIds(String jsonResponse) {
@@ -224,25 +339,56 @@ public class RiotAPI {
         return championMap;
     }
 
-    private static String makeRequest(String url) throws IOException, RiotApiException {
-        waitForRateLimit();
-        Request request = new Request.Builder().url(url).build();
-        int maxRetries = 10; // Maximum number of retries
+    /**
+     * Makes a GET request through the current transport once the rate limiter allows it, retrying server errors
+     * and rate limit responses. Replayed requests skip the rate limiter and are not retried.
+     * Records the time spent waiting on the rate limiter, the latency of each request by method and the status of
+     * each response.
+     * @param url The request URL.
+     * @param route The routing value (platform or region) the request is sent to, which has its own rate limits.
+     * @param method The method key the request counts against for per-method rate limits.
+     * @return The response body.
+     */
+    private static String makeRequest(String url, String route, String method) throws IOException, RiotApiException {
+        RiotTransport transport = RiotAPI.transport;
+        // A replay answers locally and the same way every time, so it is neither paced nor retried
+        boolean rateLimited = transport.isRateLimited();
+        RateLimiter rateLimiter = rateLimiters.computeIfAbsent(route, r -> new RateLimiter(DEFAULT_APP_LIMITS));
+        int maxRetries = rateLimited ? 10 : 0; // Maximum number of retries
         int retryDelay = 2000; // Initial delay between retries in milliseconds
         for (int i = 0; i <= maxRetries; i++) {
-            try (Response response = httpClient.newCall(request).execute()) {
-                int statusCode = response.code();
+            try {
+                if (rateLimited) {
+                    long waitStart = System.nanoTime();
+                    rateLimiter.acquire(method);
+                    Metrics.histogram("riot_rate_limiter_wait_seconds", "Time requests waited for the rate limiter", "route", route).recordSince(waitStart);
+                }
+                long requestStart = System.nanoTime();
+                RiotTransport.Response response = transport.get(url);
+                Metrics.histogram("riot_request_seconds", "Riot API request latency", "method", method).recordSince(requestStart);
+                if (rateLimited) {
+                    rateLimiter.update(method,
+                            response.header("X-App-Rate-Limit"), response.header("X-App-Rate-Limit-Count"),
+                            response.header("X-Method-Rate-Limit"), response.header("X-Method-Rate-Limit-Count"));
+                }
+                int statusCode = response.status();
+                Metrics.counter("riot_responses_total", "Riot API responses by status class", "status", statusClass(statusCode)).increment();
                 if (statusCode == 200) {
-                    return Objects.requireNonNull(response.body()).string();
+                    return response.body();
+                } else if (statusCode == 429 && i < maxRetries) {
+                    // Wait out the Retry-After period on the limit that was hit, then try again
+                    long retryAfter = parseRetryAfter(response.header("Retry-After"));
+                    boolean methodLimited = "method".equals(response.header("X-Rate-Limit-Type"));
+                    Log.warn("Rate limited. Retrying in {}s... Attempt {}", retryAfter, i + 1);
+                    rateLimiter.retryAfter(methodLimited ? method : null, retryAfter);
                 } else if (statusCode == 500 && i < maxRetries) {
                     // If it's an internal server error, and we have retries left, log and wait to retry
-                    System.err.println("Internal Server Error. Retrying... Attempt " + (i + 1)); //I can't figure out why this doesn't increment and just displays 'Attempt 1'
+                    Log.warn("Internal Server Error. Retrying... Attempt {}", i + 1);
                     Thread.sleep(retryDelay);
                     retryDelay *= 2; // Exponential backoff
                 } else {
                     // For all other errors or no retries left, handle as usual
-                    System.out.println("-------------------------------------");
-                    System.out.println("ERROR: Request for " + url + " failed");
+                    Log.error("Request for {} failed", url);
                     handleHttpError(statusCode, response.message());
                     return null; // This line will not be reached if handleHttpError throws an exception
                 }
@@ -254,50 +400,36 @@ public class RiotAPI {
         return null; // In case all retries fail, though this line should never be reached due to exception throwing
     }
 
-    private static void handleHttpError(int statusCode, String message) throws RiotApiException {
-        String errorMessage;
-        switch (statusCode) {
-            case 400 -> {
-                errorMessage = "Bad Request: " + message;
-                System.err.println("Bad Request: " + message);
-            }
-            case 401 -> {
-                errorMessage = "Unauthorized: " + message;
-                System.err.println("Unauthorized: " + message);
-            }
-            case 403 -> {
-                errorMessage = "Forbidden: " + message;
-                System.err.println("Forbidden: " + message);
-            }
-            case 404 -> {
-                errorMessage = "Not Found: " + message;
-                System.err.println("Not Found: " + message);
-            }
-            case 429 -> {
-                errorMessage = "Rate Limit Exceeded: " + message;
-                System.err.println("Rate Limit Exceeded: " + message);
-            }
-            case 500 -> {
-                errorMessage = "Internal Server Error: " + message;
-                System.err.println("Internal Server Error: " + message);
-            }
-            case 503 -> {
-                errorMessage = "Service Unavailable: " + message;
-                System.err.println("Service Unavailable: " + message);
-            }
-            default -> {
-                errorMessage = "Unexpected HTTP error: " + message;
-                System.err.println("Unexpected HTTP error: " + statusCode + " " + message);
+    // Groups statuses the way the metrics count them: 2xx, 429, other 4xx, 5xx
+    private static String statusClass(int statusCode) {
+        return (statusCode == 429) ? "429" : (statusCode / 100) + "xx";
+    }
+
+    // Reads the Retry-After header, falling back to a second if the server did not send a usable value
+    private static long parseRetryAfter(String header) {
+        if (header != null) {
+            try {
+                return Math.max(1, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                Log.warn("Ignoring malformed Retry-After header: {}", header);
             }
         }
-        throw new RiotApiException(errorMessage);
+        return 1;
     }
 
-    private static void waitForRateLimit() {
-        try {
-            Thread.sleep(120000/RATE_LIMIT_PER_TWO_MINUTES); // Calculates each action to a portion of the 2-minute rate limit
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    private static void handleHttpError(int statusCode, String message) throws RiotApiException {
+        String errorMessage;
+        switch (statusCode) {
+            case 400 -> errorMessage = "Bad Request: " + message;
+            case 401 -> errorMessage = "Unauthorized: " + message;
+            case 403 -> errorMessage = "Forbidden: " + message;
+            case 404 -> errorMessage = "Not Found: " + message;
+            case 429 -> errorMessage = "Rate Limit Exceeded: " + message;
+            case 500 -> errorMessage = "Internal Server Error: " + message;
+            case 503 -> errorMessage = "Service Unavailable: " + message;
+            default -> errorMessage = "Unexpected HTTP error: " + message;
         }
+        Log.error("{} ({})", errorMessage, statusCode);
+        throw new RiotApiException(errorMessage, statusCode);
     }
 }
@@ -2,7 +2,25 @@
  * Built to handle exceptions with the RiotAPI
  */
 public class RiotApiException extends Exception {
+
+    // The HTTP status code of the failed request, or 0 if the failure was not an HTTP error
+    private final int statusCode;
+
     public RiotApiException(String message) {
+        this(message, 0);
+    }
+
+    public RiotApiException(String message, int statusCode) {
         super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // True if every following request would fail the same way, i.e. the API key is missing, invalid or expired
+    public boolean isFatal() {
+        return statusCode == 401 || statusCode == 403;
     }
 }
@@ -0,0 +1,75 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sends RiotAPI's GET requests. The default transport calls the API over HTTP; RecordingTransport saves every
+ * response of a crawl to an archive, and ReplayTransport answers from such an archive without the network or an
+ * API key, so a whole crawl can be rerun offline at full speed.
+ */
+public interface RiotTransport extends Closeable {
+
+    // The response headers RiotAPI reads, which are the ones recorded
+    String[] HEADERS = {"X-App-Rate-Limit", "X-App-Rate-Limit-Count", "X-Method-Rate-Limit", "X-Method-Rate-Limit-Count",
+            "Retry-After", "X-Rate-Limit-Type"};
+
+    /**
+     * A response with the headers in HEADERS that were present, keyed by lower-case name.
+     */
+    record Response(int status, String message, String body, Map<String, String> headers) {
+        public String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    Response get(String url) throws IOException;
+
+    // Whether requests count against Riot's rate limits. A replay answers locally, so nothing needs pacing or retrying
+    default boolean isRateLimited() {
+        return true;
+    }
+
+    @Override
+    default void close() throws IOException {
+
+    }
+
+    /**
+     * Chooses the transport from the riot.replay and riot.record system properties: replay the given archive,
+     * record the crawl to the given archive, or by default call the API.
+     */
+    static RiotTransport fromSystemProperties() throws IOException {
+        String replay = System.getProperty("riot.replay");
+        if (replay != null && !replay.isBlank()) {
+            return ReplayTransport.open(Paths.get(replay));
+        }
+        String record = System.getProperty("riot.record");
+        if (record != null && !record.isBlank()) {
+            return new RecordingTransport(new HttpTransport(), Paths.get(record));
+        }
+        return new HttpTransport();
+    }
+
+    /**
+     * The key a response is recorded and replayed under: the URL without the API key, which differs between
+     * runs, and without startTime, which depends on when the previous crawl ran.
+     */
+    static String requestKey(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder(url.length()).append(url, 0, query);
+        char separator = '?';
+        for (String parameter : url.substring(query + 1).split("&")) {
+            if (parameter.isEmpty() || parameter.startsWith("api_key=") || parameter.startsWith("startTime=")) {
+                continue;
+            }
+            key.append(separator).append(parameter);
+            separator = '&';
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * The position a participant played, as reported in match-v5 teamPosition. Stored by ordinal in the match event log
+ * and the snapshot, so new values may only be added at the end.
+ */
+public enum Role {
+    // Remakes, other queues and matches logged before roles were recorded
+    UNKNOWN("any"),
+    TOP("top"),
+    JUNGLE("jungle"),
+    MIDDLE("mid"),
+    BOTTOM("adc"),
+    UTILITY("sup");
+
+    public static final int COUNT = values().length;
+    private static final Role[] VALUES = values();
+
+    // The name used for the role in the console and champion_roles.json
+    private final String shortName;
+
+    Role(String shortName) {
+        this.shortName = shortName;
+    }
+
+    public String getShortName() {
+        return shortName;
+    }
+
+    // The bit of the role in a role mask, such as the masks RoleGenerator keeps of the roles each champion can play
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    // Encodes console role names such as {"top", "mid"} as a role mask. Unrecognized names are left out
+    public static int maskOf(String[] shortNames) {
+        int mask = 0;
+        for (String shortName : shortNames) {
+            Role role = fromShortName(shortName);
+            if (role != UNKNOWN) {
+                mask |= role.mask();
+            }
+        }
+        return mask;
+    }
+
+    public static Role ofOrdinal(int ordinal) {
+        return (ordinal >= 0 && ordinal < COUNT) ? VALUES[ordinal] : UNKNOWN;
+    }
+
+    // Reads a teamPosition value such as "MIDDLE". Empty or unrecognized positions are UNKNOWN
+    public static Role fromTeamPosition(String teamPosition) {
+        for (Role role : VALUES) {
+            if (role != UNKNOWN && role.name().equals(teamPosition)) {
+                return role;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // Reads a console role name such as "mid"
+    public static Role fromShortName(String shortName) {
+        for (Role role : VALUES) {
+            if (role.shortName.equals(shortName)) {
+                return role;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Scanner;
 /**
  * Manages the roles of champions manually due to the absence of this information from the API.
  * Implements the Singleton pattern to ensure a single instance handles role data.
+ * The roles are kept as the names stored in champion_roles.json and as a mask of Role bits per champion, so a
+ * query checks whether a champion can play a role with a single AND.
  */
 public class RoleGenerator {
 
@@ -17,6 +19,10 @@ public class RoleGenerator {
 
     // Stores the roles assigned to each champion
     Map<String,String[]> roles = new HashMap<>();
+    // Role.maskOf() of each champion's roles, replaced whenever the roles change
+    private volatile Map<String, Integer> roleMasks = new HashMap<>();
+    // The masks by champion ID for the last index asked for, see getRoleMasks()
+    private volatile IndexedMasks indexedMasks;
     DataStorage dataStorage;
     private static final String ROLES_FILE_PATH = "champion_roles.json";
 
@@ -42,11 +48,47 @@ public class RoleGenerator {
         return instance;
     }
 
+    private record IndexedMasks(ChampionIndex index, int[] masks) {
+    }
+
     //Getter for roles map
     public Map<String, String[]> getRoles() {
         return roles;
     }
 
+    // The Role mask of a champion's roles, 0 if it has none
+    public int getRoleMask(String champion) {
+        return roleMasks.getOrDefault(champion, 0);
+    }
+
+    /**
+     * Returns the Role mask of every champion in an index, by champion ID. The array is shared between callers
+     * until the roles change or the index grows, so it must not be modified.
+     */
+    public int[] getRoleMasks(ChampionIndex index) {
+        IndexedMasks cached = indexedMasks;
+        if (cached != null && cached.index() == index && cached.masks().length == index.size()) {
+            return cached.masks();
+        }
+        Map<String, Integer> current = roleMasks;
+        int[] masks = new int[index.size()];
+        for (int champion = 0; champion < masks.length; champion++) {
+            masks[champion] = current.getOrDefault(index.nameOf(champion), 0);
+        }
+        indexedMasks = new IndexedMasks(index, masks);
+        return masks;
+    }
+
+    // Re-encodes the role masks after the roles have changed
+    private void updateRoleMasks() {
+        Map<String, Integer> masks = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : roles.entrySet()) {
+            masks.put(entry.getKey(), Role.maskOf(entry.getValue()));
+        }
+        roleMasks = masks;
+        indexedMasks = null;
+    }
+
 
     /**
      * Checks and updates the roles data file. Loads existing roles from the file or initializes the roles map if the file does not exist.
@@ -62,7 +104,7 @@ public class RoleGenerator {
                 }.getType();
                 roles = gson.fromJson(reader, type);
             } catch (IOException e) {
-                System.out.println("Error reading champion data file: " + e.getMessage());
+                Log.error("Error reading champion data file: {}", e.getMessage());
             }
         } else {
             roles = new HashMap<>();
@@ -75,12 +117,13 @@ public class RoleGenerator {
                 dataUpdated = true;
             }
         }
+        updateRoleMasks();
         // Save updated data to the file
         if (dataUpdated) {
             try (FileWriter writer = new FileWriter(ROLES_FILE_PATH, false)) {
                 gson.toJson(roles, writer);
             } catch (IOException e) {
-                System.out.println("Error updating champion data file: " + e.getMessage());
+                Log.error("Error updating champion data file: {}", e.getMessage());
             }
         }
     }
@@ -90,7 +133,7 @@ public class RoleGenerator {
         roles.remove("all");
         Scanner sc = new Scanner(System.in);
         System.out.println("Enter roles for champions. Separate multiple roles with a comma. Leave blank and press enter to finish.");
-        for (String champ : DataStorage.championData.keySet()) {
+        for (String champ : dataStorage.getChampionIndex().names()) {
             System.out.println(champ);
             if (roles.get(champ).length>0) {
                 continue;
@@ -103,6 +146,7 @@ public class RoleGenerator {
             String[] roleArray = input.replaceAll("[^A-Za-z,]", "").toLowerCase().split(",");
             roles.put(champ, roleArray);
         }
+        updateRoleMasks();
         saveRolesToFile(); // Save changes to file
     }
 
@@ -120,6 +164,7 @@ public class RoleGenerator {
         String[] newRolesArray = newRoles.replaceAll("[^A-Za-z,]", "").toLowerCase().split(",");
         roles.put(champName, newRolesArray);
         System.out.println("Roles updated for " + champName + ".");
+        updateRoleMasks();
         saveRolesToFile(); // Save changes to file
     }
 
@@ -140,7 +185,7 @@ public class RoleGenerator {
         try (FileWriter writer = new FileWriter(ROLES_FILE_PATH, false)) {
             gson.toJson(roles, writer);
         } catch (IOException e) {
-            System.out.println("Error writing roles to file: " + e.getMessage());
+            Log.error("Error writing roles to file: {}", e.getMessage());
         }
     }
 
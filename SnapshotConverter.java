@@ -0,0 +1,109 @@
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts between the JSON data files (champion_data.json and global_winrate_data.json) and a binary snapshot.
+ *
+ * Usage:
+ *   java SnapshotConverter to-binary [champion_data.json] [global_winrate_data.json] [champion_data-0.bin]
+ *   java SnapshotConverter to-json [snapshot.bin] [champion_data.json] [global_winrate_data.json]
+ */
+public class SnapshotConverter {
+
+    private SnapshotConverter() {
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || (!args[0].equals("to-binary") && !args[0].equals("to-json"))) {
+            System.out.println("Usage: SnapshotConverter to-binary [data.json] [global.json] [snapshot.bin]");
+            System.out.println("       SnapshotConverter to-json snapshot.bin [data.json] [global.json]");
+            return;
+        }
+        if (args[0].equals("to-binary")) {
+            String dataPath = argument(args, 1, "champion_data.json");
+            String globalPath = argument(args, 2, "global_winrate_data.json");
+            Path snapshotPath = Paths.get(argument(args, 3, "champion_data-0.bin"));
+            MatchupMatrix matrix = readMatchupJson(dataPath, new ChampionIndex());
+            addGlobalJson(matrix, readGlobalJson(globalPath));
+            MappedSnapshot.write(snapshotPath, matrix, 0);
+            System.out.println("Wrote " + matrix.getIndex().size() + " champions to " + snapshotPath);
+        } else {
+            if (args.length < 2) {
+                System.out.println("A snapshot file is required");
+                return;
+            }
+            MappedSnapshot snapshot = MappedSnapshot.open(Paths.get(args[1]));
+            writeJson(snapshot, argument(args, 2, "champion_data.json"), argument(args, 3, "global_winrate_data.json"));
+            System.out.println("Wrote " + snapshot.getIndex().size() + " champions from " + args[1]);
+        }
+    }
+
+    /**
+     * Reads champion_data.json into a matrix, interning every champion into the given index.
+     * @return The matrix, empty if the file does not exist.
+     */
+    public static MatchupMatrix readMatchupJson(String dataPath, ChampionIndex index) throws IOException {
+        Map<String, Map<String, ChampionMatchupData>> championData = null;
+        if (new File(dataPath).exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(dataPath))) {
+                Type type = new TypeToken<Map<String, Map<String, ChampionMatchupData>>>() {
+                }.getType();
+                championData = new Gson().fromJson(reader, type);
+            }
+        }
+        return MatchupMatrix.fromMap(championData == null ? new HashMap<>() : championData, index);
+    }
+
+    /**
+     * Reads global_winrate_data.json.
+     * @return The global win rates keyed by champion, empty if the file does not exist.
+     */
+    public static Map<String, ChampionMatchupData> readGlobalJson(String globalPath) throws IOException {
+        Map<String, ChampionMatchupData> global = null;
+        if (new File(globalPath).exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(globalPath))) {
+                Type type = new TypeToken<Map<String, ChampionMatchupData>>() {
+                }.getType();
+                global = new Gson().fromJson(reader, type);
+            }
+        }
+        return (global == null) ? new HashMap<>() : global;
+    }
+
+    /**
+     * Adds global win rates read from global_winrate_data.json to a matrix. Champions missing from the matrix are
+     * interned, except empty leftover entries such as "all".
+     */
+    public static void addGlobalJson(MatchupMatrix matrix, Map<String, ChampionMatchupData> global) {
+        ChampionIndex index = matrix.getIndex();
+        for (Map.Entry<String, ChampionMatchupData> entry : global.entrySet()) {
+            ChampionMatchupData data = entry.getValue();
+            if (data.getGames() > 0 || index.contains(entry.getKey())) {
+                matrix.addGlobal(index.intern(entry.getKey()), data.getWins(), data.getGames());
+            }
+        }
+    }
+
+    // Writes the matchup data and global win rates in the JSON file formats
+    public static void writeJson(MatchupTable table, String dataPath, String globalPath) throws IOException {
+        Gson gson = new Gson();
+        try (Writer writer = new BufferedWriter(new FileWriter(dataPath, false))) {
+            gson.toJson(table.toMap(), writer);
+        }
+        try (Writer writer = new BufferedWriter(new FileWriter(globalPath, false))) {
+            gson.toJson(table.getGlobalWinrates(), writer);
+        }
+    }
+
+    private static String argument(String[] args, int position, String defaultValue) {
+        return (args.length > position) ? args[position] : defaultValue;
+    }
+}
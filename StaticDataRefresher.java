@@ -0,0 +1,151 @@
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Keeps the cached game version and champion list up to date without blocking startup. A refresh runs on a
+ * background thread at most once per REFRESH_TTL_MILLIS, and asks Data Dragon for the version list with the
+ * ETag and Last-Modified values of the previous response, so an unchanged list costs a 304 and no parsing.
+ * The champion list is only downloaded again when the game version changes.
+ */
+public class StaticDataRefresher {
+
+    private static final String STATE_FILE_PATH = "static_data_state.json";
+    private static final String VERSIONS_URL = "https://ddragon.leagueoflegends.com/api/versions.json";
+    // How long a successful check stays fresh before the next startup checks again
+    private static final long REFRESH_TTL_MILLIS = 6 * 60 * 60 * 1000L;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Receives the new game version and its champion list when a refresh finds a newer version.
+     */
+    public interface Listener {
+        void onNewVersion(String version, Map<String, String> championList);
+    }
+
+    // Validators and time of the last successful check, persisted between runs
+    private static class State {
+        String versionEtag;
+        String versionLastModified;
+        long checkedAt;
+    }
+
+    private record Response(int status, String body, String etag, String lastModified) {
+    }
+
+    /**
+     * Starts a background refresh if the last successful check is older than the TTL.
+     * @param currentVersion The game version the cached champion list belongs to, or null if there is none.
+     * @param listener Called from the background thread if a newer version is found.
+     */
+    public static void refreshInBackground(String currentVersion, Listener listener) {
+        State state = readState();
+        if (currentVersion != null && System.currentTimeMillis() - state.checkedAt < REFRESH_TTL_MILLIS) {
+            return;
+        }
+        Thread.ofVirtual().name("static-data-refresh").start(() -> refresh(currentVersion, state, listener));
+    }
+
+    /**
+     * Fetches the latest game version and its champion list on the calling thread, for a first run that has no
+     * cached list to start from. The validators of an earlier check are not sent, so the list is always read.
+     * @param listener Called with the latest version and its champion list.
+     * @return True if the listener was called.
+     */
+    public static boolean refreshNow(Listener listener) {
+        return refresh(null, new State(), listener);
+    }
+
+    // Returns true if a newer version was found and passed to the listener
+    private static boolean refresh(String currentVersion, State state, Listener listener) {
+        boolean updated = false;
+        try {
+            Response response = conditionalGet(VERSIONS_URL, state.versionEtag, state.versionLastModified);
+            if (response.status() == HttpURLConnection.HTTP_OK) {
+                String latestVersion = VersionInfo.getVersion(response.body());
+                if (!latestVersion.equals(currentVersion)) {
+                    Log.info("Game version {} found, updating the champion list", latestVersion);
+                    listener.onNewVersion(latestVersion, fetchChampionList(latestVersion));
+                    updated = true;
+                }
+                state.versionEtag = response.etag();
+                state.versionLastModified = response.lastModified();
+            }
+            state.checkedAt = System.currentTimeMillis();
+            writeState(state);
+        } catch (Exception e) {
+            // Keeps using the cached data. The next startup tries again since checkedAt was not advanced
+            Log.warn("Could not refresh static data: {}", e.getMessage());
+        }
+        return updated;
+    }
+
+    /**
+     * Downloads the champion list for a game version.
+     * @return The champion list, keyed by lowercase champion ID.
+     */
+    public static Map<String, String> fetchChampionList(String version) throws Exception {
+        String url = "https://ddragon.leagueoflegends.com/cdn/" + version + "/data/en_US/champion.json";
+        Response response = conditionalGet(url, null, null);
+        if (response.status() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Unexpected response " + response.status() + " for " + url);
+        }
+        return RiotAPI.getChampionNamesAndIds(response.body());
+    }
+
+    // GETs a URL, sending the validators of the previous response so the server can answer 304 Not Modified
+    private static Response conditionalGet(String urlString, String etag, String lastModified) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(urlString).toURL().openConnection();
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                return new Response(status, null, etag, lastModified);
+            }
+            StringBuilder body = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    body.append(line);
+                }
+            }
+            return new Response(status, body.toString(), connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static State readState() {
+        File stateFile = new File(STATE_FILE_PATH);
+        if (stateFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(stateFile))) {
+                State state = new Gson().fromJson(reader, State.class);
+                if (state != null) {
+                    return state;
+                }
+            } catch (Exception e) {
+                Log.error("Error reading static data state: {}", e.getMessage());
+            }
+        }
+        return new State();
+    }
+
+    private static void writeState(State state) {
+        try (FileWriter writer = new FileWriter(STATE_FILE_PATH)) {
+            new Gson().toJson(state, writer);
+        } catch (IOException e) {
+            Log.error("Error saving static data state: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * The ranked tier of the league a match was found through. Stored by ordinal in the match event log and the
+ * snapshot, so new values may only be added at the end.
+ */
+public enum Tier {
+    // Matches logged before tiers were recorded, or processed outside a crawl
+    UNKNOWN,
+    CHALLENGER,
+    GRANDMASTER,
+    MASTER,
+    DIAMOND,
+    EMERALD,
+    PLATINUM,
+    GOLD,
+    SILVER;
+
+    public static final int COUNT = values().length;
+    private static final Tier[] VALUES = values();
+
+    public static Tier ofOrdinal(int ordinal) {
+        return (ordinal >= 0 && ordinal < COUNT) ? VALUES[ordinal] : UNKNOWN;
+    }
+
+    // Reads a tier name in any case, e.g. "GOLD" or "gold"
+    public static Tier fromName(String name) {
+        for (Tier tier : VALUES) {
+            if (tier.name().equalsIgnoreCase(name)) {
+                return tier;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -1,5 +1,5 @@
 /**
-Currently unused. Kept for future testing.
+A span of time in epoch seconds. Used by MatchWatermarkStore for the matches already listed for a player.
 **/
 
 public class TimeInterval {
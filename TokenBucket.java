@@ -0,0 +1,73 @@
+/**
+ * A single rate limit window, such as "100 requests every 120 seconds". Riot counts requests in fixed windows that
+ * start with the first request, so the bucket holds limit tokens and is refilled all at once when its window ends.
+ */
+public class TokenBucket {
+
+    private final int limit;
+    private final long windowMillis;
+    private int tokens;
+    // When the current window ends and the bucket refills. 0 until the first request opens a window
+    private long windowEnd = 0;
+
+    public TokenBucket(int limit, long windowMillis) {
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+        this.tokens = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Returns how long a caller has to wait before a token is available.
+     * @param now The current time in milliseconds.
+     * @return 0 if a token is available now, otherwise the milliseconds until the window refills.
+     */
+    public long millisUntilAvailable(long now) {
+        refill(now);
+        return (tokens > 0) ? 0 : windowEnd - now;
+    }
+
+    // Takes a token. Callers check millisUntilAvailable first
+    public void consume(long now) {
+        refill(now);
+        if (windowEnd == 0) {
+            windowEnd = now + windowMillis;
+        }
+        tokens--;
+    }
+
+    /**
+     * Lowers the remaining tokens to match the count the server reported for this window.
+     * Requests still in flight have already taken local tokens, so the server count never raises the remaining tokens.
+     * @param count The number of requests the server has counted in the current window.
+     * @param now The current time in milliseconds.
+     */
+    public void sync(int count, long now) {
+        refill(now);
+        if (windowEnd == 0 || (count <= 1 && tokens >= limit - 1)) {
+            // The server has opened a window we have no end time for, or just opened a new one, so align ours with it
+            windowEnd = now + windowMillis;
+        }
+        tokens = Math.min(tokens, limit - count);
+    }
+
+    // Empties the bucket until the given time, used when the server answers with Retry-After
+    public void block(long until) {
+        tokens = 0;
+        windowEnd = Math.max(windowEnd, until);
+    }
+
+    private void refill(long now) {
+        if (windowEnd != 0 && now >= windowEnd) {
+            tokens = limit;
+            windowEnd = 0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Stress test for MatchupAggregator. Records the same set of synthetic matches with 1, 2, 4, ... threads, checks
+ * that the merged totals equal a single-threaded MatchupMatrix cell for cell, and reports throughput and speedup
+ * over one thread. The matches are spread over a few patches, and the patch segments must add up to the same
+ * totals. Merges also run concurrently with the recording threads, the way checkpoints and queries do
+ * during a crawl. Speedup is bounded by the number of cores.
+ *
+ * Run after building the benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar AggregationStressTest [maxThreads] [matchesPerThread]
+ */
+public class AggregationStressTest {
+
+    private static final int CHAMPIONS = 170;
+    private static final int PARTICIPANTS = 10;
+    private static final int ROUNDS = 3;
+    private static final int PATCHES = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : Math.max(8, Runtime.getRuntime().availableProcessors());
+        int matchesPerThread = (args.length > 1) ? Integer.parseInt(args[1]) : 200_000;
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors());
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CHAMPIONS; i++) {
+            names.add("champion" + i);
+        }
+        ChampionIndex index = new ChampionIndex(names);
+        int[][] championIds = new int[maxThreads * matchesPerThread][];
+        int[] winners = new int[championIds.length];
+        Random random = new Random(7);
+        for (int m = 0; m < championIds.length; m++) {
+            championIds[m] = randomTeams(random);
+            winners[m] = random.nextBoolean() ? 100 : 200;
+        }
+        int[] teamIds = new int[PARTICIPANTS];
+        int[] roles = new int[PARTICIPANTS];
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            teamIds[i] = (i < PARTICIPANTS / 2) ? 100 : 200;
+            roles[i] = 1 + i % (Role.COUNT - 1);
+        }
+
+        // Warm up the JIT so the one-thread baseline is not measured in the interpreter
+        for (int round = 0; round < ROUNDS; round++) {
+            run(new MatchupAggregator(new MatchupMatrix(index)), 1, matchesPerThread, championIds, teamIds, roles, winners);
+        }
+
+        double singleThreadRate = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            int matches = threads * matchesPerThread;
+            MatchupMatrix expected = new MatchupMatrix(index);
+            for (int m = 0; m < matches; m++) {
+                expected.recordMatch(championIds[m], teamIds, roles, PARTICIPANTS, winners[m], tierOf(m));
+            }
+            double bestRate = 0;
+            boolean exact = true;
+            for (int round = 0; round < ROUNDS; round++) {
+                MatchupAggregator aggregator = new MatchupAggregator(new MatchupMatrix(index));
+                long nanos = run(aggregator, threads, matchesPerThread, championIds, teamIds, roles, winners);
+                aggregator.merge();
+                exact &= equal(expected, aggregator.getBase(), CHAMPIONS);
+                MatchupMatrix segmentSum = new MatchupMatrix(index);
+                for (MatchupMatrix segment : aggregator.getSegments().values()) {
+                    segmentSum.addAll(segment);
+                }
+                exact &= equal(expected, segmentSum, CHAMPIONS);
+                bestRate = Math.max(bestRate, matches / (nanos / 1e9));
+            }
+            if (threads == 1) {
+                singleThreadRate = bestRate;
+            }
+            System.out.printf("%2d threads: %,12.0f matches/s  speedup %.2fx  exact totals: %s%n", threads, bestRate, bestRate / singleThreadRate, exact);
+            if (!exact) {
+                System.exit(1);
+            }
+        }
+    }
+
+    // Records every thread's slice of the matches while another thread keeps merging, and returns the elapsed time
+    private static long run(MatchupAggregator aggregator, int threads, int matchesPerThread, int[][] championIds, int[] teamIds, int[] roles, int[] winners) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int first = t * matchesPerThread;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int m = first; m < first + matchesPerThread; m++) {
+                    aggregator.record(championIds[m], teamIds, roles, PARTICIPANTS, winners[m], tierOf(m), patchOf(m));
+                }
+                done.countDown();
+            });
+            thread.start();
+        }
+        Thread merger = new Thread(() -> {
+            while (done.getCount() > 0) {
+                aggregator.merge();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        long begin = System.nanoTime();
+        start.countDown();
+        merger.start();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        merger.join();
+        return elapsed;
+    }
+
+    private static boolean equal(MatchupMatrix expected, MatchupMatrix actual, int size) {
+        for (int champion = 0; champion < size; champion++) {
+            if (expected.getGlobalGames(champion) != actual.getGlobalGames(champion) || expected.getGlobalWins(champion) != actual.getGlobalWins(champion)) {
+                return false;
+            }
+            for (Role role : Role.values()) {
+                if (expected.getRoleGames(champion, role) != actual.getRoleGames(champion, role) || expected.getRoleWins(champion, role) != actual.getRoleWins(champion, role)) {
+                    return false;
+                }
+            }
+            for (Tier tier : Tier.values()) {
+                if (expected.getTierGames(champion, tier) != actual.getTierGames(champion, tier) || expected.getTierWins(champion, tier) != actual.getTierWins(champion, tier)) {
+                    return false;
+                }
+            }
+            for (int opponent = 0; opponent < size; opponent++) {
+                if (expected.getGames(champion, opponent) != actual.getGames(champion, opponent) || expected.getWins(champion, opponent) != actual.getWins(champion, opponent)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int tierOf(int match) {
+        return match % Tier.COUNT;
+    }
+
+    private static int patchOf(int match) {
+        return 1401 + match % PATCHES;
+    }
+
+    // Ten distinct champions; the first five are team 100
+    private static int[] randomTeams(Random random) {
+        int[] picks = new int[PARTICIPANTS];
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            int pick;
+            boolean duplicate;
+            do {
+                pick = random.nextInt(CHAMPIONS);
+                duplicate = false;
+                for (int j = 0; j < i; j++) {
+                    duplicate |= picks[j] == pick;
+                }
+            } while (duplicate);
+            picks[i] = pick;
+        }
+        return picks;
+    }
+}
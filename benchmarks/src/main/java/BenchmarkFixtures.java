@@ -0,0 +1,149 @@
+import com.google.gson.Gson;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Synthetic data shaped like the real data files: 170 champions, about the size of the real champion list, with
+ * every matchup played often enough for CounterIndex to rank it. Everything is generated from fixed seeds, so every
+ * benchmark run measures the same data.
+ */
+public final class BenchmarkFixtures {
+
+    public static final int CHAMPIONS = 170;
+    // About 500 games per matchup, above CounterIndex.MIN_GAMES
+    private static final int MATCHES = 600_000;
+    private static final int PARTICIPANTS = 10;
+    private static final String[] ROLES = {"top", "jungle", "mid", "adc", "sup"};
+    // Written next to the fixtures, so a later run knows it may replace the files in the directory
+    private static final String MARKER_FILE = "benchmark_fixtures";
+    // Files of the real program that must never be written over
+    private static final String[] DATA_FILES = {"champion_list.json", "champion_data.json", "global_winrate_data.json", "match_events.log"};
+
+    private BenchmarkFixtures() {
+
+    }
+
+    // The names used by MatchParserBenchmark.syntheticMatch, lower-cased the way DataStorage interns them
+    public static List<String> championNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CHAMPIONS; i++) {
+            names.add("champion" + i);
+        }
+        return names;
+    }
+
+    public static String[] matchPayloads(int count, long seed) {
+        Random random = new Random(seed);
+        String[] payloads = new String[count];
+        for (int i = 0; i < count; i++) {
+            payloads[i] = MatchParserBenchmark.syntheticMatch(random, "NA1_" + (5000000000L + i));
+        }
+        return payloads;
+    }
+
+    // A matrix of random matches between the synthetic champions, with roles and tiers
+    public static MatchupMatrix matchupMatrix(long seed) {
+        return matchupMatrix(new ChampionIndex(championNames()), seed);
+    }
+
+    // The same random matches between the first CHAMPIONS champions of another index
+    public static MatchupMatrix matchupMatrix(ChampionIndex index, long seed) {
+        MatchupMatrix matrix = new MatchupMatrix(index);
+        Random random = new Random(seed);
+        int[] teamIds = new int[PARTICIPANTS];
+        int[] roles = new int[PARTICIPANTS];
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            teamIds[i] = (i < PARTICIPANTS / 2) ? 100 : 200;
+            roles[i] = 1 + i % (Role.COUNT - 1);
+        }
+        for (int m = 0; m < MATCHES; m++) {
+            matrix.recordMatch(randomTeams(random), teamIds, roles, PARTICIPANTS, random.nextBoolean() ? 100 : 200, 1 + random.nextInt(Tier.COUNT - 1));
+        }
+        return matrix;
+    }
+
+    /**
+     * Writes the files DataStorage and RoleGenerator start from into the working directory: the champion list,
+     * roles, matchup data and global win rates, and a cached version that was just checked, so nothing is
+     * downloaded. State left by a previous benchmark run is removed first.
+     * @throws IllegalStateException If the directory holds data files that were not written by the benchmarks.
+     */
+    public static void writeDataDirectory() throws IOException {
+        writeStaticData(championNames());
+        SnapshotConverter.writeJson(matchupMatrix(7), "champion_data.json", "global_winrate_data.json");
+    }
+
+    /**
+     * Writes the same files for the champions of a matrix, with the matrix as a binary snapshot instead of the JSON
+     * files, so the synergy and lane data are loaded too.
+     * @throws IllegalStateException If the directory holds data files that were not written by the benchmarks.
+     */
+    public static void writeDataDirectory(MatchupMatrix matrix) throws IOException {
+        writeStaticData(matrix.getIndex().names());
+        MappedSnapshot.write(Paths.get("champion_data-0.bin"), matrix, 0);
+    }
+
+    // Clears the directory and writes everything but the matchup data
+    private static void writeStaticData(List<String> champions) throws IOException {
+        Path directory = Paths.get("").toAbsolutePath();
+        if (!Files.exists(directory.resolve(MARKER_FILE))) {
+            for (String dataFile : DATA_FILES) {
+                if (Files.exists(directory.resolve(dataFile))) {
+                    throw new IllegalStateException("Run the benchmarks from an empty directory, " + directory + " holds " + dataFile);
+                }
+            }
+        }
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "{champion_data.json,global_winrate_data.json,match_events.*,processed_match_ids.*,champion_data-*.bin,patch_segment-*.bin,match_archive-*.bin,puuid_cache.bin,match_watermarks.bin}")) {
+            for (Path path : stale) {
+                Files.delete(path);
+            }
+        }
+        Files.writeString(directory.resolve(MARKER_FILE), "Written by the benchmarks; every file here is replaced on the next run\n");
+
+        Gson gson = new Gson();
+        Map<String, String> championList = new HashMap<>();
+        Map<String, String[]> championRoles = new HashMap<>();
+        for (int number = 0; number < champions.size(); number++) {
+            String champion = champions.get(number);
+            championList.put(champion, champion);
+            championRoles.put(champion, new String[]{ROLES[number % ROLES.length], ROLES[(number / ROLES.length) % ROLES.length]});
+        }
+        writeJson(gson, championList, directory.resolve("champion_list.json"));
+        writeJson(gson, championRoles, directory.resolve("champion_roles.json"));
+        Map<String, Object> refreshState = new HashMap<>();
+        refreshState.put("checkedAt", System.currentTimeMillis());
+        writeJson(gson, refreshState, directory.resolve("static_data_state.json"));
+        Files.writeString(directory.resolve("version_info"), "14.4.1");
+    }
+
+    private static void writeJson(Gson gson, Object data, Path path) throws IOException {
+        try (Writer writer = new FileWriter(path.toFile())) {
+            gson.toJson(data, writer);
+        }
+    }
+
+    // Ten distinct champions; the first five are team 100
+    private static int[] randomTeams(Random random) {
+        int[] championIds = new int[PARTICIPANTS];
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            int candidate;
+            boolean taken;
+            do {
+                candidate = random.nextInt(CHAMPIONS);
+                taken = false;
+                for (int j = 0; j < i; j++) {
+                    taken |= championIds[j] == candidate;
+                }
+            } while (taken);
+            championIds[i] = candidate;
+        }
+        return championIds;
+    }
+}
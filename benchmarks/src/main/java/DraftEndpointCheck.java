@@ -0,0 +1,98 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that /draft puts each team where it belongs. The fixture matrix gets one champion that clearly counters
+ * a given enemy and one that clearly does well with a given ally, and the server is asked for the best pick:
+ *   - against that enemy, the counter must be the best pick
+ *   - with that ally, the partner must be the best pick
+ *   - a full enemy team and no allies (five slots open to any role) must give a full composition
+ * With the teams swapped, the first two rank the wrong champion and the last one is rejected.
+ *
+ * Writes its data files into the working directory, so run it from an empty directory after building the
+ * benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar DraftEndpointCheck
+ */
+public class DraftEndpointCheck {
+
+    // Far above anything the random fixture matches give a pair
+    private static final int GAMES = 2000;
+    private static final int WINS = 1800;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        // Names without digits, which the server strips from its parameters
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < BenchmarkFixtures.CHAMPIONS; i++) {
+            names.add("champion" + (char) ('a' + i / 26) + (char) ('a' + i % 26));
+        }
+        MatchupMatrix matrix = BenchmarkFixtures.matchupMatrix(new ChampionIndex(names), 17);
+        int enemy = 0;
+        int counter = 1;
+        int ally = 2;
+        int partner = 3;
+        matrix.add(counter, enemy, WINS, GAMES);
+        matrix.add(enemy, counter, GAMES - WINS, GAMES);
+        matrix.addSynergy(partner, ally, WINS, GAMES);
+        BenchmarkFixtures.writeDataDirectory(matrix);
+
+        RecommendationServer server = new RecommendationServer(0);
+        server.start();
+        String baseUrl = "http://localhost:" + server.getPort() + "/draft?limit=1";
+        HttpClient client = HttpClient.newHttpClient();
+
+        JsonObject response = get(client, baseUrl + "&enemies=" + names.get(enemy) + "&allies=" + join(names, 10, 14));
+        check("counter is the best pick against its enemy", response != null && firstDraft(response).contains(names.get(counter)));
+        response = get(client, baseUrl + "&enemies=" + join(names, 20, 24) + "&allies=" + names.get(ally) + "," + join(names, 10, 13));
+        check("partner is the best pick with its ally", response != null && firstDraft(response).contains(names.get(partner)));
+        response = get(client, baseUrl + "&enemies=" + names.get(enemy) + "," + join(names, 20, 24));
+        check("a full enemy team and no allies fills five slots", response != null && firstDraft(response).size() == DraftEvaluator.TEAM_SIZE);
+
+        server.stop();
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // The body of a 200 response, or null after printing any other
+    private static JsonObject get(HttpClient client, String url) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            System.out.println(url + " answered " + response.statusCode() + ": " + response.body());
+            return null;
+        }
+        return new Gson().fromJson(response.body(), JsonObject.class);
+    }
+
+    // The champions of the best composition
+    private static List<String> firstDraft(JsonObject response) {
+        List<String> champions = new ArrayList<>();
+        JsonArray drafts = response.getAsJsonArray("drafts");
+        if (!drafts.isEmpty()) {
+            for (JsonElement pick : drafts.get(0).getAsJsonObject().getAsJsonArray("picks")) {
+                champions.add(pick.getAsJsonObject().get("champion").getAsString());
+            }
+        }
+        return champions;
+    }
+
+    private static String join(List<String> names, int from, int to) {
+        return String.join(",", names.subList(from, to));
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that DraftEvaluator's pruned search returns the same compositions as trying every one. Each trial builds
+ * a small random table, where some pairs have fewer than CounterIndex.MIN_GAMES games and some have lane records,
+ * picks random allies, enemies and role masks (or none), and compares bestDrafts with a brute-force enumeration
+ * scored straight from the table as the DraftEvaluator doc describes:
+ *   - the k best scores must be the same, one per champion set
+ *   - every returned composition must be legal for its slots and score what bestDrafts reports
+ * The slot mixes cover slots open to any role alone, fixed roles alone and both together, for several k.
+ *
+ * Run after building the benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar DraftSearchCheck [trials]
+ */
+public class DraftSearchCheck {
+
+    private static final int CHAMPIONS = 16;
+    private static final int[] KS = {1, 3, 8};
+    private static final Role U = Role.UNKNOWN;
+    private static final Role[][] SLOT_MIXES = {
+            {U},
+            {Role.MIDDLE},
+            {U, U},
+            {Role.TOP, U},
+            {U, U, U},
+            {Role.TOP, Role.MIDDLE, U},
+            {Role.JUNGLE, U, U, U},
+            {U, U, U, U, U},
+            {Role.BOTTOM, U, Role.UTILITY, U, U},
+            {Role.TOP, Role.JUNGLE, Role.MIDDLE, Role.BOTTOM, Role.UTILITY},
+    };
+    private static final double TOLERANCE = 1e-9;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 6;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Random random = new Random(23);
+        int checked = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            MatchupMatrix table = randomTable(random);
+            for (Role[] openRoles : SLOT_MIXES) {
+                int[] masks = random.nextBoolean() ? null : randomMasks(random);
+                int[] team = random.ints(0, CHAMPIONS).distinct().limit(2L * DraftEvaluator.TEAM_SIZE).toArray();
+                int[] allies = Arrays.copyOf(team, DraftEvaluator.TEAM_SIZE - openRoles.length);
+                int[] enemies = Arrays.copyOfRange(team, DraftEvaluator.TEAM_SIZE, 2 * DraftEvaluator.TEAM_SIZE);
+                for (int k : KS) {
+                    List<DraftEvaluator.Draft> drafts = new DraftEvaluator(table, pool).bestDrafts(allies, enemies, openRoles, masks, k);
+                    String query = "trial " + trial + " " + Arrays.toString(openRoles) + " k=" + k + (masks == null ? " without masks" : "");
+                    compare(query, table, allies, enemies, openRoles, masks, k, drafts);
+                    checked++;
+                }
+            }
+        }
+        pool.shutdown();
+        System.out.println(failures == 0 ? "All " + checked + " searches match the brute force" : failures + " of " + checked + " searches differ");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void compare(String query, MatchupTable table, int[] allies, int[] enemies, Role[] openRoles, int[] masks, int k, List<DraftEvaluator.Draft> drafts) {
+        // The best score of every champion set, as the search keeps one composition per set
+        Map<String, Double> bestBySet = new HashMap<>();
+        enumerate(table, allies, enemies, openRoles, masks, 0, new int[openRoles.length], bestBySet);
+        double[] expected = bestBySet.values().stream().sorted(Comparator.reverseOrder()).limit(k).mapToDouble(Double::doubleValue).toArray();
+        double[] actual = drafts.stream().mapToDouble(DraftEvaluator.Draft::score).toArray();
+        boolean same = expected.length == actual.length;
+        for (int i = 0; same && i < actual.length; i++) {
+            same = Math.abs(expected[i] - actual[i]) < TOLERANCE;
+        }
+        if (!same) {
+            fail(query + ": expected " + Arrays.toString(expected) + ", got " + Arrays.toString(actual));
+            return;
+        }
+        ChampionIndex index = table.getIndex();
+        for (DraftEvaluator.Draft draft : drafts) {
+            int[] picks = new int[openRoles.length];
+            for (int slot = 0; slot < picks.length; slot++) {
+                picks[slot] = index.indexOf(draft.picks().get(slot).champion());
+                if (!allowed(table, allies, enemies, openRoles, masks, picks, slot)) {
+                    fail(query + ": " + draft + " puts an illegal champion in slot " + slot);
+                    return;
+                }
+            }
+            if (Math.abs(score(table, allies, enemies, openRoles, picks) - draft.score()) >= TOLERANCE) {
+                fail(query + ": " + draft + " scores " + score(table, allies, enemies, openRoles, picks));
+                return;
+            }
+        }
+    }
+
+    // Tries every legal champion in every slot from the given one on
+    private static void enumerate(MatchupTable table, int[] allies, int[] enemies, Role[] openRoles, int[] masks, int slot, int[] picks, Map<String, Double> bestBySet) {
+        if (slot == openRoles.length) {
+            int[] set = picks.clone();
+            Arrays.sort(set);
+            bestBySet.merge(Arrays.toString(set), score(table, allies, enemies, openRoles, picks), Math::max);
+            return;
+        }
+        for (int champion = 0; champion < CHAMPIONS; champion++) {
+            picks[slot] = champion;
+            if (allowed(table, allies, enemies, openRoles, masks, picks, slot)) {
+                enumerate(table, allies, enemies, openRoles, masks, slot + 1, picks, bestBySet);
+            }
+        }
+    }
+
+    // True if the champion picked for the slot is not locked, not picked for an earlier slot and may play the slot
+    private static boolean allowed(MatchupTable table, int[] allies, int[] enemies, Role[] openRoles, int[] masks, int[] picks, int slot) {
+        int champion = picks[slot];
+        if (champion < 0 || table.getGlobalGames(champion) == 0 || contains(allies, champion) || contains(enemies, champion)
+                || contains(Arrays.copyOf(picks, slot), champion)) {
+            return false;
+        }
+        return openRoles[slot] == Role.UNKNOWN || masks == null || (masks[champion] & openRoles[slot].mask()) != 0;
+    }
+
+    // Sums each pick's counter, ally and role scores and the synergy of every pair of picks
+    private static double score(MatchupTable table, int[] allies, int[] enemies, Role[] openRoles, int[] picks) {
+        double score = 0;
+        for (int slot = 0; slot < picks.length; slot++) {
+            int champion = picks[slot];
+            Role role = openRoles[slot];
+            double rate = rate(table.getGlobalWins(champion), table.getGlobalGames(champion));
+            for (int enemy : enemies) {
+                int laneGames = table.getLaneGames(champion, enemy, role);
+                int games = table.getGames(champion, enemy);
+                if (laneGames >= CounterIndex.MIN_GAMES) {
+                    score += rate(table.getLaneWins(champion, enemy, role), laneGames) - rate;
+                } else if (games >= CounterIndex.MIN_GAMES) {
+                    score += rate(table.getWins(champion, enemy), games) - rate;
+                }
+            }
+            for (int ally : allies) {
+                score += synergy(table, champion, ally);
+            }
+            for (int earlier = 0; earlier < slot; earlier++) {
+                score += synergy(table, champion, picks[earlier]);
+            }
+            int roleGames = table.getRoleGames(champion, role);
+            if (role != Role.UNKNOWN && roleGames >= CounterIndex.MIN_GAMES) {
+                score += rate(table.getRoleWins(champion, role), roleGames) - rate;
+            }
+        }
+        return score;
+    }
+
+    private static double synergy(MatchupTable table, int champion, int ally) {
+        int games = table.getSynergyGames(champion, ally);
+        if (games < CounterIndex.MIN_GAMES || table.getGlobalGames(ally) == 0) {
+            return 0;
+        }
+        double average = (rate(table.getGlobalWins(champion), table.getGlobalGames(champion)) + rate(table.getGlobalWins(ally), table.getGlobalGames(ally))) / 2;
+        return rate(table.getSynergyWins(champion, ally), games) - average;
+    }
+
+    /**
+     * A table of CHAMPIONS champions where the last one has no games. Records are drawn around even win rates with
+     * games on both sides of CounterIndex.MIN_GAMES, and about a third of the lane matchups have records.
+     */
+    private static MatchupMatrix randomTable(Random random) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CHAMPIONS; i++) {
+            names.add("champion" + i);
+        }
+        MatchupMatrix table = new MatchupMatrix(new ChampionIndex(names));
+        for (int a = 0; a < CHAMPIONS - 1; a++) {
+            int games = 1000 + random.nextInt(4000);
+            table.addGlobal(a, wins(random, games), games);
+            for (Role role : Role.values()) {
+                games = random.nextInt(2 * CounterIndex.MIN_GAMES);
+                table.addRole(a, role, wins(random, games), games);
+            }
+            for (int b = 0; b < CHAMPIONS - 1; b++) {
+                if (a == b) {
+                    continue;
+                }
+                games = random.nextInt(3 * CounterIndex.MIN_GAMES);
+                table.add(a, b, wins(random, games), games);
+                if (a < b) {
+                    games = random.nextInt(3 * CounterIndex.MIN_GAMES);
+                    table.addSynergy(a, b, wins(random, games), games);
+                }
+                for (Role role : Role.values()) {
+                    if (role != Role.UNKNOWN && random.nextInt(3) == 0) {
+                        games = CounterIndex.MIN_GAMES + random.nextInt(CounterIndex.MIN_GAMES);
+                        table.addLane(a, b, role, wins(random, games), games);
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    // Between 35% and 65% of the games
+    private static int wins(Random random, int games) {
+        return (int) (games * (0.35 + 0.3 * random.nextDouble()));
+    }
+
+    // One to three positions for every champion
+    private static int[] randomMasks(Random random) {
+        int[] masks = new int[CHAMPIONS];
+        for (int champion = 0; champion < CHAMPIONS; champion++) {
+            for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                masks[champion] |= Role.ofOrdinal(1 + random.nextInt(Role.COUNT - 1)).mask();
+            }
+        }
+        return masks;
+    }
+
+    private static double rate(int wins, int games) {
+        return (double) wins / games;
+    }
+
+    private static boolean contains(int[] champions, int champion) {
+        for (int other : champions) {
+            if (other == champion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void fail(String message) {
+        System.out.println("FAIL " + message);
+        failures++;
+    }
+}
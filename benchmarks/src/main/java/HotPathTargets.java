@@ -0,0 +1,95 @@
+import bench.HotPaths;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Calls the project's hot paths for the JMH benchmarks in the bench package, see HotPaths.
+ */
+public class HotPathTargets implements HotPaths {
+
+    private final ThreadLocal<MatchSummary> summaries = ThreadLocal.withInitial(MatchSummary::new);
+    private ChampionDataFetcher fetcher;
+
+    @Override
+    public void startDataStorage() throws IOException {
+        BenchmarkFixtures.writeDataDirectory();
+        DataStorage.getInstance();
+        fetcher = new ChampionDataFetcher();
+    }
+
+    @Override
+    public String[] matchPayloads(int count, long seed) {
+        return BenchmarkFixtures.matchPayloads(count, seed);
+    }
+
+    @Override
+    public boolean parseMatch(String matchData) {
+        return MatchParser.parse(matchData, summaries.get());
+    }
+
+    @Override
+    public void processGameData(String matchData) {
+        DataStorage.processGameData(matchData, Tier.CHALLENGER);
+    }
+
+    @Override
+    public int championCount() {
+        return BenchmarkFixtures.CHAMPIONS;
+    }
+
+    @Override
+    public List<?> recommend(int[] enemies, String role, int k) {
+        return fetcher.recommend(enemies, role, k);
+    }
+
+    @Override
+    public Object matchupMatrix(long seed) {
+        return BenchmarkFixtures.matchupMatrix(seed).frozenCopy();
+    }
+
+    @Override
+    public List<?> draft(Object table, int[] allies, int[] enemies, String openRoles, int k) {
+        return fetcher.bestDrafts((MatchupTable) table, allies, enemies, ChampionDataFetcher.parseOpenRoles(openRoles, allies.length), k);
+    }
+
+    @Override
+    public Map<String, Double> winRates(long seed) {
+        Random random = new Random(seed);
+        Map<String, Double> winRates = new HashMap<>();
+        for (String champion : BenchmarkFixtures.championNames()) {
+            winRates.put(champion, 0.4 + random.nextDouble() * 0.2);
+        }
+        return winRates;
+    }
+
+    @Override
+    public Map<String, Double> normalizeData(Map<String, Double> winRates) {
+        return fetcher.normalizeData(winRates);
+    }
+
+    @Override
+    public void displayWinrate(Map<String, Double> winRates) {
+        fetcher.displayWinrate(winRates);
+    }
+
+    @Override
+    public void writeJsonFixture(String dataPath, String globalPath) throws IOException {
+        SnapshotConverter.writeJson(BenchmarkFixtures.matchupMatrix(7), dataPath, globalPath);
+    }
+
+    @Override
+    public Object loadJson(String dataPath, String globalPath) throws IOException {
+        MatchupMatrix matrix = SnapshotConverter.readMatchupJson(dataPath, new ChampionIndex());
+        SnapshotConverter.addGlobalJson(matrix, SnapshotConverter.readGlobalJson(globalPath));
+        return matrix;
+    }
+
+    @Override
+    public void saveJson(Object table, String dataPath, String globalPath) throws IOException {
+        SnapshotConverter.writeJson((MatchupTable) table, dataPath, globalPath);
+    }
+}
@@ -0,0 +1,125 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Random;
+
+/**
+ * Compares the streaming MatchParser against parsing the whole payload into a Gson JsonObject, which is how
+ * DataStorage.processGameData used to read matches. Uses synthetic match-v5 payloads of realistic size.
+ *
+ * Run after building the benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar MatchParserBenchmark
+ */
+public class MatchParserBenchmark {
+
+    private static final int PAYLOADS = 200;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        String[] payloads = new String[PAYLOADS];
+        Random random = new Random(42);
+        long totalBytes = 0;
+        for (int i = 0; i < PAYLOADS; i++) {
+            payloads[i] = syntheticMatch(random, "NA1_" + (4900000000L + i));
+            totalBytes += payloads[i].length();
+        }
+        System.out.println("Average payload: " + totalBytes / PAYLOADS / 1024 + " KB");
+
+        MatchSummary summary = new MatchSummary();
+        Gson gson = new Gson();
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += runStreaming(payloads, summary) + runDom(payloads, gson);
+        }
+        long streamingNanos = 0;
+        long domNanos = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += runStreaming(payloads, summary);
+            streamingNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            checksum += runDom(payloads, gson);
+            domNanos += System.nanoTime() - start;
+        }
+        long parsed = (long) PAYLOADS * MEASURED_ROUNDS;
+        System.out.printf("Streaming: %.1f us/match%n", streamingNanos / 1000.0 / parsed);
+        System.out.printf("DOM:       %.1f us/match%n", domNanos / 1000.0 / parsed);
+        System.out.printf("Speedup:   %.2fx (checksum %d)%n", (double) domNanos / streamingNanos, checksum);
+    }
+
+    private static long runStreaming(String[] payloads, MatchSummary summary) {
+        long checksum = 0;
+        for (String payload : payloads) {
+            MatchParser.parse(payload, summary);
+            checksum += summary.getWinningTeamId() + summary.getParticipantCount();
+        }
+        return checksum;
+    }
+
+    // The previous approach: build the whole tree, then read the three fields
+    private static long runDom(String[] payloads, Gson gson) {
+        long checksum = 0;
+        for (String payload : payloads) {
+            JsonObject info = gson.fromJson(payload, JsonObject.class).getAsJsonObject("info");
+            int participants = 0;
+            for (JsonElement participant : info.getAsJsonArray("participants")) {
+                participant.getAsJsonObject().get("championName").getAsString().toLowerCase();
+                participant.getAsJsonObject().get("teamId").getAsInt();
+                participants++;
+            }
+            int winningTeamId = -1;
+            JsonArray teams = info.getAsJsonArray("teams");
+            for (JsonElement team : teams) {
+                if (team.getAsJsonObject().get("win").getAsBoolean()) {
+                    winningTeamId = team.getAsJsonObject().get("teamId").getAsInt();
+                    break;
+                }
+            }
+            checksum += winningTeamId + participants;
+        }
+        return checksum;
+    }
+
+    /**
+     * Builds a payload shaped like match-v5: metadata, then info with ten participants carrying ~100 stat fields and a
+     * nested challenges object each, plus teams with bans and objectives.
+     */
+    static String syntheticMatch(Random random, String matchId) {
+        StringBuilder json = new StringBuilder(40_000);
+        json.append("{\"metadata\":{\"dataVersion\":\"2\",\"matchId\":\"").append(matchId).append("\",\"participants\":[");
+        for (int i = 0; i < 10; i++) {
+            json.append(i > 0 ? "," : "").append("\"puuid-").append(random.nextLong()).append('"');
+        }
+        json.append("]},\"info\":{\"gameCreation\":").append(1700000000000L + random.nextInt(1_000_000))
+                .append(",\"gameDuration\":").append(1200 + random.nextInt(1200))
+                .append(",\"gameMode\":\"CLASSIC\",\"gameVersion\":\"14.4.566.1234\",\"participants\":[");
+        String[] positions = {"TOP", "JUNGLE", "MIDDLE", "BOTTOM", "UTILITY"};
+        for (int i = 0; i < 10; i++) {
+            json.append(i > 0 ? "," : "").append("{\"challenges\":{");
+            for (int c = 0; c < 60; c++) {
+                json.append(c > 0 ? "," : "").append("\"challenge").append(c).append("\":").append(random.nextDouble());
+            }
+            json.append("},\"championId\":").append(random.nextInt(900))
+                    .append(",\"championName\":\"Champion").append(random.nextInt(170)).append('"')
+                    .append(",\"perks\":{\"styles\":[{\"selections\":[{\"perk\":8010,\"var1\":1},{\"perk\":9111,\"var1\":2}]}]}");
+            for (int f = 0; f < 100; f++) {
+                json.append(",\"stat").append(f).append("\":").append(random.nextInt(100000));
+            }
+            json.append(",\"teamId\":").append(i < 5 ? 100 : 200)
+                    .append(",\"teamPosition\":\"").append(positions[i % 5]).append('"')
+                    .append(",\"summonerName\":\"Player").append(random.nextInt()).append('"')
+                    .append(",\"win\":").append(i < 5).append('}');
+        }
+        json.append("],\"platformId\":\"NA1\",\"queueId\":420,\"teams\":[");
+        for (int t = 0; t < 2; t++) {
+            json.append(t > 0 ? "," : "").append("{\"bans\":[{\"championId\":1,\"pickTurn\":1}],\"objectives\":{\"baron\":{\"first\":false,\"kills\":")
+                    .append(random.nextInt(3)).append("}},\"teamId\":").append(t == 0 ? 100 : 200)
+                    .append(",\"win\":").append(t == 0).append('}');
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,124 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks the whole crawl (league pages, summoners, match ID lists, match downloads, parsing, aggregation and the
+ * final checkpoint) offline, by replaying a recorded crawl through ReplayTransport without rate limits. The
+ * archive can come from a real crawl (run the program with -Driot.record=<file>) or from the synthetic Riot API
+ * below, which answers every league page with a few players and every player with a few matches shared with
+ * other players, using MatchParserBenchmark's payloads. Both modes start from fresh fixtures in the working
+ * directory, so run them from an empty directory, one mode per JVM since DataStorage loads its data once.
+ *
+ * Run after building the benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar PipelineReplayBenchmark record <archive> [playersPerPage] [matchesPerPlayer]
+ *   java -cp benchmarks/target/benchmarks.jar PipelineReplayBenchmark replay <archive> [regions]
+ */
+public class PipelineReplayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !(args[0].equals("record") || args[0].equals("replay"))) {
+            System.out.println("Usage: PipelineReplayBenchmark record <archive> [playersPerPage] [matchesPerPlayer]");
+            System.out.println("       PipelineReplayBenchmark replay <archive> [regions]");
+            return;
+        }
+        Path archive = Paths.get(args[1]).toAbsolutePath();
+        BenchmarkFixtures.writeDataDirectory();
+        DataStorage.getInstance();
+        RiotTransport transport;
+        List<Region> regions = new ArrayList<>();
+        if (args[0].equals("record")) {
+            int playersPerPage = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+            int matchesPerPlayer = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+            transport = new RecordingTransport(new SyntheticRiotApi(playersPerPage, matchesPerPlayer), archive);
+            regions.add(Region.NA1);
+        } else {
+            transport = ReplayTransport.open(archive);
+            for (String name : ((args.length > 2) ? args[2] : "na1").split(",")) {
+                Region region = Region.fromName(name);
+                if (region == null) {
+                    System.out.println("Unknown region: " + name.trim());
+                    return;
+                }
+                regions.add(region);
+            }
+        }
+        RiotAPI.setTransport(transport);
+
+        RateMeter ingested = Metrics.meter("matches_ingested_total", "Matches applied to the matchup data");
+        long start = System.nanoTime();
+        RiotAPI.fetchAndProcessGameData(regions);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        transport.close();
+        Log.flush();
+
+        long requests = 0;
+        for (String line : Metrics.prometheusText().split("\n")) {
+            if (line.startsWith("riot_responses_total")) {
+                requests += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        System.out.printf("%s: %d requests, %d matches in %.2fs, %.0f matches/s, %.0f requests/s%n", args[0], requests,
+                ingested.getCount(), seconds, ingested.getCount() / seconds, requests / seconds);
+        System.out.printf("Archive: %d KB%n", Files.size(archive) / 1024);
+        System.exit(0);
+    }
+
+    /**
+     * Answers the crawl's requests by URL pattern without a network. Every player lists matchesPerPlayer matches
+     * drawn from a pool half the size of all the listings, so players share matches the way real ones do.
+     * Everything is derived from the URL, so the same request always gets the same answer.
+     */
+    private static class SyntheticRiotApi implements RiotTransport {
+
+        private final int playersPerPage;
+        private final int matchesPerPlayer;
+        // Half as many matches as the crawl lists: it reads 3 apex pages and 5 tiers of 4 divisions with 10 pages each
+        private final int matchPool;
+
+        SyntheticRiotApi(int playersPerPage, int matchesPerPlayer) {
+            this.playersPerPage = playersPerPage;
+            this.matchesPerPlayer = matchesPerPlayer;
+            this.matchPool = Math.max(1, (3 + 5 * 4 * 10) * playersPerPage * matchesPerPlayer / 2);
+        }
+
+        @Override
+        public Response get(String url) {
+            String path = url.substring(0, (url.indexOf('?') < 0) ? url.length() : url.indexOf('?'));
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            Random random = new Random(RiotTransport.requestKey(url).hashCode());
+            if (path.contains("/leagues/by-queue/") || path.contains("/league-exp/v4/entries/")) {
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < playersPerPage; i++) {
+                    body.append(i > 0 ? "," : "").append("{\"summonerId\":\"summoner-").append(Math.abs(RiotTransport.requestKey(url).hashCode())).append('-').append(i).append("\"}");
+                }
+                return ok(body.append(']').toString());
+            } else if (path.contains("/summoner/v4/summoners/")) {
+                return ok("{\"puuid\":\"puuid-" + name + "\"}");
+            } else if (path.endsWith("/ids")) {
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < matchesPerPlayer; i++) {
+                    body.append(i > 0 ? "," : "").append("\"NA1_").append(5000000000L + random.nextInt(matchPool)).append('"');
+                }
+                return ok(body.append(']').toString());
+            } else if (path.contains("/match/v5/matches/")) {
+                return ok(MatchParserBenchmark.syntheticMatch(new Random(name.hashCode()), name));
+            }
+            return new Response(404, "Not Found", "", Map.of());
+        }
+
+        private static Response ok(String body) {
+            return new Response(200, "OK", body, Map.of());
+        }
+
+        // Nothing to pace, so the recording runs at full speed too
+        @Override
+        public boolean isRateLimited() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for RecommendationServer. Starts the server in-process on the local data files (or targets a running
+ * server if a URL is given), then has many virtual-thread clients send a mix of recommendation, win rate and matchup
+ * requests for a fixed time, and reports throughput, errors and latency percentiles.
+ *
+ * Run from the project root (the directory holding the data files) after building the benchmarks module:
+ *   java -cp benchmarks/target/benchmarks.jar RecommendationLoadTest [clients] [seconds] [url]
+ */
+public class RecommendationLoadTest {
+
+    private static final int DEFAULT_CLIENTS = 256;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int WARMUP_SECONDS = 2;
+    private static final String[] ROLES = {"top", "jungle", "mid", "adc", "sup", "any"};
+
+    public static void main(String[] args) throws Exception {
+        int clients = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        RecommendationServer server = null;
+        String baseUrl;
+        if (args.length > 2) {
+            baseUrl = args[2];
+        } else {
+            server = new RecommendationServer(0);
+            server.start();
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+        List<String> champions = DataStorage.getInstance().getChampionIndex().names();
+        // HTTP/1.1 with keep-alive, the way a local client would talk to the JDK server
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        System.out.println("Warming up for " + WARMUP_SECONDS + "s");
+        run(client, baseUrl, champions, clients, WARMUP_SECONDS, false);
+        System.out.println("Running " + clients + " clients for " + seconds + "s against " + baseUrl);
+        run(client, baseUrl, champions, clients, seconds, true);
+
+        if (server != null) {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void run(HttpClient client, String baseUrl, List<String> champions, int clients, int seconds, boolean report) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] clientLatencies = new long[1 << 16];
+                latencies.add(clientLatencies);
+                int seed = c;
+                executor.submit(() -> {
+                    Random random = new Random(seed);
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + randomPath(random, champions))).GET().build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count < clientLatencies.length - 1) {
+                            clientLatencies[++count] = System.nanoTime() - start;
+                        }
+                    }
+                    // Slot 0 holds the number of recorded latencies
+                    clientLatencies[0] = count;
+                    return null;
+                });
+            }
+        }
+        if (!report) {
+            return;
+        }
+        int total = 0;
+        for (long[] clientLatencies : latencies) {
+            total += (int) clientLatencies[0];
+        }
+        long[] all = new long[total];
+        int next = 0;
+        for (long[] clientLatencies : latencies) {
+            System.arraycopy(clientLatencies, 1, all, next, (int) clientLatencies[0]);
+            next += (int) clientLatencies[0];
+        }
+        Arrays.sort(all);
+        System.out.println("Requests: " + total + " (" + total / seconds + "/s), errors: " + errors.get());
+        if (total > 0) {
+            System.out.printf("Latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1e6);
+        }
+    }
+
+    // Mostly recommendations, the query the server exists for, with some lookups mixed in
+    private static String randomPath(Random random, List<String> champions) {
+        int kind = random.nextInt(10);
+        if (kind < 7) {
+            StringBuilder enemies = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                enemies.append(i > 0 ? "," : "").append(champions.get(random.nextInt(champions.size())));
+            }
+            return "/recommend?enemies=" + enemies + "&role=" + ROLES[random.nextInt(ROLES.length)];
+        } else if (kind < 9) {
+            return "/matchup?champion=" + champions.get(random.nextInt(champions.size())) + "&opponent=" + champions.get(random.nextInt(champions.size()));
+        }
+        return "/winrate?champion=" + champions.get(random.nextInt(champions.size()));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1e6;
+    }
+}
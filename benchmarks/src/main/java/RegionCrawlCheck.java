@@ -0,0 +1,157 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawls two regions end to end over HTTP against a local stand-in for the Riot API, reached through
+ * Region.setHostOverride, and checks that every region's requests reach its own platform and regional routes:
+ *   - each apex league page of a region lists PLAYERS_PER_PAGE players, and the division pages are empty
+ *   - player p lists the region's matches p and p + 1, so every match is shared by two players
+ *   - one match of the first region answers with a body that does not parse as a match
+ *   - one match of the second region answers 404
+ * Every other match must be aggregated, and every player must get a watermark except the ones whose lists
+ * claimed the two failed matches.
+ *
+ * Writes its data files into the working directory, so run it from an empty directory after building the
+ * benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar RegionCrawlCheck
+ */
+public class RegionCrawlCheck {
+
+    private static final List<Region> REGIONS = List.of(Region.NA1, Region.EUW1);
+    private static final String[] APEX_TIERS = {"challenger", "grandmaster", "master"};
+    private static final int PLAYERS_PER_PAGE = 2;
+    private static final int PLAYERS = APEX_TIERS.length * PLAYERS_PER_PAGE;
+    private static final long FIRST_MATCH = 5000000000L;
+    private static final String MALFORMED_MATCH = "NA1_" + (FIRST_MATCH + 2);
+    private static final String FAILED_MATCH = "EUW1_" + (FIRST_MATCH + 4);
+
+    // Requests by route, the first path segment after the host, and match requests by regional route
+    private static final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> matchRequests = new ConcurrentHashMap<>();
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkFixtures.writeDataDirectory();
+        DataStorage.getInstance();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", RegionCrawlCheck::answer);
+        server.start();
+        Region.setHostOverride("http://localhost:" + server.getAddress().getPort());
+        RiotAPI.fetchAndProcessGameData(REGIONS);
+        Region.setHostOverride(null);
+        server.stop(0);
+
+        check("only the routes of the two regions are requested", requests.keySet().equals(Set.of("na1", "americas", "euw1", "europe")));
+        for (Region region : REGIONS) {
+            int matches = 0;
+            for (int m = 0; m < PLAYERS; m++) {
+                String matchId = matchId(region, m);
+                if (DataStorage.processedMatchIds.contains(matchId)) {
+                    matches++;
+                }
+            }
+            check(region + " aggregates every match but the failed one", matches == PLAYERS - 1);
+            check(region + " requests every match once", count(region.getRegionalRoute()) == PLAYERS);
+        }
+        check("the match that did not parse is not recorded as processed", !DataStorage.processedMatchIds.contains(MALFORMED_MATCH));
+        check("the match that answered 404 is not recorded as processed", !DataStorage.processedMatchIds.contains(FAILED_MATCH));
+        MatchWatermarkStore watermarks = new MatchWatermarkStore(Paths.get("match_watermarks.bin"));
+        int watermarked = 0;
+        for (Region region : REGIONS) {
+            for (int p = 0; p < PLAYERS; p++) {
+                if (watermarks.get(puuid(region, p)) != null) {
+                    watermarked++;
+                }
+            }
+        }
+        check("every player but the ones that claimed the failed matches gets a watermark", watermarked == REGIONS.size() * PLAYERS - 2);
+
+        Log.flush();
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // Answers /<route>/lol/... by the path, the way the crawl's requests are told apart
+    private static void answer(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] segments = path.split("/");
+        String route = segments[1];
+        String name = segments[segments.length - 1];
+        requests.computeIfAbsent(route, r -> new AtomicInteger()).incrementAndGet();
+        Region region = regionOf(route);
+        String body = null;
+        if (path.contains("leagues/by-queue/")) {
+            int tier = List.of(APEX_TIERS).indexOf(segments[segments.length - 3].replace("leagues", ""));
+            StringBuilder players = new StringBuilder("[");
+            for (int i = 0; i < PLAYERS_PER_PAGE; i++) {
+                players.append(i > 0 ? "," : "").append("{\"summonerId\":\"").append(route).append('-').append(tier * PLAYERS_PER_PAGE + i).append("\"}");
+            }
+            body = players.append(']').toString();
+        } else if (path.contains("/league-exp/v4/entries/")) {
+            body = "[]";
+        } else if (path.contains("/summoner/v4/summoners/")) {
+            body = "{\"puuid\":\"puuid-" + name + "\"}";
+        } else if (path.endsWith("/ids")) {
+            int player = Integer.parseInt(segments[segments.length - 2].substring(segments[segments.length - 2].lastIndexOf('-') + 1));
+            body = "[\"" + matchId(region, player) + "\",\"" + matchId(region, (player + 1) % PLAYERS) + "\"]";
+        } else if (path.contains("/match/v5/matches/")) {
+            matchRequests.computeIfAbsent(route, r -> new AtomicInteger()).incrementAndGet();
+            if (name.equals(MALFORMED_MATCH)) {
+                body = "{\"metadata\":{\"matchId\":\"" + name + "\"}}";
+            } else if (!name.equals(FAILED_MATCH)) {
+                body = MatchParserBenchmark.syntheticMatch(new Random(name.hashCode()), name);
+            }
+        }
+        byte[] bytes = (body == null) ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        // Generous limits, so the rate limiter does not pace the crawl after the first response
+        exchange.getResponseHeaders().add("X-App-Rate-Limit", "100000:1");
+        exchange.getResponseHeaders().add("X-App-Rate-Limit-Count", "1:1");
+        exchange.sendResponseHeaders((body == null) ? 404 : 200, (bytes.length == 0) ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // The region a platform or regional route belongs to, among the two crawled
+    private static Region regionOf(String route) {
+        for (Region region : REGIONS) {
+            if (region.getPlatformRoute().equals(route) || region.getRegionalRoute().equals(route)) {
+                return region;
+            }
+        }
+        return REGIONS.get(0);
+    }
+
+    private static String matchId(Region region, int match) {
+        return region.name() + "_" + (FIRST_MATCH + match);
+    }
+
+    private static String puuid(Region region, int player) {
+        return "puuid-" + region.getPlatformRoute() + "-" + player;
+    }
+
+    private static int count(String route) {
+        AtomicInteger count = matchRequests.get(route);
+        return (count == null) ? 0 : count.get();
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that readers of MatchupPublisher always see a consistent matrix while matches are being recorded.
+ * Writer threads record synthetic matches and publish every few milliseconds, and reader threads keep taking the
+ * current epoch and checking it without any locking:
+ *   - every game in the matrix is also counted in a global record, so the cell and global totals must be equal
+ *   - both totals are a whole number of matches, so a half-merged match shows up as a remainder
+ *   - the role and tier rollups count each participant once, so both must hold the same number of matches
+ *   - epoch numbers and totals never go backwards for a reader, and the counter index belongs to the epoch it came from
+ * At the end the last epoch must hold exactly the recorded matches.
+ *
+ * Run after building the benchmarks module (see benchmarks/pom.xml):
+ *   java -cp benchmarks/target/benchmarks.jar SnapshotIsolationTest [writers] [readers] [seconds]
+ */
+public class SnapshotIsolationTest {
+
+    private static final int CHAMPIONS = 170;
+    private static final int PARTICIPANTS = 10;
+    // Every match adds a game for each participant against each of the five opponents
+    private static final long GAMES_PER_MATCH = PARTICIPANTS * (PARTICIPANTS / 2);
+    private static final long PUBLISH_INTERVAL_MILLIS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int writers = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int readers = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CHAMPIONS; i++) {
+            names.add("champion" + i);
+        }
+        ChampionIndex index = new ChampionIndex(names);
+        MatchupPublisher publisher = new MatchupPublisher(new MatchupMatrix(index), PUBLISH_INTERVAL_MILLIS);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong recorded = new AtomicLong();
+        AtomicLong checked = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+
+        List<Thread> threads = new ArrayList<>();
+        int[] teamIds = new int[PARTICIPANTS];
+        int[] roles = new int[PARTICIPANTS];
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            teamIds[i] = (i < PARTICIPANTS / 2) ? 100 : 200;
+            roles[i] = 1 + i % (Role.COUNT - 1);
+        }
+        for (int w = 0; w < writers; w++) {
+            int seed = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    publisher.record(randomTeams(random), teamIds, roles, PARTICIPANTS, random.nextBoolean() ? 100 : 200, random.nextInt(Tier.COUNT), 1401 + random.nextInt(3));
+                    publisher.publishIfDue();
+                    count++;
+                }
+                recorded.addAndGet(count);
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                long lastEpoch = -1;
+                long lastGames = -1;
+                while (System.nanoTime() < deadline) {
+                    MatchupEpoch epoch = publisher.current();
+                    long[] totals = totals(epoch.getTable());
+                    boolean consistent = totals[0] == totals[2] && totals[1] == totals[3] && totals[0] % GAMES_PER_MATCH == 0
+                            && totals[4] * (PARTICIPANTS / 2) == totals[0] && totals[5] == totals[4]
+                            && epoch.getNumber() >= lastEpoch && totals[0] >= lastGames
+                            && epoch.getCounterIndex().getDataVersion() == epoch.getNumber();
+                    if (!consistent) {
+                        failures.incrementAndGet();
+                    }
+                    lastEpoch = epoch.getNumber();
+                    lastGames = totals[0];
+                    checked.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        MatchupEpoch last = publisher.publish();
+        long[] totals = totals(last.getTable());
+        boolean exact = totals[0] == recorded.get() * GAMES_PER_MATCH && totals[0] == totals[2] && totals[4] == recorded.get() * PARTICIPANTS;
+        System.out.printf("Recorded %,d matches in %d epochs, readers checked %,d epochs (%,d/s)%n",
+                recorded.get(), last.getNumber(), checked.get(), checked.get() / seconds);
+        System.out.println("Inconsistent reads: " + failures.get() + ", final totals exact: " + exact);
+        if (failures.get() > 0 || !exact) {
+            System.exit(1);
+        }
+    }
+
+    // Sums of cell games, cell wins, global games, global wins, role games and tier games
+    private static long[] totals(MatchupTable table) {
+        long[] totals = new long[6];
+        for (int champion = 0; champion < CHAMPIONS; champion++) {
+            for (int opponent = 0; opponent < CHAMPIONS; opponent++) {
+                totals[0] += table.getGames(champion, opponent);
+                totals[1] += table.getWins(champion, opponent);
+            }
+            totals[2] += table.getGlobalGames(champion);
+            totals[3] += table.getGlobalWins(champion);
+            for (Role role : Role.values()) {
+                totals[4] += table.getRoleGames(champion, role);
+            }
+            for (Tier tier : Tier.values()) {
+                totals[5] += table.getTierGames(champion, tier);
+            }
+        }
+        return totals;
+    }
+
+    // Ten distinct champions; the first five are team 100
+    private static int[] randomTeams(Random random) {
+        int[] picks = new int[PARTICIPANTS];
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            int pick;
+            boolean duplicate;
+            do {
+                pick = random.nextInt(CHAMPIONS);
+                duplicate = false;
+                for (int j = 0; j < i; j++) {
+                    duplicate |= picks[j] == pick;
+                }
+            } while (duplicate);
+            picks[i] = pick;
+        }
+        return picks;
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The hot paths the JMH benchmarks measure. JMH only runs benchmark classes outside the default package, and the
+ * project's classes are all in the default package, which a named package cannot refer to. So the benchmarks call
+ * the project through this interface, implemented by HotPathTargets in the default package. The implementation is
+ * loaded once per trial, and the calls are plain interface calls the JIT inlines.
+ */
+public interface HotPaths {
+
+    // Loads HotPathTargets from the default package
+    static HotPaths load() {
+        try {
+            return (HotPaths) Class.forName("HotPathTargets").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("HotPathTargets is not on the classpath", e);
+        }
+    }
+
+    /**
+     * Writes the synthetic data files to the working directory and starts DataStorage on them.
+     * @throws IllegalStateException If the working directory holds real data files.
+     */
+    void startDataStorage() throws IOException;
+
+    // Synthetic match-v5 payloads of realistic size
+    String[] matchPayloads(int count, long seed);
+
+    // Parses a match into a reused summary without aggregating it
+    boolean parseMatch(String matchData);
+
+    // DataStorage.processGameData: parse, log and aggregate
+    void processGameData(String matchData);
+
+    int championCount();
+
+    // ChampionDataFetcher.recommend for a team of champion IDs
+    List<?> recommend(int[] enemies, String role, int k);
+
+    // A matchup matrix of random matches between the synthetic champions, with synergy, roles and tiers
+    Object matchupMatrix(long seed);
+
+    // ChampionDataFetcher.bestDrafts on a table returned by matchupMatrix(), with the open roles given like "top,mid"
+    List<?> draft(Object table, int[] allies, int[] enemies, String openRoles, int k);
+
+    // A win rate for every champion, like the ones the fetcher normalizes against the global win rates
+    Map<String, Double> winRates(long seed);
+
+    // ChampionDataFetcher.normalizeData
+    Map<String, Double> normalizeData(Map<String, Double> winRates);
+
+    // ChampionDataFetcher.displayWinrate, which sorts the win rates and prints the top 10
+    void displayWinrate(Map<String, Double> winRates);
+
+    // Writes synthetic champion_data.json and global_winrate_data.json files
+    void writeJsonFixture(String dataPath, String globalPath) throws IOException;
+
+    // Loads the JSON data files into a matchup table, the way DataStorage imports them
+    Object loadJson(String dataPath, String globalPath) throws IOException;
+
+    // Writes a table returned by loadJson() back to JSON files
+    void saveJson(Object table, String dataPath, String globalPath) throws IOException;
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of ingesting one match. parseMatch is the streaming parse alone; processGameData adds interning, the event
+ * log append and aggregation, including the checkpoint every few hundred matches, so it is the amortized cost
+ * of a crawled match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBenchmark {
+
+    private static final int PAYLOADS = 256;
+
+    private HotPaths hotPaths;
+    private String[] payloads;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hotPaths = HotPaths.load();
+        hotPaths.startDataStorage();
+        payloads = hotPaths.matchPayloads(PAYLOADS, 42);
+    }
+
+    @Benchmark
+    public boolean parseMatch() {
+        return hotPaths.parseMatch(nextPayload());
+    }
+
+    @Benchmark
+    public void processGameData() {
+        hotPaths.processGameData(nextPayload());
+    }
+
+    private String nextPayload() {
+        next = (next + 1) % payloads.length;
+        return payloads[next];
+    }
+}
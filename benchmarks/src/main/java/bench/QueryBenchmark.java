@@ -0,0 +1,120 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of answering a query. recommend ranks the counters of a five-champion enemy team, cycling through the roles;
+ * it replaced the per-query scourData scan. normalizeData and displayWinrate cover the rest of the console flow:
+ * normalizing a win rate per champion and sorting them for the top 10, printed to a discarded stream.
+ * draftOneSlot, draftThreeSlots and draftFullTeam search the best 5 compositions against a five-champion enemy
+ * team with 4, 2 and no allies locked in, on a matrix recorded from random matches so it has synergy data.
+ * draftFullTeamAnyRole searches a whole team of five slots open to any role, the widest draft.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int TEAMS = 64;
+    private static final String[] ROLES = {"any", "top", "jungle", "mid", "adc", "sup"};
+    private static final String[] OPEN_SLOTS = {"", "mid,adc,sup", "top,jungle,mid,adc,sup"};
+
+    private HotPaths hotPaths;
+    private int[][] teams;
+    private Object draftTable;
+    private Map<String, Double> winRates;
+    private PrintStream console;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hotPaths = HotPaths.load();
+        hotPaths.startDataStorage();
+        Random random = new Random(11);
+        teams = new int[TEAMS][];
+        for (int t = 0; t < TEAMS; t++) {
+            teams[t] = random.ints(0, hotPaths.championCount()).distinct().limit(5).toArray();
+        }
+        draftTable = hotPaths.matchupMatrix(17);
+        winRates = hotPaths.winRates(13);
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public List<?> recommend() {
+        next++;
+        return hotPaths.recommend(teams[next % TEAMS], ROLES[next % ROLES.length], 10);
+    }
+
+    @Benchmark
+    public List<?> draftOneSlot() {
+        return draft(4, OPEN_SLOTS[0]);
+    }
+
+    @Benchmark
+    public List<?> draftThreeSlots() {
+        return draft(2, OPEN_SLOTS[1]);
+    }
+
+    @Benchmark
+    public List<?> draftFullTeam() {
+        return draft(0, OPEN_SLOTS[2]);
+    }
+
+    @Benchmark
+    public List<?> draftFullTeamAnyRole() {
+        return draft(0, OPEN_SLOTS[0]);
+    }
+
+    // Locks the first allies of the next team in and searches against the team after it
+    private List<?> draft(int allies, String openRoles) {
+        next++;
+        int[] team = teams[next % TEAMS];
+        int[] enemies = teams[(next + 1) % TEAMS];
+        int[] locked = new int[allies];
+        int count = 0;
+        for (int champion : team) {
+            if (count < allies && !contains(enemies, champion)) {
+                locked[count++] = champion;
+            }
+        }
+        return hotPaths.draft(draftTable, Arrays.copyOf(locked, count), enemies, openRoles, 5);
+    }
+
+    private static boolean contains(int[] champions, int champion) {
+        for (int other : champions) {
+            if (other == champion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public Map<String, Double> normalizeData() {
+        return hotPaths.normalizeData(winRates);
+    }
+
+    @Benchmark
+    public void displayWinrate() {
+        hotPaths.displayWinrate(winRates);
+    }
+}
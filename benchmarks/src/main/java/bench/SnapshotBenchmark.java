@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of the JSON data files: loading champion_data.json and global_winrate_data.json into a matchup table the way
+ * DataStorage imports them, and exporting a table back. Uses files of the real size in a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private HotPaths hotPaths;
+    private Path directory;
+    private String dataPath;
+    private String globalPath;
+    private Object table;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hotPaths = HotPaths.load();
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        dataPath = directory.resolve("champion_data.json").toString();
+        globalPath = directory.resolve("global_winrate_data.json").toString();
+        hotPaths.writeJsonFixture(dataPath, globalPath);
+        table = hotPaths.loadJson(dataPath, globalPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object loadJson() throws IOException {
+        return hotPaths.loadJson(dataPath, globalPath);
+    }
+
+    @Benchmark
+    public void saveJson() throws IOException {
+        hotPaths.saveJson(table, directory.resolve("export_data.json").toString(), directory.resolve("export_global.json").toString());
+    }
+}